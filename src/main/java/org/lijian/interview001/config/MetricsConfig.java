@@ -0,0 +1,74 @@
+package org.lijian.interview001.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.lijian.interview001.service.AdmissionControl;
+import org.lijian.interview001.service.FunASRConnectionPool;
+import org.lijian.interview001.service.HotWordRegistry;
+import org.lijian.interview001.service.RecognitionCache;
+import org.lijian.interview001.service.RecognitionScheduler;
+import org.lijian.interview001.service.TranscriptStore;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 把连接池、准入控制、调度器、结果缓存、热词缓存和转写结果写入队列的状态导出为监控指标，抓取时读取各组件的stats()
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder recognitionComponentMetrics(FunASRConnectionPool connectionPool, AdmissionControl admissionControl,
+                                                   RecognitionScheduler scheduler, RecognitionCache recognitionCache,
+                                                   HotWordRegistry hotWordRegistry, TranscriptStore transcriptStore) {
+        return registry -> {
+            gauge(registry, "asr.pool.connections", connectionPool::stats, "total");
+            gauge(registry, "asr.pool.idle", connectionPool::stats, "idle");
+            gauge(registry, "asr.pool.active", connectionPool::stats, "active");
+            gauge(registry, "asr.pool.waiting", connectionPool::stats, "waiting");
+            gauge(registry, "asr.pool.backends.healthy", connectionPool::stats, "healthyBackends");
+
+            gauge(registry, "asr.admission.sessions", admissionControl::stats, "activeSessions");
+            gauge(registry, "asr.admission.buffered", admissionControl::stats, "bufferedBytes");
+            gauge(registry, "asr.admission.queued", admissionControl::stats, "queued");
+
+            gauge(registry, "asr.scheduler.inflight", scheduler::stats, "inFlight");
+            gauge(registry, "asr.scheduler.queued.interactive", scheduler::stats, "queuedInteractive");
+            gauge(registry, "asr.scheduler.queued.batch", scheduler::stats, "queuedBatch");
+
+            gauge(registry, "asr.cache.inflight", recognitionCache::stats, "inFlight");
+            FunctionCounter.builder("asr.cache.hits", recognitionCache, cache -> value(cache.stats(), "hitCount"))
+                    .register(registry);
+            FunctionCounter.builder("asr.cache.misses", recognitionCache, cache -> value(cache.stats(), "missCount"))
+                    .register(registry);
+
+            gauge(registry, "asr.hotwords.sets", hotWordRegistry::stats, "sets");
+            FunctionCounter.builder("asr.hotwords.compiled", hotWordRegistry, hotWords -> value(hotWords.stats(), "compileCount"))
+                    .register(registry);
+
+            gauge(registry, "asr.transcripts.queued", transcriptStore::stats, "queued");
+            FunctionCounter.builder("asr.transcripts.written", transcriptStore, store -> value(store.stats(), "written"))
+                    .register(registry);
+            FunctionCounter.builder("asr.transcripts.dropped", transcriptStore, store -> value(store.stats(), "dropped"))
+                    .register(registry);
+            FunctionCounter.builder("asr.transcripts.failed", transcriptStore, store -> value(store.stats(), "failed"))
+                    .register(registry);
+        };
+    }
+
+    private static void gauge(MeterRegistry registry, String name,
+                              Supplier<Map<String, Object>> stats, String key) {
+        // stats是方法引用，仪表默认只持有弱引用，需要强引用避免被回收
+        Gauge.builder(name, stats, s -> value(s.get(), key)).strongReference(true).register(registry);
+    }
+
+    private static double value(Map<String, Object> stats, String key) {
+        Object value = stats.get(key);
+        return value instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+}
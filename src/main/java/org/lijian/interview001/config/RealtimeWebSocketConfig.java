@@ -0,0 +1,34 @@
+package org.lijian.interview001.config;
+
+import org.lijian.interview001.controller.RealtimeASRHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * 浏览器实时识别的WebSocket服务端配置
+ */
+@Configuration
+@EnableWebSocket
+public class RealtimeWebSocketConfig implements WebSocketConfigurer {
+
+    private final RealtimeASRHandler realtimeASRHandler;
+
+    /**
+     * 允许跨域连接的来源，默认为空即只允许同源页面连接；"*"允许任意来源，需显式配置
+     */
+    @Value("${parameters.realtime.allowedOrigins:}")
+    private String[] allowedOrigins;
+
+    public RealtimeWebSocketConfig(RealtimeASRHandler realtimeASRHandler) {
+        this.realtimeASRHandler = realtimeASRHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(realtimeASRHandler, "/ws/asr")
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -0,0 +1,70 @@
+package org.lijian.interview001.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 线程池工厂
+ * spring.threads.virtual.enabled=true且运行在Java 21及以上时使用虚拟线程，否则使用可配置大小的平台线程池
+ */
+public final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * 当前环境是否启用虚拟线程
+     * @param environment Spring环境
+     * @return 配置开启且JVM支持时返回true
+     */
+    public static boolean isVirtual(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器，仅Java 21及以上可用
+     * @param threadNamePrefix 线程名前缀
+     * @return 执行器
+     */
+    public static AsyncTaskExecutor virtual(String threadNamePrefix) {
+        return new VirtualThreadTaskExecutor(threadNamePrefix);
+    }
+
+    /**
+     * 平台线程池
+     * @param threadNamePrefix 线程名前缀
+     * @param corePoolSize 核心线程数
+     * @param maxPoolSize 最大线程数
+     * @param queueCapacity 队列容量，满后拒绝任务
+     * @return 已初始化的线程池
+     */
+    public static ThreadPoolTaskExecutor platform(String threadNamePrefix, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 按环境选择虚拟线程或平台线程池
+     * @param environment Spring环境
+     * @param threadNamePrefix 线程名前缀
+     * @param corePoolSize 平台线程池核心线程数
+     * @param maxPoolSize 平台线程池最大线程数
+     * @param queueCapacity 平台线程池队列容量
+     * @return 执行器
+     */
+    public static AsyncTaskExecutor create(Environment environment, String threadNamePrefix,
+                                           int corePoolSize, int maxPoolSize, int queueCapacity) {
+        if (isVirtual(environment)) {
+            return virtual(threadNamePrefix);
+        }
+        return platform(threadNamePrefix, corePoolSize, maxPoolSize, queueCapacity);
+    }
+}
@@ -5,39 +5,34 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
-import org.springframework.web.socket.messaging.WebSocketStompClient;
-import org.springframework.messaging.converter.MappingJackson2MessageConverter;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
 
 @Configuration
 public class WebSocketConfig {
 
-    @Value("${parameters.serverIpPort}")
-    private String serverIpPort;
+    @Value("${parameters.executor.corePoolSize:16}")
+    private int corePoolSize;
+
+    @Value("${parameters.executor.maxPoolSize:64}")
+    private int maxPoolSize;
+
+    @Value("${parameters.executor.queueCapacity:1000}")
+    private int queueCapacity;
 
     @Bean
-    public WebSocketClient webSocketClient() {
+    public WebSocketClient webSocketClient(AsyncTaskExecutor webSocketTaskExecutor) {
         StandardWebSocketClient client = new StandardWebSocketClient();
         // 配置WebSocket客户端
-        client.setTaskExecutor(webSocketTaskExecutor());
+        client.setTaskExecutor(webSocketTaskExecutor);
         return client;
     }
 
+    /**
+     * WebSocket客户端连接执行器，开启虚拟线程时每个任务一个虚拟线程，否则使用平台线程池
+     */
     @Bean
-    public ThreadPoolTaskExecutor webSocketTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(25);
-        executor.setThreadNamePrefix("websocket-");
-        executor.initialize();
-        return executor;
-    }
-
-    @Bean
-    public WebSocketStompClient webSocketStompClient(WebSocketClient webSocketClient) {
-        WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient);
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
-        return stompClient;
+    public AsyncTaskExecutor webSocketTaskExecutor(Environment environment) {
+        return TaskExecutors.create(environment, "websocket-", corePoolSize, maxPoolSize, queueCapacity);
     }
 }
\ No newline at end of file
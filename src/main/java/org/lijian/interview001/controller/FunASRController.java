@@ -1,27 +1,60 @@
 package org.lijian.interview001.controller;
 
+import org.lijian.interview001.service.AdmissionControl;
+import org.lijian.interview001.service.AdmissionRejectedException;
+import org.lijian.interview001.service.AudioFormatPolicy;
+import org.lijian.interview001.service.AudioPreprocessor;
+import org.lijian.interview001.service.AudioSender;
+import org.lijian.interview001.service.BatchJob;
+import org.lijian.interview001.service.BatchJobService;
+import org.lijian.interview001.service.FunASRConnectionPool;
+import org.lijian.interview001.service.FunASRMessage;
 import org.lijian.interview001.service.FunASRService;
+import org.lijian.interview001.service.HotWordRegistry;
+import org.lijian.interview001.service.HotWords;
+import org.lijian.interview001.service.LongAudioService;
+import org.lijian.interview001.service.RecognitionCache;
+import org.lijian.interview001.service.RecognitionMetrics;
+import org.lijian.interview001.service.RecognitionScheduler;
+import org.lijian.interview001.service.TranscriptRecord;
+import org.lijian.interview001.service.TranscriptStore;
+import org.lijian.interview001.utils.AudioProbe;
 import org.lijian.interview001.utils.AudioUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/asr")
@@ -29,79 +62,792 @@ public class FunASRController {
 
     private static final Logger log = LoggerFactory.getLogger(FunASRController.class);
 
+    private static final Set<String> MODES = Set.of("offline", "online", "2pass");
+
     private final FunASRService funASRService;
+    private final FunASRConnectionPool connectionPool;
+    private final LongAudioService longAudioService;
+    private final RecognitionCache recognitionCache;
+    private final RecognitionScheduler scheduler;
+    private final BatchJobService batchJobService;
+    private final AdmissionControl admissionControl;
+    private final AudioFormatPolicy formatPolicy;
+    private final AudioPreprocessor preprocessor;
+    private final TranscriptStore transcriptStore;
+    private final HotWordRegistry hotWordRegistry;
+    private final RecognitionMetrics metrics;
 
     @Value("${parameters.fileUrl}")
     private String fileUploadPath;
 
-    public FunASRController(FunASRService funASRService) {
+    @Value("${parameters.recognizeTimeoutSeconds:60}")
+    private long recognizeTimeoutSeconds;
+
+    @Value("${parameters.admission.queueTimeoutMillis:10000}")
+    private long admissionTimeoutMillis;
+
+    @Value("${parameters.longAudio.timeoutSeconds:1800}")
+    private long longAudioTimeoutSeconds;
+
+    @Value("${parameters.mmap.enabled:true}")
+    private boolean mmapEnabled;
+
+    @Value("${parameters.mmap.minBytes:1048576}")
+    private long mmapMinBytes;
+
+    public FunASRController(FunASRService funASRService, FunASRConnectionPool connectionPool,
+                            LongAudioService longAudioService, RecognitionCache recognitionCache,
+                            RecognitionScheduler scheduler, BatchJobService batchJobService,
+                            AdmissionControl admissionControl, AudioFormatPolicy formatPolicy,
+                            AudioPreprocessor preprocessor, TranscriptStore transcriptStore,
+                            HotWordRegistry hotWordRegistry, RecognitionMetrics metrics) {
         this.funASRService = funASRService;
+        this.connectionPool = connectionPool;
+        this.longAudioService = longAudioService;
+        this.recognitionCache = recognitionCache;
+        this.scheduler = scheduler;
+        this.batchJobService = batchJobService;
+        this.admissionControl = admissionControl;
+        this.formatPolicy = formatPolicy;
+        this.preprocessor = preprocessor;
+        this.transcriptStore = transcriptStore;
+        this.hotWordRegistry = hotWordRegistry;
+        this.metrics = metrics;
     }
 
     /**
      * 上传音频文件并进行识别
+     * 识别过程异步执行，等待期间不占用Servlet线程
      * @param file 音频文件
+     * @param hotWords 本次识别使用的热词，{"热词":权重}形式的JSON，不传时使用parameters.hotWords
      * @return 识别结果
      */
     @PostMapping("/recognize")
-    public ResponseEntity<?> recognizeAudio(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<?>> recognizeAudio(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam(value = "hotWords", required = false) String hotWords) {
         if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body("请上传音频文件");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("请上传音频文件"));
+        }
+        HotWords words;
+        try {
+            words = hotWordRegistry.resolve(hotWords);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
         }
 
+        Path filePath;
         try {
-            // 保存上传的文件
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = getFileExtension(originalFilename);
-            String filename = UUID.randomUUID() + fileExtension;
+            filePath = saveUpload(file);
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("文件处理失败: " + e.getMessage()));
+        }
 
-            // 确保目录存在
-            File uploadDir = new File(fileUploadPath);
-            if (!uploadDir.exists()) {
-                uploadDir.mkdirs();
+        // 文件已落盘，获准后才读取和转换音频
+        CompletableFuture<AdmissionControl.Permit> admission;
+        try {
+            admission = admissionControl.acquire(file.getSize());
+        } catch (AdmissionRejectedException e) {
+            return CompletableFuture.completedFuture(rejected(e));
+        }
+
+        return admitted(admission, () -> {
+            AudioProbe probe;
+            try {
+                probe = probe(filePath);
+            } catch (IOException e) {
+                log.error("文件处理失败: {}", e.getMessage(), e);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("文件处理失败: " + e.getMessage()));
             }
 
-            Path filePath = Paths.get(fileUploadPath, filename);
-            file.transferTo(filePath.toFile());
+            String wavFormat = formatPolicy.passthroughFormat(probe, filePath);
+            String requestId = UUID.randomUUID().toString();
+            if (recognitionCache.isEnabled()) {
+                return recognizeCached(requestId, probe, wavFormat, words, filePath);
+            }
 
-            log.info("文件已上传至: {}", filePath);
+            // 发送到FunASR服务进行识别，识别结束后关闭文件
+            return recognize(interactive(() -> recognizeProbe(requestId, probe, wavFormat, funASRService.getModel(),
+                    words, null)), probe, "recognize", requestId, null, null);
+        });
+    }
+
+    /**
+     * 经过结果缓存识别，需要先读完全部音频计算内容哈希
+     * 命中时不再连接FunASR，相同内容的并发请求共享同一次识别
+     * 数据已在内存中或需要静音压缩时直接在PCM缓冲区上计算，否则边读取边计算，见recognizeCachedStream
+     * @param requestId 请求ID，未命中时作为FunASR的请求ID
+     * @param probe 音频探测结果
+     * @param wavFormat 原样发送的压缩格式，发送PCM时为null
+     * @param hotWords 热词，规范化后的哈希参与缓存键
+     * @param filePath 保存的文件
+     * @return 识别结果
+     */
+    private CompletableFuture<ResponseEntity<?>> recognizeCached(String requestId, AudioProbe probe, String wavFormat,
+                                                               HotWords hotWords, Path filePath) {
+        if (!probe.hasPcmBuffer() && (wavFormat != null || !probe.isSupported() || !preprocessor.isEnabled())) {
+            return recognizeCachedStream(requestId, probe, wavFormat, hotWords, filePath);
+        }
+
+        ByteBuffer pcm;
+        try {
+            pcm = readPcmBuffer(probe);
+        } catch (IOException e) {
+            log.error("音频转换失败: {}", e.getMessage(), e);
+            return recognize(CompletableFuture.failedFuture(e), probe, "recognize", requestId, null, null);
+        }
 
-            // 读取文件字节并转换为PCM格式
-            byte[] audioData = Files.readAllBytes(filePath);
+        if (wavFormat != null) {
+            // 原始文件内容加上格式作为键，与PCM的键互不冲突
+            String key = RecognitionCache.key(pcm, FunASRService.PASSTHROUGH_MODE + "/" + wavFormat, hotWords.getHash());
+            return recognize(recognitionCache.get(key,
+                    () -> interactive(() -> funASRService.recognizeEncoded(requestId, pcm, wavFormat, hotWords, null))),
+                    probe, "recognize", requestId, key, null);
+        }
+        String key = RecognitionCache.key(pcm, funASRService.getModel(), hotWords.getHash());
+        return recognize(recognitionCache.get(key, () -> interactive(() -> funASRService.recognizeAudio(requestId,
+                preprocessor.process(pcm), funASRService.getModel(), hotWords, null))),
+                probe, "recognize", requestId, key, null);
+    }
 
-            // 转换音频格式
-            File audioFile = filePath.toFile();
-            if (AudioUtils.isSupportedAudioFormat(audioFile)) {
-                audioData = AudioUtils.convertFileToPCM(audioFile);
-                log.info("音频已转换为PCM格式");
-            } else {
-                log.warn("不支持的音频格式，将尝试直接识别");
+    /**
+     * 边读取(转换)边计算缓存键，不在堆中保存完整PCM
+     * 未命中时重新打开文件边转换边发送，多一次读取和转换，换取长音频不占用与时长成正比的内存
+     */
+    private CompletableFuture<ResponseEntity<?>> recognizeCachedStream(String requestId, AudioProbe probe,
+                                                                     String wavFormat, HotWords hotWords,
+                                                                     Path filePath) {
+        // 原始文件内容加上格式作为键，与PCM的键互不冲突
+        String mode = wavFormat != null ? FunASRService.PASSTHROUGH_MODE + "/" + wavFormat : funASRService.getModel();
+        String key;
+        try {
+            key = RecognitionCache.key(probe.getPcmStream(), mode, hotWords.getHash());
+        } catch (IOException e) {
+            log.error("音频转换失败: {}", e.getMessage(), e);
+            return recognize(CompletableFuture.failedFuture(e), probe, "recognize", requestId, null, null);
+        }
+        return recognize(recognitionCache.get(key,
+                        () -> interactive(() -> recognizeFile(requestId, filePath, wavFormat, hotWords))),
+                probe, "recognize", requestId, key, null);
+    }
+
+    /**
+     * 重新打开已保存的文件识别，识别结束后关闭
+     */
+    private CompletableFuture<String> recognizeFile(String requestId, Path filePath, String wavFormat,
+                                                    HotWords hotWords) {
+        AudioProbe probe;
+        try {
+            probe = AudioUtils.probe(filePath.toFile(), mmapEnabled ? mmapMinBytes : -1);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return recognizeProbe(requestId, probe, wavFormat, funASRService.getModel(), hotWords, null)
+                .whenComplete((result, ex) -> {
+                    try {
+                        probe.close();
+                    } catch (IOException e) {
+                        log.warn("关闭音频源失败: {}", e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 上传音频文件并以Server-Sent Events增量返回识别结果
+     * FunASR每返回一条带文本的消息即推送一个segment事件，结束时推送result事件，失败时推送error事件
+     * @param file 音频文件
+     * @param mode 识别模式(offline/online/2pass)，默认使用parameters.model；2pass模式下分句结果随识别进度逐条返回
+     * @param hotWords 本次识别使用的热词，不传时使用parameters.hotWords
+     * @return SSE事件流，识别模式不支持时返回400
+     */
+    @PostMapping(value = "/recognize/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> recognizeAudioSse(@RequestParam("file") MultipartFile file,
+                                                        @RequestParam(value = "mode", required = false) String mode,
+                                                        @RequestParam(value = "hotWords", required = false) String hotWords) {
+        String recognizeMode = mode == null || mode.isEmpty() ? funASRService.getModel() : mode;
+        if (!MODES.contains(recognizeMode)) {
+            log.warn("不支持的识别模式: {}", recognizeMode);
+            return ResponseEntity.badRequest().build();
+        }
+
+        // 比排队和识别超时之和稍长，保证超时时仍能推送error事件
+        SseEmitter emitter = new SseEmitter(admissionTimeoutMillis + TimeUnit.SECONDS.toMillis(recognizeTimeoutSeconds + 5));
+        if (file.isEmpty()) {
+            sendError(emitter, "请上传音频文件");
+            return ResponseEntity.ok(emitter);
+        }
+        HotWords words;
+        try {
+            words = hotWordRegistry.resolve(hotWords);
+        } catch (IllegalArgumentException e) {
+            sendError(emitter, e.getMessage());
+            return ResponseEntity.ok(emitter);
+        }
+
+        Path filePath;
+        try {
+            filePath = saveUpload(file);
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            sendError(emitter, "文件处理失败: " + e.getMessage());
+            return ResponseEntity.ok(emitter);
+        }
+
+        // 队列已满时直接返回429，排队超时则以error事件返回
+        CompletableFuture<AdmissionControl.Permit> admission;
+        try {
+            admission = admissionControl.acquire(file.getSize());
+        } catch (AdmissionRejectedException e) {
+            return busy(e).build();
+        }
+
+        admitted(admission, () -> recognizeSegments(filePath, recognizeMode, words, emitter)).thenAccept(response -> {
+            try {
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    emitter.send(SseEmitter.event().name("result").data(response.getBody(), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } else {
+                    sendError(emitter, String.valueOf(response.getBody()));
+                }
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 识别并把每条带文本的FunASR消息作为segment事件推送
+     * @return 识别结果
+     */
+    private CompletableFuture<ResponseEntity<?>> recognizeSegments(Path filePath, String mode, HotWords hotWords,
+                                                                   SseEmitter emitter) {
+        AudioProbe probe;
+        try {
+            probe = probe(filePath);
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("文件处理失败: " + e.getMessage()));
+        }
+
+        String wavFormat = formatPolicy.passthroughFormat(probe, filePath);
+        String requestId = UUID.randomUUID().toString();
+        AtomicInteger index = new AtomicInteger();
+        List<Map<String, Object>> segments = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> future = interactive(() -> recognizeProbe(requestId, probe, wavFormat, mode, hotWords, response -> {
+            Map<String, Object> segment = FunASRService.toSegment(response);
+            if (segment == null) {
+                return;
+            }
+            segment.put("index", index.getAndIncrement());
+            if (!response.isPartial()) {
+                segments.add(segment);
+            }
+            try {
+                emitter.send(SseEmitter.event().name("segment").data(segment, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // 客户端断开，识别继续完成以便归还连接
+                log.debug("推送识别分段失败: {}", e.getMessage());
+            }
+        }));
+        return recognize(future, probe, "sse", requestId, null, segments);
+    }
+
+    /**
+     * 长音频识别
+     * 在静音处切分后多段并发识别，结果按时间顺序拼接，分段和时间戳均相对整段音频
+     * @param file 音频文件
+     * @param hotWords 本次识别使用的热词，不传时使用parameters.hotWords
+     * @return 完整文本及各分段结果
+     */
+    @PostMapping("/recognize/long")
+    public DeferredResult<ResponseEntity<?>> recognizeLongAudio(@RequestParam("file") MultipartFile file,
+                                                                @RequestParam(value = "hotWords", required = false) String hotWords) {
+        // 长音频的总耗时远超单次识别超时，单独设置异步请求超时
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(TimeUnit.SECONDS.toMillis(longAudioTimeoutSeconds));
+        if (file.isEmpty()) {
+            deferredResult.setResult(ResponseEntity.badRequest().body("请上传音频文件"));
+            return deferredResult;
+        }
+        HotWords words;
+        try {
+            words = hotWordRegistry.resolve(hotWords);
+        } catch (IllegalArgumentException e) {
+            deferredResult.setResult(ResponseEntity.badRequest().body(e.getMessage()));
+            return deferredResult;
+        }
+
+        Path filePath;
+        try {
+            filePath = saveUpload(file);
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("文件处理失败: " + e.getMessage()));
+            return deferredResult;
+        }
+
+        CompletableFuture<AdmissionControl.Permit> admission;
+        try {
+            admission = admissionControl.acquire(file.getSize());
+        } catch (AdmissionRejectedException e) {
+            deferredResult.setResult(rejected(e));
+            return deferredResult;
+        }
+
+        deferredResult.onTimeout(() -> deferredResult.setErrorResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("语音识别失败: 长音频识别超时")));
+        admitted(admission, () -> recognizeLong(filePath, words)).thenAccept(deferredResult::setResult);
+        return deferredResult;
+    }
+
+    private CompletableFuture<ResponseEntity<?>> recognizeLong(Path filePath, HotWords hotWords) {
+        ByteBuffer pcm;
+        try (AudioProbe probe = probe(filePath)) {
+            if (!probe.isSupported()) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("不支持的音频格式"));
             }
+            // 内存映射的缓冲区在关闭文件后仍然有效
+            pcm = readPcmBuffer(probe);
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("文件处理失败: " + e.getMessage()));
+        }
+
+        long start = System.nanoTime();
+        long durationMillis = pcm.remaining() * 1000L / AudioSender.PCM_BYTES_PER_SECOND;
+        String requestId = UUID.randomUUID().toString();
+        return longAudioService.recognize(requestId, pcm, hotWords).handle((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.error("长音频识别失败: {}", cause.getMessage(), cause);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("语音识别失败: " + cause.getMessage());
+            }
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> segments = (List<Map<String, Object>>) result.get("segments");
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            saveTranscript(requestId, "long", null, durationMillis, (String) result.get("result"), segments, start);
+            response.put("requestId", requestId);
+            response.putAll(result);
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    /**
+     * 流式上传音频并识别
+     * 请求体为原始音频数据，边接收边解码边发送给FunASR，不落盘也不缓存整个文件
+     * @param inputStream 请求体
+     * @param hotWords 本次识别使用的热词(查询参数)，不传时使用parameters.hotWords
+     * @return 识别结果
+     */
+    @PostMapping("/recognize/stream")
+    public CompletableFuture<ResponseEntity<?>> recognizeStream(InputStream inputStream,
+                                                                @RequestParam(value = "hotWords", required = false) String hotWords) {
+        HotWords words;
+        try {
+            words = hotWordRegistry.resolve(hotWords);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
 
-            // 发送到FunASR服务进行识别
-            CompletableFuture<String> future = funASRService.recognizeAudio(audioData);
+        // 边接收边发送，不缓冲整个文件，只占用会话名额
+        CompletableFuture<AdmissionControl.Permit> admission;
+        try {
+            admission = admissionControl.acquire(0);
+        } catch (AdmissionRejectedException e) {
+            return CompletableFuture.completedFuture(rejected(e));
+        }
 
-            // 等待识别结果
-            String result = future.get(60, TimeUnit.SECONDS);
+        return admitted(admission, () -> {
+            AudioProbe probe;
+            try {
+                probe = AudioUtils.probe(inputStream);
+            } catch (IOException e) {
+                log.error("音频流处理失败: {}", e.getMessage(), e);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("音频流处理失败: " + e.getMessage()));
+            }
 
-            // 返回识别结果
+            String requestId = UUID.randomUUID().toString();
+            return recognize(interactive(() -> funASRService.recognizeStream(requestId, probe.getPcmStream(),
+                    funASRService.getModel(), words, null)), probe, "stream", requestId, null, null);
+        });
+    }
+
+    /**
+     * 批量识别，上传多个文件，立即返回任务ID
+     * 文件按BATCH优先级排队识别，不会挤占交互请求的识别名额
+     * @param files 音频文件
+     * @param hotWords 所有文件共用的热词，不传时使用parameters.hotWords
+     * @return 任务ID及文件数
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> submitBatch(@RequestParam("files") MultipartFile[] files,
+                                         @RequestParam(value = "hotWords", required = false) String hotWords) {
+        HotWords words;
+        try {
+            words = hotWordRegistry.resolve(hotWords);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        List<String> names = new ArrayList<>(files.length);
+        List<Path> paths = new ArrayList<>(files.length);
+        try {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                names.add(file.getOriginalFilename());
+                paths.add(saveUpload(file));
+            }
+        } catch (IOException e) {
+            log.error("文件处理失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("文件处理失败: " + e.getMessage());
+        }
+        return submitBatch(() -> batchJobService.submit(names, paths, words));
+    }
+
+    /**
+     * 批量识别服务器本地文件
+     * @param request {"paths": ["相对parameters.batch.allowedRoot的路径", ...]}
+     * @param hotWords 所有文件共用的热词(查询参数)，不传时使用parameters.hotWords
+     * @return 任务ID及文件数
+     */
+    @PostMapping("/batch/paths")
+    public ResponseEntity<?> submitBatchPaths(@RequestBody Map<String, List<String>> request,
+                                              @RequestParam(value = "hotWords", required = false) String hotWords) {
+        List<String> paths = request.get("paths");
+        if (paths == null) {
+            return ResponseEntity.badRequest().body("请提供paths");
+        }
+        // 热词格式错误与路径错误一样返回400
+        return submitBatch(() -> batchJobService.submitLocalPaths(paths, hotWordRegistry.resolve(hotWords)));
+    }
+
+    /**
+     * 查询批量任务的进度和结果
+     * @param jobId 任务ID
+     * @param items 是否返回每个文件的状态和识别结果
+     * @return 任务状态
+     */
+    @GetMapping("/batch/{jobId}")
+    public ResponseEntity<?> getBatch(@PathVariable String jobId,
+                                      @RequestParam(value = "items", defaultValue = "true") boolean items) {
+        BatchJob job = batchJobService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("任务不存在或已过期: " + jobId);
+        }
+        return ResponseEntity.ok(job.toMap(items));
+    }
+
+    /**
+     * 查询识别调度器状态
+     * @return 并发上限、进行中及排队的任务数
+     */
+    @GetMapping("/scheduler")
+    public ResponseEntity<?> schedulerStats() {
+        return ResponseEntity.ok(scheduler.stats());
+    }
+
+    private static ResponseEntity<?> submitBatch(Supplier<BatchJob> submitter) {
+        try {
+            BatchJob job = submitter.get();
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("result", result);
+            response.put("jobId", job.getId());
+            response.put("total", job.getItems().size());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 
+    /**
+     * 按文本检索转写结果
+     * @param q 查询文本，两个字及以上时按倒排表检索，否则逐行匹配
+     * @param limit 最多返回的条数
+     * @return 匹配的转写结果，按识别时间倒序，不含分段
+     */
+    @GetMapping("/transcripts")
+    public ResponseEntity<?> searchTranscripts(@RequestParam("q") String q,
+                                               @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body("请提供查询内容");
+        }
+        try {
+            List<Map<String, Object>> transcripts = transcriptStore.search(q, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("total", transcripts.size());
+            response.put("transcripts", transcripts);
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (DataAccessException e) {
+            log.error("查询转写结果失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("查询转写结果失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询一次识别的转写结果
+     * @param requestId 识别接口返回的requestId
+     * @return 转写结果，含分段
+     */
+    @GetMapping("/transcripts/{requestId}")
+    public ResponseEntity<?> getTranscript(@PathVariable String requestId) {
+        try {
+            Map<String, Object> transcript = transcriptStore.find(requestId);
+            if (transcript == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("转写结果不存在: " + requestId);
+            }
+            return ResponseEntity.ok(transcript);
+        } catch (DataAccessException e) {
+            log.error("查询转写结果失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("查询转写结果失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询准入控制的利用率
+     * @return 会话数、缓冲字节数及其上限、排队数和拒绝数
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<?> admissionStats() {
+        return ResponseEntity.ok(admissionControl.stats());
+    }
+
+    /**
+     * 获准后开始处理，处理结束(包括失败)时释放名额
+     * 立即获准时在请求线程上处理，排队后获准时在准入线程池上处理
+     * @param admission 准入许可
+     * @param work 处理请求
+     * @return 响应，排队超时时为503
+     */
+    private CompletableFuture<ResponseEntity<?>> admitted(CompletableFuture<AdmissionControl.Permit> admission,
+                                                        Supplier<CompletableFuture<ResponseEntity<?>>> work) {
+        return admission.handle((permit, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof AdmissionRejectedException rejection) {
+                    return CompletableFuture.<ResponseEntity<?>>completedFuture(rejected(rejection));
+                }
+                return CompletableFuture.<ResponseEntity<?>>failedFuture(cause);
+            }
+            CompletableFuture<ResponseEntity<?>> response;
+            try {
+                response = work.get();
+            } catch (RuntimeException e) {
+                permit.release();
+                throw e;
+            }
+            return response.whenComplete((result, e) -> permit.release());
+        }).thenCompose(response -> response);
+    }
+
+    /**
+     * 队列已满返回429，排队超时返回503，都带Retry-After
+     */
+    private static ResponseEntity<?> rejected(AdmissionRejectedException e) {
+        log.warn("识别请求被拒绝: {}", e.getMessage());
+        return busy(e).body(e.getMessage());
+    }
+
+    private static ResponseEntity.BodyBuilder busy(AdmissionRejectedException e) {
+        HttpStatus status = e.getReason() == AdmissionRejectedException.Reason.QUEUE_FULL
+                ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+    }
+
+    /**
+     * 以交互优先级提交识别，超过并发上限时排队
+     */
+    private <T> CompletableFuture<T> interactive(Supplier<CompletableFuture<T>> work) {
+        return scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, work);
+    }
+
+    /**
+     * 为识别结果加上超时并转换为响应，超时在计时线程上触发，不阻塞任何请求线程
+     * 识别成功时提交转写结果异步保存，响应中带requestId
+     * @param future 识别结果
+     * @param probe 识别结束后需要关闭的音频源
+     * @param source 来源接口
+     * @param requestId 请求ID，与FunASR请求和转写结果一致
+     * @param audioHash 经过结果缓存时的缓存键，随转写结果保存；没有时为null
+     * @param segments 分段结果，没有时为null
+     * @return 响应
+     */
+    private CompletableFuture<ResponseEntity<?>> recognize(CompletableFuture<String> future, AudioProbe probe,
+                                                         String source, String requestId, String audioHash,
+                                                         List<Map<String, Object>> segments) {
+        long start = System.nanoTime();
+        return future
+                .orTimeout(recognizeTimeoutSeconds, TimeUnit.SECONDS)
+                .handle((result, ex) -> {
+                    try {
+                        probe.close();
+                    } catch (IOException e) {
+                        log.warn("关闭音频源失败: {}", e.getMessage());
+                    }
+
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        if (cause instanceof RejectedExecutionException) {
+                            log.warn("语音识别被拒绝: {}", cause.getMessage());
+                            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionControl.retryAfterSeconds()))
+                                    .body("语音识别失败: " + cause.getMessage());
+                        }
+                        if (cause instanceof TimeoutException) {
+                            log.error("语音识别超时: {}秒", recognizeTimeoutSeconds);
+                        } else {
+                            log.error("语音识别失败: {}", cause.getMessage(), cause);
+                        }
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("语音识别失败: " + cause.getMessage());
+                    }
+
+                    // 返回识别结果
+                    double durationSeconds = probe.getDurationSeconds();
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("result", result);
+                    saveTranscript(requestId, source, audioHash,
+                            durationSeconds < 0 ? null : Math.round(durationSeconds * 1000), result, segments, start);
+                    response.put("requestId", requestId);
+
+                    return ResponseEntity.ok(response);
+                });
+    }
+
+    /**
+     * 提交转写结果异步保存，只放入写入队列，不等待数据库
+     */
+    private void saveTranscript(String requestId, String source, String audioHash, Long durationMillis, String text,
+                                List<Map<String, Object>> segments, long startNanos) {
+        transcriptStore.save(new TranscriptRecord(requestId, source, audioHash, durationMillis, text, segments,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+    }
+
+    /**
+     * 探测已保存文件的格式
+     * 只打开一次文件，探测格式的同时得到PCM数据流，边转换边发送
+     * @param filePath 文件路径
+     * @return 探测结果，使用完毕后需要关闭
+     * @throws IOException 读取失败时抛出
+     */
+    private AudioProbe probe(Path filePath) throws IOException {
+        AudioProbe probe = AudioUtils.probe(filePath.toFile(), mmapEnabled ? mmapMinBytes : -1);
+        if (probe.isSupported()) {
+            log.info("音频格式: {}", probe);
+        }
+        return probe;
+    }
+
+    /**
+     * 识别探测结果中的PCM数据，已在内存中(内存映射或直通)时直接切片发送，否则边转换边发送
+     * 原样发送的压缩格式不做转换，固定以offline模式识别；开启静音压缩时先读取完整PCM
+     */
+    private CompletableFuture<String> recognizeProbe(String requestId, AudioProbe probe, String wavFormat, String mode,
+                                                     HotWords hotWords, Consumer<FunASRMessage> listener) {
+        if (probe.hasPcmBuffer() || (wavFormat == null && probe.isSupported() && preprocessor.isEnabled())) {
+            try {
+                ByteBuffer data = readPcmBuffer(probe);
+                return wavFormat != null ? funASRService.recognizeEncoded(requestId, data, wavFormat, hotWords, listener)
+                        : funASRService.recognizeAudio(requestId, preprocessor.process(data), mode, hotWords, listener);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return wavFormat != null
+                ? funASRService.recognizeEncoded(requestId, probe.getPcmStream(), wavFormat, hotWords, listener)
+                : funASRService.recognizeStream(requestId, probe.getPcmStream(), mode, hotWords, listener);
+    }
+
+    /**
+     * 读取并转换全部音频，记录转换耗时；数据已在内存中时不复制，无法识别的格式读取原始字节
+     */
+    private ByteBuffer readPcmBuffer(AudioProbe probe) throws IOException {
+        if (probe.hasPcmBuffer() || !probe.isSupported()) {
+            return probe.readPcmBuffer();
+        }
+        long start = System.nanoTime();
+        ByteBuffer pcm = probe.readPcmBuffer();
+        metrics.recordConvert("file", System.nanoTime() - start);
+        return pcm;
+    }
+
+    /**
+     * 保存上传的文件到parameters.fileUrl
+     * @param file 上传的文件
+     * @return 保存的路径
+     * @throws IOException 保存失败时抛出
+     */
+    private Path saveUpload(MultipartFile file) throws IOException {
+        // 保存上传的文件
+        String originalFilename = file.getOriginalFilename();
+        String fileExtension = getFileExtension(originalFilename);
+        String filename = UUID.randomUUID() + fileExtension;
+
+        // 确保目录存在
+        File uploadDir = new File(fileUploadPath);
+        if (!uploadDir.exists()) {
+            uploadDir.mkdirs();
+        }
+
+        Path filePath = Paths.get(fileUploadPath, filename);
+        file.transferTo(filePath.toFile());
+
+        log.info("文件已上传至: {}", filePath);
+        return filePath;
+    }
 
+    private static void sendError(SseEmitter emitter, String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("message", message);
+        try {
+            emitter.send(SseEmitter.event().name("error").data(error, MediaType.APPLICATION_JSON));
+            emitter.complete();
         } catch (IOException e) {
-            log.error("文件处理失败: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("文件处理失败: " + e.getMessage());
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            log.error("语音识别失败: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("语音识别失败: " + e.getMessage());
+            emitter.completeWithError(e);
         }
     }
 
+    /**
+     * 查询识别结果缓存的命中情况
+     * @return 缓存大小、命中数、未命中数、合并的并发请求数等
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> cacheStats() {
+        return ResponseEntity.ok(recognitionCache.stats());
+    }
+
+    /**
+     * 查询请求热词的缓存情况
+     * @return 缓存的原文数和热词组数、命中数、解析数
+     */
+    @GetMapping("/hotwords")
+    public ResponseEntity<?> hotWordStats() {
+        return ResponseEntity.ok(hotWordRegistry.stats());
+    }
+
+    /**
+     * 查询FunASR连接池状态
+     * @return 连接池大小、空闲数、等待数及等待耗时
+     */
+    @GetMapping("/pool")
+    public ResponseEntity<?> poolStats() {
+        return ResponseEntity.ok(connectionPool.stats());
+    }
+
     /**
      * 获取文件扩展名
      * @param filename 文件名
@@ -0,0 +1,302 @@
+package org.lijian.interview001.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lijian.interview001.service.AdmissionControl;
+import org.lijian.interview001.service.FunASRMessage;
+import org.lijian.interview001.service.FunASRService;
+import org.lijian.interview001.service.RecognitionSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * 实时识别WebSocket端点
+ * 浏览器以二进制帧推送16kHz、16bit、单声道PCM，发送{"end":true}结束；
+ * 服务端把FunASR的中间结果、分句结果和最终结果实时推回浏览器
+ */
+@Component
+public class RealtimeASRHandler extends AbstractWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RealtimeASRHandler.class);
+
+    private static final String RELAY_ATTRIBUTE = "realtimeRelay";
+
+    private static final String PERMIT_ATTRIBUTE = "admissionPermit";
+
+    private static final Set<String> MODES = Set.of("online", "offline", "2pass");
+
+    private final FunASRService funASRService;
+    private final AdmissionControl admissionControl;
+    private final ObjectMapper objectMapper;
+
+    @Value("${parameters.realtime.mode:2pass}")
+    private String defaultMode;
+
+    @Value("${parameters.realtime.maxPendingBytes:320000}")
+    private int maxPendingBytes;
+
+    @Value("${parameters.realtime.sendTimeLimitMillis:5000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${parameters.realtime.sendBufferSizeLimit:262144}")
+    private int sendBufferSizeLimit;
+
+    public RealtimeASRHandler(FunASRService funASRService, AdmissionControl admissionControl, ObjectMapper objectMapper) {
+        this.funASRService = funASRService;
+        this.admissionControl = admissionControl;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String mode = requestedMode(session);
+        if (!MODES.contains(mode)) {
+            closeQuietly(session, CloseStatus.BAD_DATA.withReason("不支持的识别模式: " + mode));
+            return;
+        }
+
+        // 实时连接不排队，没有名额时立即关闭，浏览器稍后重连
+        AdmissionControl.Permit permit = admissionControl.tryAcquire(maxPendingBytes);
+        if (permit == null) {
+            closeQuietly(session, CloseStatus.SERVICE_OVERLOAD.withReason("服务繁忙，请稍后重试"));
+            return;
+        }
+        session.getAttributes().put(PERMIT_ATTRIBUTE, permit);
+
+        // 识别结果在FunASR接收线程上回推，与本端接收线程并发写同一会话
+        WebSocketSession client = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferSizeLimit);
+        Relay relay = new Relay(client);
+        session.getAttributes().put(RELAY_ATTRIBUTE, relay);
+        log.info("实时识别连接建立: {}, mode: {}", session.getId(), mode);
+
+        funASRService.openSession(mode, relay).whenComplete((recognition, ex) -> {
+            if (ex != null) {
+                relay.fail(ex);
+            } else {
+                relay.ready(recognition);
+            }
+        });
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        Relay relay = (Relay) session.getAttributes().get(RELAY_ATTRIBUTE);
+        if (relay != null) {
+            relay.audio(message.getPayload());
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        Relay relay = (Relay) session.getAttributes().get(RELAY_ATTRIBUTE);
+        if (relay == null) {
+            return;
+        }
+        Map<?, ?> command = objectMapper.readValue(message.getPayload(), Map.class);
+        if (Boolean.TRUE.equals(command.get("end"))) {
+            relay.end();
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("实时识别连接错误: {}, {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Relay relay = (Relay) session.getAttributes().remove(RELAY_ATTRIBUTE);
+        if (relay != null) {
+            relay.clientClosed();
+        }
+        AdmissionControl.Permit permit = (AdmissionControl.Permit) session.getAttributes().remove(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.release();
+        }
+        log.info("实时识别连接关闭: {}, {}", session.getId(), status);
+    }
+
+    private String requestedMode(WebSocketSession session) {
+        if (session.getUri() == null) {
+            return defaultMode;
+        }
+        String mode = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst("mode");
+        return mode == null || mode.isEmpty() ? defaultMode : mode;
+    }
+
+    private static void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            if (session.isOpen()) {
+                session.close(status);
+            }
+        } catch (IOException e) {
+            log.debug("关闭实时识别连接失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一个浏览器连接到一次FunASR识别的中继
+     * FunASR会话就绪前收到的音频暂存，就绪后立即补发，之后的音频帧直接转发不再缓冲
+     */
+    private class Relay implements Consumer<FunASRMessage> {
+        private final WebSocketSession client;
+        private final List<byte[]> pending = new ArrayList<>();
+
+        private RecognitionSession recognition;
+        private int pendingBytes;
+        private boolean ended;
+        private boolean closed;
+
+        Relay(WebSocketSession client) {
+            this.client = client;
+        }
+
+        synchronized void ready(RecognitionSession recognition) {
+            if (closed) {
+                recognition.abort(new IOException("客户端已断开"));
+                return;
+            }
+            this.recognition = recognition;
+            recognition.result().whenComplete((text, ex) -> {
+                if (ex != null) {
+                    fail(ex);
+                } else {
+                    complete(text);
+                }
+            });
+            try {
+                for (byte[] chunk : pending) {
+                    recognition.sendAudio(chunk, 0, chunk.length);
+                }
+                pending.clear();
+                pendingBytes = 0;
+                if (ended) {
+                    recognition.finish();
+                }
+            } catch (IOException e) {
+                recognition.abort(e);
+            }
+        }
+
+        synchronized void audio(ByteBuffer payload) {
+            if (closed || ended) {
+                return;
+            }
+            if (recognition == null) {
+                // 会话建立期间暂存，超过上限说明FunASR迟迟无法就绪
+                if (pendingBytes + payload.remaining() > maxPendingBytes) {
+                    fail(new IOException("识别会话建立超时，缓冲音频超过上限"));
+                    return;
+                }
+                byte[] chunk = new byte[payload.remaining()];
+                payload.get(chunk);
+                pending.add(chunk);
+                pendingBytes += chunk.length;
+                return;
+            }
+            try {
+                if (payload.hasArray()) {
+                    recognition.sendAudio(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+                } else {
+                    byte[] chunk = new byte[payload.remaining()];
+                    payload.get(chunk);
+                    recognition.sendAudio(chunk, 0, chunk.length);
+                }
+            } catch (IOException e) {
+                recognition.abort(e);
+            }
+        }
+
+        synchronized void end() {
+            if (closed || ended) {
+                return;
+            }
+            ended = true;
+            if (recognition != null) {
+                try {
+                    recognition.finish();
+                } catch (IOException e) {
+                    recognition.abort(e);
+                }
+            }
+        }
+
+        synchronized void clientClosed() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            if (recognition != null && !recognition.result().isDone()) {
+                recognition.abort(new IOException("客户端已断开"));
+            }
+        }
+
+        /**
+         * 转发FunASR的识别消息，online结果为中间结果，offline结果为修正后的分句
+         */
+        @Override
+        public void accept(FunASRMessage response) {
+            Map<String, Object> segment = FunASRService.toSegment(response);
+            if (segment != null) {
+                send(segment);
+            }
+        }
+
+        private void complete(String text) {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "final");
+            message.put("text", text);
+            send(message);
+            closeClient(CloseStatus.NORMAL);
+        }
+
+        private void fail(Throwable ex) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            log.error("实时识别失败: {}", cause.getMessage());
+
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "error");
+            message.put("message", "语音识别失败: " + cause.getMessage());
+            send(message);
+            closeClient(CloseStatus.SERVER_ERROR);
+        }
+
+        private void send(Map<String, Object> message) {
+            if (!client.isOpen()) {
+                return;
+            }
+            try {
+                client.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+            } catch (Exception e) {
+                log.warn("推送识别结果失败: {}", e.getMessage());
+            }
+        }
+
+        private void closeClient(CloseStatus status) {
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+            }
+            closeQuietly(client, status);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.lijian.interview001.config.TaskExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 识别请求准入控制
+ * 在读取和转换音频之前限制同时处理的请求数和音频字节数，超出时排队，
+ * 队列已满或等待超时则拒绝，避免流量高峰时内存耗尽、FunASR过载
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    @Value("${parameters.admission.maxSessions:32}")
+    private int maxSessions;
+
+    @Value("${parameters.admission.maxBufferedBytes:536870912}")
+    private long maxBufferedBytes;
+
+    @Value("${parameters.admission.maxQueued:100}")
+    private int maxQueued;
+
+    @Value("${parameters.admission.queueTimeoutMillis:10000}")
+    private long queueTimeoutMillis;
+
+    @Value("${parameters.admission.retryAfterSeconds:1}")
+    private int retryAfterSeconds;
+
+    @Value("${parameters.admission.threads:8}")
+    private int threads;
+
+    private final Environment environment;
+
+    /**
+     * 排队请求获得许可后在此线程池上继续处理，不占用释放许可的FunASR接收线程或超时线程
+     */
+    private AsyncTaskExecutor grantExecutor;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private int activeSessions;
+    private long bufferedBytes;
+
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong rejectedQueueFullCount = new AtomicLong();
+    private final AtomicLong rejectedTimeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong totalHoldMillis = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+
+    public AdmissionControl(Environment environment) {
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() {
+        grantExecutor = TaskExecutors.create(environment, "asr-admission-", threads, threads, Integer.MAX_VALUE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (grantExecutor instanceof DisposableBean disposable) {
+            try {
+                disposable.destroy();
+            } catch (Exception e) {
+                log.warn("关闭准入线程池失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 申请处理一个识别请求，名额不足时排队
+     * 超过maxBufferedBytes的单个请求按maxBufferedBytes计，只在没有其他请求时才能进入
+     * @param bytes 预计占用的音频字节数
+     * @return 准入许可，处理结束后必须release；排队后获得的许可在准入线程池上完成；
+     *         等待超过queueTimeoutMillis时以AdmissionRejectedException失败
+     * @throws AdmissionRejectedException 排队数已达maxQueued时立即抛出
+     */
+    public CompletableFuture<Permit> acquire(long bytes) {
+        long cost = Math.min(Math.max(bytes, 0), maxBufferedBytes);
+        Waiter waiter;
+        synchronized (this) {
+            if (waiters.isEmpty() && fits(cost)) {
+                return CompletableFuture.completedFuture(grant(cost, System.currentTimeMillis()));
+            }
+            if (waiters.size() >= maxQueued) {
+                rejectedQueueFullCount.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.QUEUE_FULL,
+                        "识别请求过多，请稍后重试", retryAfterSeconds());
+            }
+            waiter = new Waiter(cost);
+            waiters.add(waiter);
+        }
+        queuedCount.incrementAndGet();
+
+        CompletableFuture.delayedExecutor(queueTimeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            boolean removed;
+            int retryAfter;
+            synchronized (this) {
+                removed = waiters.remove(waiter);
+                retryAfter = retryAfterSeconds();
+            }
+            if (removed) {
+                rejectedTimeoutCount.incrementAndGet();
+                log.warn("识别请求排队超时: {}ms", queueTimeoutMillis);
+                waiter.future.completeExceptionally(new AdmissionRejectedException(
+                        AdmissionRejectedException.Reason.TIMEOUT, "服务繁忙，排队超时", retryAfter));
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * 不排队的申请，用于不能等待的长连接
+     * @param bytes 预计占用的音频字节数
+     * @return 准入许可；没有名额时返回null
+     */
+    public synchronized Permit tryAcquire(long bytes) {
+        long cost = Math.min(Math.max(bytes, 0), maxBufferedBytes);
+        if (!waiters.isEmpty() || !fits(cost)) {
+            rejectedQueueFullCount.incrementAndGet();
+            return null;
+        }
+        return grant(cost, System.currentTimeMillis());
+    }
+
+    /**
+     * 建议客户端重试的等待秒数，按平均处理时长和排队数估算
+     */
+    public synchronized int retryAfterSeconds() {
+        long released = releasedCount.get();
+        if (released == 0) {
+            return retryAfterSeconds;
+        }
+        long avgHoldMillis = totalHoldMillis.get() / released;
+        long estimate = avgHoldMillis * (waiters.size() + 1) / Math.max(1, maxSessions) / 1000;
+        return (int) Math.max(retryAfterSeconds, Math.min(estimate, 60));
+    }
+
+    /**
+     * 当前利用率
+     * @return 会话数、缓冲字节数及其上限、排队数和拒绝数
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSessions", maxSessions);
+        stats.put("activeSessions", activeSessions);
+        stats.put("sessionUtilization", activeSessions / (double) maxSessions);
+        stats.put("maxBufferedBytes", maxBufferedBytes);
+        stats.put("bufferedBytes", bufferedBytes);
+        stats.put("bytesUtilization", bufferedBytes / (double) maxBufferedBytes);
+        stats.put("maxQueued", maxQueued);
+        stats.put("queued", waiters.size());
+        stats.put("admittedCount", admittedCount.get());
+        stats.put("queuedCount", queuedCount.get());
+        stats.put("rejectedQueueFullCount", rejectedQueueFullCount.get());
+        stats.put("rejectedTimeoutCount", rejectedTimeoutCount.get());
+        long admitted = admittedCount.get();
+        stats.put("avgWaitMillis", admitted == 0 ? 0 : totalWaitMillis.get() / admitted);
+        stats.put("retryAfterSeconds", retryAfterSeconds());
+        return stats;
+    }
+
+    private boolean fits(long cost) {
+        return activeSessions < maxSessions && bufferedBytes + cost <= maxBufferedBytes;
+    }
+
+    private Permit grant(long cost, long requestedAt) {
+        activeSessions++;
+        bufferedBytes += cost;
+        admittedCount.incrementAndGet();
+        totalWaitMillis.addAndGet(System.currentTimeMillis() - requestedAt);
+        return new Permit(cost);
+    }
+
+    private void release(Permit permit) {
+        List<Waiter> granted = new ArrayList<>();
+        List<Permit> permits = new ArrayList<>();
+        synchronized (this) {
+            activeSessions--;
+            bufferedBytes -= permit.bytes;
+            // 按到达顺序放行，队首放不下时后面的也等待，避免大文件被小请求饿死
+            Waiter waiter;
+            while ((waiter = waiters.peek()) != null && fits(waiter.bytes)) {
+                waiters.poll();
+                granted.add(waiter);
+                permits.add(grant(waiter.bytes, waiter.queuedAt));
+            }
+        }
+        releasedCount.incrementAndGet();
+        totalHoldMillis.addAndGet(System.currentTimeMillis() - permit.grantedAt);
+
+        for (int i = 0; i < granted.size(); i++) {
+            Waiter waiter = granted.get(i);
+            Permit next = permits.get(i);
+            try {
+                grantExecutor.execute(() -> waiter.future.complete(next));
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭，只能在当前线程上完成
+                waiter.future.complete(next);
+            }
+        }
+    }
+
+    /**
+     * 准入许可，重复释放无副作用
+     */
+    public class Permit {
+        private final long bytes;
+        private final long grantedAt = System.currentTimeMillis();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionControl.this.release(this);
+            }
+        }
+    }
+
+    private static class Waiter {
+        private final long bytes;
+        private final long queuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
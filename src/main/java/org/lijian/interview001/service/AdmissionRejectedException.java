@@ -0,0 +1,40 @@
+package org.lijian.interview001.service;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 识别请求未获准入
+ */
+public class AdmissionRejectedException extends RejectedExecutionException {
+
+    public enum Reason {
+        /**
+         * 排队数已达上限，立即拒绝
+         */
+        QUEUE_FULL,
+        /**
+         * 排队等待超时
+         */
+        TIMEOUT
+    }
+
+    private final Reason reason;
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(Reason reason, String message, int retryAfterSeconds) {
+        super(message);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * 建议客户端重试前等待的秒数
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
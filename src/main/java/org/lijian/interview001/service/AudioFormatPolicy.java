@@ -0,0 +1,74 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import org.lijian.interview001.utils.AudioProbe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 按格式决定上传音频的发送方式
+ * javax.sound能解码的格式(WAV/AIFF/AU)在本地转换为16kHz PCM，online/2pass也能使用；
+ * 配置的压缩格式原样发送并在初始化消息中声明wav_format，由FunASR解码，省去本地转换，发送的字节数也少得多
+ */
+@Component
+public class AudioFormatPolicy {
+
+    public static final String DECODE = "decode";
+    public static final String PASSTHROUGH = "passthrough";
+    public static final String RAW = "raw";
+
+    @Value("${parameters.passthrough.enabled:true}")
+    private boolean enabled;
+
+    @Value("${parameters.passthrough.formats:mp3,m4a,aac,ogg,opus,flac,amr,wma,webm,mp4}")
+    private Set<String> formats;
+
+    private final RecognitionMetrics metrics;
+
+    public AudioFormatPolicy(RecognitionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        Set<String> normalized = new HashSet<>();
+        for (String format : formats) {
+            if (!format.isBlank()) {
+                normalized.add(format.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        formats = normalized;
+    }
+
+    /**
+     * 选择发送方式
+     * @param probe 探测结果
+     * @param path 文件路径，按扩展名判断压缩格式
+     * @return 原样发送时的wav_format；本地转换为PCM，或无法识别、按原始字节发送时返回null
+     */
+    public String passthroughFormat(AudioProbe probe, Path path) {
+        String format = extension(path);
+        String tag = formats.contains(format) ? format : "other";
+        if (probe.isSupported()) {
+            metrics.recordFormat(tag, DECODE);
+            return null;
+        }
+        if (enabled && formats.contains(format)) {
+            metrics.recordFormat(tag, PASSTHROUGH);
+            return format;
+        }
+        metrics.recordFormat(tag, RAW);
+        return null;
+    }
+
+    private static String extension(Path path) {
+        String filename = path.getFileName().toString();
+        int dotIndex = filename.lastIndexOf('.');
+        return dotIndex < 0 ? "" : filename.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+    }
+}
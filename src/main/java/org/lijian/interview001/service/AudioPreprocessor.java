@@ -0,0 +1,64 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import org.lijian.interview001.utils.SilenceTrimmer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 发送前的PCM预处理，位于音频转换和FunASRService之间
+ * 开启后去除首尾静音、压缩中间的长静音；需要完整的PCM数据，边读边发的流式路径不经过这里
+ */
+@Component
+public class AudioPreprocessor {
+
+    @Value("${parameters.trim.enabled:false}")
+    private boolean enabled;
+
+    @Value("${parameters.trim.minSilenceMillis:1000}")
+    private int minSilenceMillis;
+
+    @Value("${parameters.trim.keepSilenceMillis:300}")
+    private int keepSilenceMillis;
+
+    @Value("${parameters.trim.thresholdDb:10}")
+    private double thresholdDb;
+
+    private final RecognitionMetrics metrics;
+
+    private SilenceTrimmer trimmer;
+
+    public AudioPreprocessor(RecognitionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            trimmer = new SilenceTrimmer(minSilenceMillis, keepSilenceMillis, thresholdDb);
+        }
+    }
+
+    /**
+     * 是否开启了静音压缩，开启时调用方应读取完整PCM后经过process再识别
+     */
+    public boolean isEnabled() {
+        return trimmer != null;
+    }
+
+    /**
+     * 预处理PCM数据
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM
+     * @return 处理结果，未开启时原样返回
+     */
+    public SilenceTrimmer.Result process(ByteBuffer pcm) {
+        if (trimmer == null) {
+            return SilenceTrimmer.Result.untrimmed(pcm);
+        }
+        SilenceTrimmer.Result result = trimmer.trim(pcm);
+        metrics.recordTrim(pcm.remaining(), result.getRemovedBytes());
+        return result;
+    }
+}
@@ -0,0 +1,362 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.lijian.interview001.config.TaskExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 音频分块发送器
+ * 直接对原始数组切片发送，不复制数据；按模式配置分块大小和实时节奏，发送任务在调度线程上执行，不阻塞调用方。
+ * 共享的发送线程只执行不会阻塞的切片发送，需要阻塞读取的数据流在各自的线程上边读边发
+ */
+@Component
+public class AudioSender {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioSender.class);
+
+    /**
+     * 16kHz、16bit、单声道PCM每秒字节数
+     */
+    public static final int PCM_BYTES_PER_SECOND = 16000 * 2;
+
+    /**
+     * 不限速时每轮最多发送的块数，之后让出线程给其他会话
+     */
+    private static final int MAX_CHUNKS_PER_RUN = 16;
+
+    /**
+     * 发送缓冲积压时的重试间隔
+     */
+    private static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    @Value("${parameters.send.offline.chunkSize:65536}")
+    private int offlineChunkSize;
+
+    @Value("${parameters.send.offline.pacingRate:0}")
+    private double offlinePacingRate;
+
+    @Value("${parameters.send.online.chunkSize:9600}")
+    private int onlineChunkSize;
+
+    @Value("${parameters.send.online.pacingRate:1.0}")
+    private double onlinePacingRate;
+
+    @Value("${parameters.send.threads:4}")
+    private int threads;
+
+    private final Environment environment;
+    private final RecognitionMetrics metrics;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 执行发送任务的线程，虚拟线程模式下每个任务一个虚拟线程，scheduler只负责计时
+     */
+    private Executor sendExecutor;
+
+    /**
+     * 执行数据流发送任务的线程，每个数据流一个线程，读取阻塞时不影响其他会话
+     */
+    private Executor streamExecutor;
+    private ExecutorService streamPool;
+
+    public AudioSender(Environment environment, RecognitionMetrics metrics) {
+        this.environment = environment;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        boolean virtual = TaskExecutors.isVirtual(environment);
+        scheduler = Executors.newScheduledThreadPool(virtual ? 1 : threads, r -> {
+            Thread thread = new Thread(r, "funasr-audio-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sendExecutor = virtual ? TaskExecutors.virtual("funasr-audio-sender-") : scheduler;
+
+        // 数据流的读取会阻塞在上游(如慢速上传的请求体)上，不能占用共享的发送线程，每个数据流独占一个线程；
+        // 并发数由准入控制的会话名额限制，平台线程模式下空闲线程60秒后回收
+        AtomicInteger readerCounter = new AtomicInteger();
+        if (virtual) {
+            streamExecutor = TaskExecutors.virtual("funasr-stream-reader-");
+        } else {
+            streamPool = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "funasr-stream-reader-" + readerCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            streamExecutor = streamPool;
+        }
+        log.info("音频发送线程模式: {}", virtual ? "虚拟线程" : "平台线程 x " + threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (streamPool != null) {
+            streamPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 发送整段音频
+     * @param session WebSocket会话
+     * @param mode 识别模式(offline/online/2pass)
+     * @param audioData 音频数据
+     * @return 全部数据写出后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> send(WebSocketSession session, String mode, byte[] audioData) {
+        return send(session, mode, audioData, 0, audioData.length);
+    }
+
+    /**
+     * 发送音频数组中的一段
+     * @param session WebSocket会话
+     * @param mode 识别模式(offline/online/2pass)
+     * @param audioData 音频数据，发送完成前调用方不能修改
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 全部数据写出后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> send(WebSocketSession session, String mode, byte[] audioData, int offset, int length) {
+        return send(session, mode, ByteBuffer.wrap(audioData, offset, length));
+    }
+
+    /**
+     * 发送缓冲区中的音频，每块是源缓冲区的切片，内存映射的文件不会复制到堆内存
+     * @param session WebSocket会话
+     * @param mode 识别模式(offline/online/2pass)
+     * @param audioData position到limit之间的音频数据，发送完成前调用方不能修改；不改变其position
+     * @return 全部数据写出后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> send(WebSocketSession session, String mode, ByteBuffer audioData) {
+        boolean offline = isOffline(mode);
+        int chunkSize = offline ? offlineChunkSize : onlineChunkSize;
+        double pacingRate = offline ? offlinePacingRate : onlinePacingRate;
+
+        SendTask task = new SendTask(session, audioData, chunkSize, pacingRate);
+        sendExecutor.execute(task);
+        return task.future;
+    }
+
+    /**
+     * 从数据流读取并发送，每个会话只占用一个分块大小的缓冲区
+     * 读取是阻塞的，在该数据流独占的线程上执行，上游慢时只拖慢自身，网络写满时阻塞读取，形成反压
+     * @param session WebSocket会话
+     * @param mode 识别模式(offline/online/2pass)
+     * @param audioStream 音频数据流
+     * @return 数据流读完且全部发送后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> send(WebSocketSession session, String mode, InputStream audioStream) {
+        boolean offline = isOffline(mode);
+        int chunkSize = offline ? offlineChunkSize : onlineChunkSize;
+        double pacingRate = offline ? offlinePacingRate : onlinePacingRate;
+
+        StreamSendTask task = new StreamSendTask(session, audioStream, chunkSize, pacingRate);
+        try {
+            streamExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    /**
+     * 获取模式对应的分块大小
+     * @param mode 识别模式
+     * @return 分块字节数
+     */
+    public int chunkSize(String mode) {
+        return isOffline(mode) ? offlineChunkSize : onlineChunkSize;
+    }
+
+    private static boolean isOffline(String mode) {
+        return mode == null || "offline".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 延迟后在发送线程上执行
+     */
+    private void submitLater(Runnable task, long delayNanos) {
+        scheduler.schedule(() -> sendExecutor.execute(task), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static long intervalNanos(int chunkSize, double pacingRate) {
+        return pacingRate > 0 ? (long) (chunkSize * 1_000_000_000L / (PCM_BYTES_PER_SECOND * pacingRate)) : 0;
+    }
+
+    /**
+     * 其他线程正在刷出积压数据时返回true，调用方应稍后重试，避免缓冲区超限
+     */
+    private static boolean isBacklogged(WebSocketSession session) {
+        return session instanceof ConcurrentWebSocketSessionDecorator decorator
+                && decorator.getBufferSize() > decorator.getBufferSizeLimit() / 2;
+    }
+
+    /**
+     * 单个会话的发送任务，限速时按时间表重新调度自身，代替Thread.sleep
+     */
+    private class SendTask implements Runnable {
+        private final WebSocketSession session;
+        private final ByteBuffer data;
+        private final int end;
+        private final int chunkSize;
+        private final long intervalNanos;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private final int offset;
+        private int position;
+        private long chunkIndex;
+        private long startNanos;
+
+        SendTask(WebSocketSession session, ByteBuffer data, int chunkSize, double pacingRate) {
+            this.session = session;
+            this.data = data;
+            this.offset = data.position();
+            this.position = offset;
+            this.end = data.limit();
+            this.chunkSize = chunkSize;
+            this.intervalNanos = intervalNanos(chunkSize, pacingRate);
+        }
+
+        @Override
+        public void run() {
+            if (startNanos == 0) {
+                startNanos = System.nanoTime();
+            }
+            try {
+                int sent = 0;
+                while (position < end) {
+                    if (!session.isOpen()) {
+                        throw new IOException("WebSocket会话已关闭");
+                    }
+
+                    if (isBacklogged(session)) {
+                        submitLater(this, BACKOFF_NANOS);
+                        return;
+                    }
+
+                    int length = Math.min(chunkSize, end - position);
+                    session.sendMessage(new BinaryMessage(data.slice(position, length)));
+                    position += length;
+                    chunkIndex++;
+                    sent++;
+
+                    if (position >= end) {
+                        break;
+                    }
+                    if (intervalNanos > 0) {
+                        long delay = startNanos + chunkIndex * intervalNanos - System.nanoTime();
+                        if (delay > 0) {
+                            submitLater(this, delay);
+                            return;
+                        }
+                    } else if (sent >= MAX_CHUNKS_PER_RUN) {
+                        sendExecutor.execute(this);
+                        return;
+                    }
+                }
+                future.complete((long) (end - offset));
+            } catch (Exception e) {
+                log.error("发送音频数据失败: {}", e.getMessage());
+                future.completeExceptionally(new IOException("发送音频数据失败", e));
+            }
+        }
+    }
+
+    /**
+     * 数据流的发送任务，在独占的线程上循环读取、发送，限速时在本线程上等待
+     * 缓冲区凑满一块后同步发送，发送返回后即可复用：同一连接上初始化消息、音频和结束消息依次由一个线程发出，
+     * 不会有其他线程同时写入，sendMessage返回时数据已写出而不是留在装饰器的发送缓冲中
+     */
+    private class StreamSendTask implements Runnable {
+        private final WebSocketSession session;
+        private final InputStream audioStream;
+        private final byte[] buffer;
+        private final long intervalNanos;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        StreamSendTask(WebSocketSession session, InputStream audioStream, int chunkSize, double pacingRate) {
+            this.session = session;
+            this.audioStream = audioStream;
+            this.buffer = new byte[chunkSize];
+            this.intervalNanos = intervalNanos(chunkSize, pacingRate);
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            long chunkIndex = 0;
+            long bytesSent = 0;
+            // 阻塞在读取上的累计耗时，数据流边读边解码时即为转换耗时
+            long readNanos = 0;
+            try {
+                while (true) {
+                    if (!session.isOpen()) {
+                        throw new IOException("WebSocket会话已关闭");
+                    }
+                    if (isBacklogged(session)) {
+                        TimeUnit.NANOSECONDS.sleep(BACKOFF_NANOS);
+                        continue;
+                    }
+
+                    // 凑满一块再发送，减少小帧数量
+                    int filled = 0;
+                    int read = 0;
+                    long readStart = System.nanoTime();
+                    while (filled < buffer.length && (read = audioStream.read(buffer, filled, buffer.length - filled)) != -1) {
+                        filled += read;
+                    }
+                    readNanos += System.nanoTime() - readStart;
+                    if (filled > 0) {
+                        session.sendMessage(new BinaryMessage(ByteBuffer.wrap(buffer, 0, filled)));
+                        chunkIndex++;
+                        bytesSent += filled;
+                    }
+                    if (read == -1) {
+                        metrics.recordConvert("stream", readNanos);
+                        future.complete(bytesSent);
+                        return;
+                    }
+
+                    if (intervalNanos > 0) {
+                        long delay = startNanos + chunkIndex * intervalNanos - System.nanoTime();
+                        if (delay > 0) {
+                            TimeUnit.NANOSECONDS.sleep(delay);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(new IOException("发送音频数据被中断", e));
+            } catch (Exception e) {
+                log.error("发送音频数据失败: {}", e.getMessage());
+                future.completeExceptionally(new IOException("发送音频数据失败", e));
+            }
+        }
+    }
+}
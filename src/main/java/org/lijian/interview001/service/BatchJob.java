@@ -0,0 +1,175 @@
+package org.lijian.interview001.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量识别任务，包含多个音频文件
+ */
+public class BatchJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String id;
+    private final long createdAt = System.currentTimeMillis();
+    private final List<Item> items;
+
+    private volatile long finishedAt;
+
+    BatchJob(String id, List<Item> items) {
+        this.id = id;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt > 0;
+    }
+
+    /**
+     * 所有文件结束后记录完成时间
+     */
+    void checkFinished() {
+        if (finishedAt == 0 && items.stream().allMatch(Item::isFinished)) {
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 任务概况
+     * @param includeItems 是否包含每个文件的状态和结果
+     * @return 状态信息
+     */
+    public Map<String, Object> toMap(boolean includeItems) {
+        int queued = 0;
+        int running = 0;
+        int succeeded = 0;
+        int failed = 0;
+        for (Item item : items) {
+            switch (item.status) {
+                case QUEUED -> queued++;
+                case RUNNING -> running++;
+                case SUCCEEDED -> succeeded++;
+                case FAILED -> failed++;
+            }
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("finished", isFinished());
+        map.put("total", items.size());
+        map.put("queued", queued);
+        map.put("running", running);
+        map.put("succeeded", succeeded);
+        map.put("failed", failed);
+        map.put("createdAt", createdAt);
+        if (isFinished()) {
+            map.put("finishedAt", finishedAt);
+        }
+        if (includeItems) {
+            List<Map<String, Object>> itemMaps = new ArrayList<>(items.size());
+            for (Item item : items) {
+                itemMaps.add(item.toMap());
+            }
+            map.put("items", itemMaps);
+        }
+        return map;
+    }
+
+    /**
+     * 批量任务中的一个音频文件
+     */
+    public static class Item {
+        private final int index;
+        private final String name;
+        private final Path path;
+
+        private volatile Status status = Status.QUEUED;
+        private volatile String requestId;
+        private volatile String result;
+        private volatile String error;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        Item(int index, String name, Path path) {
+            this.index = index;
+            this.name = name;
+            this.path = path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        boolean isFinished() {
+            return status == Status.SUCCEEDED || status == Status.FAILED;
+        }
+
+        void start(String requestId) {
+            this.requestId = requestId;
+            startedAt = System.currentTimeMillis();
+            status = Status.RUNNING;
+        }
+
+        void succeed(String result) {
+            this.result = result;
+            finishedAt = System.currentTimeMillis();
+            status = Status.SUCCEEDED;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            finishedAt = System.currentTimeMillis();
+            status = Status.FAILED;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("index", index);
+            map.put("name", name);
+            map.put("status", status);
+            if (requestId != null) {
+                // 用于查询转写结果
+                map.put("requestId", requestId);
+            }
+            if (result != null) {
+                map.put("result", result);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            if (finishedAt > 0) {
+                map.put("elapsedMillis", finishedAt - startedAt);
+            }
+            return map;
+        }
+    }
+}
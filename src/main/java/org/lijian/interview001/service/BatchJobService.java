@@ -0,0 +1,282 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.lijian.interview001.config.TaskExecutors;
+import org.lijian.interview001.utils.AudioProbe;
+import org.lijian.interview001.utils.AudioUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 批量识别
+ * 每个文件作为一个BATCH优先级任务交给RecognitionScheduler，开始识别时才读取和转换文件
+ */
+@Service
+public class BatchJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchJobService.class);
+
+    private final FunASRService funASRService;
+    private final RecognitionScheduler scheduler;
+    private final RecognitionCache recognitionCache;
+    private final AudioFormatPolicy formatPolicy;
+    private final AudioPreprocessor preprocessor;
+    private final TranscriptStore transcriptStore;
+    private final Environment environment;
+    private final RecognitionMetrics metrics;
+
+    @Value("${parameters.batch.maxFiles:1000}")
+    private int maxFiles;
+
+    @Value("${parameters.batch.retentionMinutes:60}")
+    private long retentionMinutes;
+
+    @Value("${parameters.batch.ioThreads:2}")
+    private int ioThreads;
+
+    @Value("${parameters.batch.allowedRoot:${parameters.fileUrl}}")
+    private String allowedRoot;
+
+    @Value("${parameters.recognizeTimeoutSeconds:60}")
+    private long recognizeTimeoutSeconds;
+
+    @Value("${parameters.mmap.enabled:true}")
+    private boolean mmapEnabled;
+
+    @Value("${parameters.mmap.minBytes:1048576}")
+    private long mmapMinBytes;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 文件读取和格式转换的线程，不占用WebSocket接收线程
+     */
+    private AsyncTaskExecutor ioExecutor;
+
+    public BatchJobService(FunASRService funASRService, RecognitionScheduler scheduler,
+                           RecognitionCache recognitionCache, AudioFormatPolicy formatPolicy,
+                           AudioPreprocessor preprocessor, TranscriptStore transcriptStore,
+                           Environment environment, RecognitionMetrics metrics) {
+        this.funASRService = funASRService;
+        this.scheduler = scheduler;
+        this.recognitionCache = recognitionCache;
+        this.formatPolicy = formatPolicy;
+        this.preprocessor = preprocessor;
+        this.transcriptStore = transcriptStore;
+        this.environment = environment;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void start() {
+        ioExecutor = TaskExecutors.create(environment, "batch-io-", ioThreads, ioThreads, Integer.MAX_VALUE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ioExecutor instanceof DisposableBean disposable) {
+            try {
+                disposable.destroy();
+            } catch (Exception e) {
+                log.warn("关闭批量识别线程池失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 提交已保存到服务器的文件
+     * @param names 文件名，与paths一一对应
+     * @param paths 文件路径
+     * @param hotWords 热词，所有文件共用
+     * @return 批量任务
+     */
+    public BatchJob submit(List<String> names, List<Path> paths, HotWords hotWords) {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("请提供音频文件");
+        }
+        if (paths.size() > maxFiles) {
+            throw new IllegalArgumentException("单个批量任务最多" + maxFiles + "个文件");
+        }
+        purgeExpired();
+
+        List<BatchJob.Item> items = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            items.add(new BatchJob.Item(i, names.get(i), paths.get(i)));
+        }
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), items);
+        jobs.put(job.getId(), job);
+        log.info("批量任务已提交: {}, 文件数: {}", job.getId(), items.size());
+
+        for (BatchJob.Item item : items) {
+            scheduler.submit(RecognitionScheduler.Priority.BATCH, () -> recognize(item, hotWords))
+                    .whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                            log.error("批量识别失败: {}, {}", item.getName(), cause.getMessage());
+                            item.fail("语音识别失败: " + cause.getMessage());
+                        } else {
+                            item.succeed(result);
+                        }
+                        job.checkFinished();
+                    });
+        }
+        return job;
+    }
+
+    /**
+     * 提交服务器本地的文件，路径必须位于allowedRoot之下
+     * 按解析符号链接后的真实路径检查，allowedRoot下指向目录外的链接同样被拒绝
+     * @param paths 文件路径
+     * @param hotWords 热词，所有文件共用
+     * @return 批量任务
+     */
+    public BatchJob submitLocalPaths(List<String> paths, HotWords hotWords) {
+        Path root;
+        try {
+            root = Paths.get(allowedRoot).toRealPath();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("批量识别目录不存在: " + allowedRoot);
+        }
+        List<String> names = new ArrayList<>(paths.size());
+        List<Path> resolved = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            Path file = root.resolve(path).normalize();
+            if (!file.startsWith(root)) {
+                throw new IllegalArgumentException("不允许访问的路径: " + path);
+            }
+            Path real;
+            try {
+                real = file.toRealPath();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("文件不存在: " + path);
+            }
+            if (!real.startsWith(root)) {
+                throw new IllegalArgumentException("不允许访问的路径: " + path);
+            }
+            if (!Files.isRegularFile(real)) {
+                throw new IllegalArgumentException("文件不存在: " + path);
+            }
+            names.add(path);
+            resolved.add(real);
+        }
+        return submit(names, resolved, hotWords);
+    }
+
+    /**
+     * 查询批量任务
+     * @param jobId 任务ID
+     * @return 任务，不存在或已过期时返回null
+     */
+    public BatchJob get(String jobId) {
+        purgeExpired();
+        return jobs.get(jobId);
+    }
+
+    private CompletableFuture<String> recognize(BatchJob.Item item, HotWords hotWords) {
+        String requestId = UUID.randomUUID().toString();
+        item.start(requestId);
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> readAudio(item.getPath()), ioExecutor)
+                .thenCompose(audio -> {
+                    String key = key(audio, hotWords);
+                    return recognize(requestId, audio, key, hotWords).thenApply(result -> {
+                        // 只放入写入队列，不等待数据库
+                        transcriptStore.save(new TranscriptRecord(requestId, "batch", key,
+                                audio.durationMillis(), result, null,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                        return result;
+                    });
+                })
+                .orTimeout(recognizeTimeoutSeconds, TimeUnit.SECONDS)
+                .whenComplete((result, ex) -> {
+                    // 超时只结束等待，FunASR会话还在进行；关闭后再释放调度名额，批量并发不超过batchMaxInFlight
+                    if (ex instanceof TimeoutException) {
+                        funASRService.cancel(requestId, ex);
+                    }
+                });
+    }
+
+    private CompletableFuture<String> recognize(String requestId, Audio audio, String key, HotWords hotWords) {
+        if (audio.wavFormat != null) {
+            return recognitionCache.get(key,
+                    () -> funASRService.recognizeEncoded(requestId, audio.data, audio.wavFormat, hotWords, null));
+        }
+        return recognitionCache.get(key, () -> funASRService.recognizeAudio(requestId,
+                preprocessor.process(audio.data), funASRService.getModel(), hotWords, null));
+    }
+
+    /**
+     * 结果缓存键，同时作为转写结果的音频哈希保存
+     */
+    private String key(Audio audio, HotWords hotWords) {
+        // 原始文件内容加上格式作为键，与PCM的键互不冲突
+        String mode = audio.wavFormat != null ? FunASRService.PASSTHROUGH_MODE + "/" + audio.wavFormat
+                : funASRService.getModel();
+        return RecognitionCache.key(audio.data, mode, hotWords.getHash());
+    }
+
+    /**
+     * 读取并转换文件，PCM/WAV大文件内存映射后直接切片，不复制到堆内存；配置的压缩格式读取原始内容
+     */
+    private Audio readAudio(Path path) {
+        long start = System.nanoTime();
+        try (AudioProbe probe = AudioUtils.probe(path.toFile(), mmapEnabled ? mmapMinBytes : -1)) {
+            String wavFormat = formatPolicy.passthroughFormat(probe, path);
+            boolean converted = probe.isSupported() && !probe.hasPcmBuffer();
+            ByteBuffer data = probe.readPcmBuffer();
+            if (converted) {
+                metrics.recordConvert("file", System.nanoTime() - start);
+            }
+            return new Audio(data, wavFormat);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取音频文件失败: " + path.getFileName(), e);
+        }
+    }
+
+    private void purgeExpired() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < expireBefore);
+    }
+
+    /**
+     * 读取的音频，wavFormat为null时是16kHz PCM，否则是原样发送的压缩文件
+     */
+    private static class Audio {
+        private final ByteBuffer data;
+        private final String wavFormat;
+
+        Audio(ByteBuffer data, String wavFormat) {
+            this.data = data;
+            this.wavFormat = wavFormat;
+        }
+
+        /**
+         * PCM的时长，压缩文件未知时返回null
+         */
+        Long durationMillis() {
+            return wavFormat != null ? null : data.remaining() * 1000L / AudioSender.PCM_BYTES_PER_SECOND;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package org.lijian.interview001.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个FunASR服务端点及其连接池
+ * 复用已完成握手的连接；连续建连失败达到阈值后标记为不健康，由FunASRConnectionPool的健康检查恢复
+ */
+public class FunASRBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(FunASRBackend.class);
+
+    private final String name;
+    private final String uri;
+    private final WebSocketClient webSocketClient;
+    private final FunASRConnectionPool.Settings settings;
+
+    private final Deque<FunASRConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Queue<CompletableFuture<FunASRConnection>> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger borrowed = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowTimeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final LongAdder connectFailureCount = new LongAdder();
+    private final LongAdder totalConnectNanos = new LongAdder();
+    private final AtomicLong maxConnectNanos = new AtomicLong();
+    private final LongAdder sessionCount = new LongAdder();
+    private final LongAdder totalSessionNanos = new LongAdder();
+    private final AtomicLong maxSessionNanos = new AtomicLong();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private volatile long lastFailureAt;
+
+    FunASRBackend(String name, String uri, WebSocketClient webSocketClient, FunASRConnectionPool.Settings settings) {
+        this.name = name;
+        this.uri = uri;
+        this.webSocketClient = webSocketClient;
+        this.settings = settings;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * 正在使用及等待中的会话数，用于最少未完成会话路由
+     */
+    int outstanding() {
+        return borrowed.get() + waiters.size();
+    }
+
+    /**
+     * 借出一条可用连接
+     * 优先复用空闲连接，未达上限时新建连接，否则排队等待归还，超过borrowTimeoutMillis后失败
+     * @return 连接的CompletableFuture
+     */
+    CompletableFuture<FunASRConnection> borrow() {
+        long start = System.nanoTime();
+        CompletableFuture<FunASRConnection> future = new CompletableFuture<>();
+        future.orTimeout(settings.borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        // 返回计数之后的阶段，调用方拿到连接时借出数已更新，后续路由不会看到旧的未完成数
+        CompletableFuture<FunASRConnection> result = future.whenComplete((connection, ex) -> {
+            recordWait(System.nanoTime() - start);
+            if (ex != null) {
+                waiters.remove(future);
+                if (ex instanceof TimeoutException) {
+                    borrowTimeoutCount.increment();
+                }
+                return;
+            }
+            connection.markBorrowed();
+            borrowed.incrementAndGet();
+            borrowCount.increment();
+        });
+
+        FunASRConnection connection = pollValidIdle();
+        if (connection != null) {
+            if (!future.complete(connection)) {
+                dispatch(connection);
+            }
+            return result;
+        }
+
+        if (tryReserve()) {
+            create(future);
+            return result;
+        }
+
+        waiters.offer(future);
+        // 入队期间可能已有连接归还或被销毁，重新检查一次，避免等待者错过唤醒
+        connection = pollValidIdle();
+        if (connection != null) {
+            dispatch(connection);
+        } else {
+            signalCapacity();
+        }
+        return result;
+    }
+
+    /**
+     * 识别完成后归还连接，已关闭的连接直接销毁
+     */
+    void release(FunASRConnection connection) {
+        if (!connection.markReturned()) {
+            return;
+        }
+        borrowed.decrementAndGet();
+        recordSession(connection);
+        connection.setListener(null);
+        if (!connection.isOpen()) {
+            destroy(connection);
+            return;
+        }
+        dispatch(connection);
+    }
+
+    /**
+     * 连接出现异常，不再复用
+     */
+    void invalidate(FunASRConnection connection) {
+        if (connection.markReturned()) {
+            borrowed.decrementAndGet();
+            recordSession(connection);
+        }
+        connection.setListener(null);
+        destroy(connection);
+    }
+
+    void shutdown() {
+        FunASRConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection);
+        }
+        CompletableFuture<FunASRConnection> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.completeExceptionally(new IllegalStateException("连接池已关闭"));
+        }
+    }
+
+    /**
+     * 主动健康检查：建立一条新连接，成功后放入空闲队列
+     * 仅在不健康或当前没有任何连接时执行，健康且有连接的端点由借出前的Ping检查
+     */
+    void checkHealth() {
+        if (healthy && total.get() > 0) {
+            return;
+        }
+        if (!tryReserve()) {
+            return;
+        }
+        log.debug("FunASR服务健康检查: {}", this);
+        create(null);
+    }
+
+    /**
+     * 定期回收空闲过久或已断开的连接，并补足最小空闲连接数
+     */
+    void evict() {
+        long now = System.currentTimeMillis();
+        for (FunASRConnection connection : idle) {
+            boolean expired = now - connection.getLastUsed() > settings.maxIdleMillis && total.get() > settings.minIdle;
+            if ((expired || !connection.isOpen()) && idle.remove(connection)) {
+                destroy(connection);
+            }
+        }
+        while (healthy && total.get() < settings.minIdle && tryReserve()) {
+            create(null);
+        }
+    }
+
+    /**
+     * 端点统计信息
+     * @return 健康状态、连接数、等待数、建连和会话耗时等指标
+     */
+    Map<String, Object> stats() {
+        long borrows = borrowCount.sum();
+        long connects = createdCount.sum();
+        long sessions = sessionCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("uri", uri);
+        stats.put("healthy", healthy);
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("lastFailureAt", lastFailureAt);
+        stats.put("maxSize", settings.maxSize);
+        stats.put("minIdle", settings.minIdle);
+        stats.put("total", total.get());
+        stats.put("idle", idle.size());
+        stats.put("active", borrowed.get());
+        stats.put("waiting", waiters.size());
+        stats.put("borrowCount", borrows);
+        stats.put("borrowTimeoutCount", borrowTimeoutCount.sum());
+        stats.put("createdCount", connects);
+        stats.put("destroyedCount", destroyedCount.sum());
+        stats.put("connectFailureCount", connectFailureCount.sum());
+        stats.put("validationFailureCount", validationFailureCount.sum());
+        stats.put("avgWaitMillis", borrows == 0 ? 0.0 : totalWaitNanos.sum() / (double) borrows / 1_000_000);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        stats.put("avgConnectMillis", connects == 0 ? 0.0 : totalConnectNanos.sum() / (double) connects / 1_000_000);
+        stats.put("maxConnectMillis", maxConnectNanos.get() / 1_000_000.0);
+        stats.put("sessionCount", sessions);
+        stats.put("avgSessionMillis", sessions == 0 ? 0.0 : totalSessionNanos.sum() / (double) sessions / 1_000_000);
+        stats.put("maxSessionMillis", maxSessionNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void recordSession(FunASRConnection connection) {
+        long sessionNanos = System.nanoTime() - connection.getBorrowedAt();
+        sessionCount.increment();
+        totalSessionNanos.add(sessionNanos);
+        maxSessionNanos.accumulateAndGet(sessionNanos, Math::max);
+    }
+
+    private void recordConnectSuccess(long connectNanos) {
+        totalConnectNanos.add(connectNanos);
+        maxConnectNanos.accumulateAndGet(connectNanos, Math::max);
+        consecutiveFailures.set(0);
+        if (!healthy) {
+            healthy = true;
+            log.info("FunASR服务恢复可用: {}", this);
+        }
+    }
+
+    /**
+     * 被动健康检查：连续建连失败达到阈值后不再向该端点路由新请求
+     */
+    private void recordConnectFailure(Throwable ex) {
+        connectFailureCount.increment();
+        lastFailureAt = System.currentTimeMillis();
+        if (consecutiveFailures.incrementAndGet() >= settings.failureThreshold && healthy) {
+            healthy = false;
+            log.warn("FunASR服务标记为不可用: {}, {}", this, ex.getMessage());
+        }
+    }
+
+    private FunASRConnection pollValidIdle() {
+        FunASRConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (validate(connection)) {
+                return connection;
+            }
+            validationFailureCount.increment();
+            destroy(connection);
+        }
+        return null;
+    }
+
+    private boolean validate(FunASRConnection connection) {
+        if (!connection.isOpen()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - connection.getLastUsed() > settings.maxIdleMillis) {
+            return false;
+        }
+        if (settings.testOnBorrow) {
+            try {
+                connection.ping();
+            } catch (Exception e) {
+                log.debug("连接健康检查失败: {}, {}", connection, e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把一条空闲连接交给等待者，没有等待者时放回空闲队列
+     */
+    private void dispatch(FunASRConnection connection) {
+        CompletableFuture<FunASRConnection> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.complete(connection)) {
+                return;
+            }
+        }
+        connection.touch();
+        // 后进先出，让最近使用过的连接保持活跃，多余连接自然空闲后被回收
+        idle.offerFirst(connection);
+        if (!waiters.isEmpty()) {
+            FunASRConnection again = idle.pollFirst();
+            if (again != null) {
+                dispatch(again);
+            }
+        }
+    }
+
+    private boolean tryReserve() {
+        while (true) {
+            int current = total.get();
+            if (current >= settings.maxSize) {
+                return false;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 有容量空出时为排队中的等待者新建连接
+     */
+    private void signalCapacity() {
+        if (waiters.isEmpty() || !tryReserve()) {
+            return;
+        }
+        CompletableFuture<FunASRConnection> waiter = waiters.poll();
+        if (waiter == null) {
+            total.decrementAndGet();
+            return;
+        }
+        create(waiter);
+    }
+
+    /**
+     * 新建连接，调用前必须已通过tryReserve占用名额
+     * @param target 新连接交付的目标，为null时放入空闲队列
+     */
+    private void create(CompletableFuture<FunASRConnection> target) {
+        long start = System.nanoTime();
+        connect().whenComplete((connection, ex) -> {
+            if (ex != null) {
+                total.decrementAndGet();
+                recordConnectFailure(ex);
+                if (target != null) {
+                    target.completeExceptionally(ex);
+                }
+                signalCapacity();
+                return;
+            }
+            createdCount.increment();
+            recordConnectSuccess(System.nanoTime() - start);
+            if (target == null || !target.complete(connection)) {
+                dispatch(connection);
+            }
+        });
+    }
+
+    private CompletableFuture<FunASRConnection> connect() {
+        FunASRConnection connection = new FunASRConnection(name + "-" + sequence.incrementAndGet(), this);
+        CompletableFuture<FunASRConnection> ready = connection.ready();
+        try {
+            webSocketClient.execute(new ConnectionHandler(connection), uri)
+                    .whenComplete((session, ex) -> {
+                        if (ex != null) {
+                            log.error("连接FunASR服务失败: {}, {}", uri, ex.getMessage());
+                            ready.completeExceptionally(ex);
+                        }
+                        // 成功案例在ConnectionHandler.afterConnectionEstablished中处理
+                    });
+        } catch (Exception e) {
+            log.error("创建WebSocket连接失败: {}", e.getMessage(), e);
+            ready.completeExceptionally(e);
+        }
+        return ready.orTimeout(settings.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void destroy(FunASRConnection connection) {
+        if (!connection.markDestroyed()) {
+            return;
+        }
+        idle.remove(connection);
+        total.decrementAndGet();
+        destroyedCount.increment();
+        connection.closeQuietly();
+        signalCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "FunASRBackend[" + name + ", " + uri + "]";
+    }
+
+    /**
+     * 每条连接一个处理器，把服务端消息转发给当前借用者
+     */
+    private class ConnectionHandler extends TextWebSocketHandler {
+        private final FunASRConnection connection;
+
+        ConnectionHandler(FunASRConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            // 装饰为线程安全的会话，发送缓冲超过限制或发送超时时终止连接
+            WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(
+                    session, settings.sendTimeLimitMillis, settings.sendBufferSizeLimit);
+            if (!connection.attach(decorated)) {
+                // 握手已超时被放弃
+                session.close();
+                return;
+            }
+            log.info("与FunASR服务器连接建立成功: {}", connection);
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            FunASRConnection.Listener listener = connection.getListener();
+            if (listener != null) {
+                listener.handleTextMessage(message.getPayload());
+            } else {
+                log.debug("空闲连接收到消息，已忽略: {}", message.getPayload());
+            }
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            FunASRConnection.Listener listener = connection.getListener();
+            if (listener != null) {
+                listener.handleTransportError(exception);
+            } else {
+                log.warn("空闲连接传输错误: {}, {}", connection, exception.getMessage());
+                destroy(connection);
+            }
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+            log.info("WebSocket连接已关闭: {}, {}", status, connection);
+            FunASRConnection.Listener listener = connection.getListener();
+            if (listener != null) {
+                listener.afterConnectionClosed(status);
+            } else if (!connection.isBorrowed()) {
+                destroy(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.lijian.interview001.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 连接池中的一条FunASR WebSocket连接
+ * 连接本身与请求无关，借出期间通过Listener把服务端消息转发给当前请求
+ */
+public class FunASRConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(FunASRConnection.class);
+
+    /**
+     * 当前借用者的消息回调
+     */
+    public interface Listener {
+
+        void handleTextMessage(String payload) throws Exception;
+
+        void handleTransportError(Throwable exception);
+
+        void afterConnectionClosed(CloseStatus status);
+    }
+
+    private final String id;
+    private final FunASRBackend backend;
+    private final CompletableFuture<FunASRConnection> ready = new CompletableFuture<>();
+    private final AtomicBoolean borrowed = new AtomicBoolean();
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+
+    private volatile WebSocketSession session;
+    private volatile Listener listener;
+    private volatile long lastUsed = System.currentTimeMillis();
+    private volatile long borrowedAt;
+
+    FunASRConnection(String id, FunASRBackend backend) {
+        this.id = id;
+        this.backend = backend;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 连接所属的FunASR服务端点
+     */
+    public FunASRBackend getBackend() {
+        return backend;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public boolean isOpen() {
+        WebSocketSession current = session;
+        return current != null && current.isOpen() && !destroyed.get();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    Listener getListener() {
+        return listener;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    CompletableFuture<FunASRConnection> ready() {
+        return ready;
+    }
+
+    /**
+     * 握手完成后绑定会话，握手已超时被放弃时返回false
+     */
+    boolean attach(WebSocketSession session) {
+        this.session = session;
+        return ready.complete(this);
+    }
+
+    boolean markBorrowed() {
+        borrowedAt = System.nanoTime();
+        return borrowed.compareAndSet(false, true);
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    boolean markReturned() {
+        return borrowed.compareAndSet(true, false);
+    }
+
+    boolean isBorrowed() {
+        return borrowed.get();
+    }
+
+    boolean markDestroyed() {
+        return destroyed.compareAndSet(false, true);
+    }
+
+    /**
+     * 借出前的健康检查，发送一个Ping帧确认底层连接可写
+     * 只对空闲队列中的连接调用，不会与识别会话的音频发送同时写同一个会话
+     */
+    void ping() throws IOException {
+        session.sendMessage(new PingMessage());
+    }
+
+    void closeQuietly() {
+        WebSocketSession current = session;
+        if (current != null && current.isOpen()) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                log.warn("关闭WebSocket连接失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FunASRConnection[" + id + "]";
+    }
+}
@@ -0,0 +1,274 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.client.WebSocketClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FunASR WebSocket连接池
+ * parameters.serverIpPort可配置多个以逗号分隔的服务地址，每个地址一个FunASRBackend；
+ * 借用时路由到未完成会话最少的健康端点，建连失败时换一个端点重试
+ */
+@Component
+public class FunASRConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(FunASRConnectionPool.class);
+
+    private final WebSocketClient webSocketClient;
+
+    @Value("${parameters.serverIpPort}")
+    private String[] serverIpPorts;
+
+    @Value("${parameters.pool.minIdle:0}")
+    private int minIdle;
+
+    @Value("${parameters.pool.maxSize:10}")
+    private int maxSize;
+
+    @Value("${parameters.pool.maxIdleMillis:60000}")
+    private long maxIdleMillis;
+
+    @Value("${parameters.pool.borrowTimeoutMillis:5000}")
+    private long borrowTimeoutMillis;
+
+    @Value("${parameters.pool.connectTimeoutMillis:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${parameters.pool.evictIntervalMillis:30000}")
+    private long evictIntervalMillis;
+
+    @Value("${parameters.pool.testOnBorrow:true}")
+    private boolean testOnBorrow;
+
+    @Value("${parameters.pool.sendTimeLimitMillis:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${parameters.pool.sendBufferSizeLimit:1048576}")
+    private int sendBufferSizeLimit;
+
+    @Value("${parameters.health.failureThreshold:3}")
+    private int failureThreshold;
+
+    @Value("${parameters.health.intervalMillis:10000}")
+    private long healthCheckIntervalMillis;
+
+    @Value("${parameters.health.maxAttempts:2}")
+    private int maxAttempts;
+
+    private final List<FunASRBackend> backends = new ArrayList<>();
+    private final AtomicInteger nextBackend = new AtomicInteger();
+    private final LongAdder failoverCount = new LongAdder();
+
+    private ScheduledExecutorService evictor;
+
+    public FunASRConnectionPool(WebSocketClient webSocketClient) {
+        this.webSocketClient = webSocketClient;
+    }
+
+    @PostConstruct
+    public void start() {
+        Settings settings = new Settings(minIdle, maxSize, maxIdleMillis, borrowTimeoutMillis, connectTimeoutMillis,
+                testOnBorrow, sendTimeLimitMillis, sendBufferSizeLimit, failureThreshold);
+        for (String uri : serverIpPorts) {
+            if (!uri.isBlank()) {
+                backends.add(new FunASRBackend("funasr" + backends.size(), uri.trim(), webSocketClient, settings));
+            }
+        }
+        if (backends.isEmpty()) {
+            throw new IllegalStateException("未配置FunASR服务地址: parameters.serverIpPort");
+        }
+        log.info("FunASR服务端点: {}", backends);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "funasr-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evict, evictIntervalMillis, evictIntervalMillis, TimeUnit.MILLISECONDS);
+        evictor.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        backends.forEach(FunASRBackend::shutdown);
+    }
+
+    /**
+     * 借出一条可用连接
+     * 选择未完成会话最少的健康端点；该端点建连失败或等待超时时换一个端点重试，最多maxAttempts次
+     * @return 连接的CompletableFuture
+     */
+    public CompletableFuture<FunASRConnection> borrow() {
+        return borrow(new HashSet<>(), 1);
+    }
+
+    private CompletableFuture<FunASRConnection> borrow(Set<FunASRBackend> tried, int attempt) {
+        FunASRBackend backend = choose(tried);
+        if (backend == null) {
+            return CompletableFuture.failedFuture(new IOException("没有可用的FunASR服务"));
+        }
+        tried.add(backend);
+
+        return backend.borrow().handle((connection, ex) -> {
+            if (ex == null) {
+                return CompletableFuture.completedFuture(connection);
+            }
+            if (attempt >= maxAttempts || tried.size() >= backends.size()) {
+                return CompletableFuture.<FunASRConnection>failedFuture(ex);
+            }
+            failoverCount.increment();
+            log.warn("FunASR服务{}获取连接失败，切换端点重试: {}", backend.getUri(), ex.getMessage());
+            return borrow(tried, attempt + 1);
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * 最少未完成会话路由，相同时轮询；没有健康端点时退回到未尝试过的任意端点
+     */
+    private FunASRBackend choose(Set<FunASRBackend> tried) {
+        int size = backends.size();
+        int offset = Math.floorMod(nextBackend.getAndIncrement(), size);
+        FunASRBackend best = null;
+        FunASRBackend fallback = null;
+        for (int i = 0; i < size; i++) {
+            FunASRBackend backend = backends.get((offset + i) % size);
+            if (tried.contains(backend)) {
+                continue;
+            }
+            if (!backend.isHealthy()) {
+                if (fallback == null) {
+                    fallback = backend;
+                }
+                continue;
+            }
+            if (best == null || backend.outstanding() < best.outstanding()) {
+                best = backend;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    /**
+     * 识别完成后归还连接，已关闭的连接直接销毁
+     * @param connection 连接
+     */
+    public void release(FunASRConnection connection) {
+        connection.getBackend().release(connection);
+    }
+
+    /**
+     * 连接出现异常，不再复用
+     * @param connection 连接
+     */
+    public void invalidate(FunASRConnection connection) {
+        connection.getBackend().invalidate(connection);
+    }
+
+    /**
+     * 连接池统计信息
+     * @return 汇总的连接数、等待数，以及每个端点的健康状态和耗时统计
+     */
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> backendStats = new ArrayList<>(backends.size());
+        int total = 0;
+        int idle = 0;
+        int active = 0;
+        int waiting = 0;
+        int healthy = 0;
+        for (FunASRBackend backend : backends) {
+            Map<String, Object> stats = backend.stats();
+            total += (Integer) stats.get("total");
+            idle += (Integer) stats.get("idle");
+            active += (Integer) stats.get("active");
+            waiting += (Integer) stats.get("waiting");
+            healthy += backend.isHealthy() ? 1 : 0;
+            backendStats.add(stats);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", maxSize * backends.size());
+        stats.put("total", total);
+        stats.put("idle", idle);
+        stats.put("active", active);
+        stats.put("waiting", waiting);
+        stats.put("healthyBackends", healthy);
+        stats.put("failoverCount", failoverCount.sum());
+        stats.put("backends", backendStats);
+        return stats;
+    }
+
+    /**
+     * 定期回收空闲过久或已断开的连接，并补足最小空闲连接数
+     */
+    private void evict() {
+        for (FunASRBackend backend : backends) {
+            try {
+                backend.evict();
+            } catch (Exception e) {
+                log.warn("连接池回收任务执行失败: {}, {}", backend, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 主动健康检查，对不可用或没有连接的端点尝试建立连接
+     */
+    private void checkHealth() {
+        for (FunASRBackend backend : backends) {
+            try {
+                backend.checkHealth();
+            } catch (Exception e) {
+                log.warn("健康检查执行失败: {}, {}", backend, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 每个端点共用的连接池参数
+     */
+    static class Settings {
+        final int minIdle;
+        final int maxSize;
+        final long maxIdleMillis;
+        final long borrowTimeoutMillis;
+        final long connectTimeoutMillis;
+        final boolean testOnBorrow;
+        final int sendTimeLimitMillis;
+        final int sendBufferSizeLimit;
+        final int failureThreshold;
+
+        Settings(int minIdle, int maxSize, long maxIdleMillis, long borrowTimeoutMillis, long connectTimeoutMillis,
+                 boolean testOnBorrow, int sendTimeLimitMillis, int sendBufferSizeLimit, int failureThreshold) {
+            this.minIdle = minIdle;
+            this.maxSize = maxSize;
+            this.maxIdleMillis = maxIdleMillis;
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.testOnBorrow = testOnBorrow;
+            this.sendTimeLimitMillis = sendTimeLimitMillis;
+            this.sendBufferSizeLimit = sendBufferSizeLimit;
+            this.failureThreshold = failureThreshold;
+        }
+    }
+}
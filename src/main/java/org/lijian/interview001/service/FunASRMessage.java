@@ -0,0 +1,161 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * FunASR服务端返回的识别消息
+ * online/2pass模式下每个会话每秒有多条消息，按固定字段绑定，避免通用Map的装箱和类型转换
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FunASRMessage {
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    @JsonProperty("mode")
+    private String mode;
+
+    @JsonProperty("text")
+    private String text;
+
+    @JsonProperty("is_final")
+    private boolean isFinal;
+
+    @JsonProperty("wav_name")
+    private String wavName;
+
+    /**
+     * 字时间戳，FunASR版本不同可能是JSON字符串"[[开始,结束],...]"，也可能是数组
+     */
+    @JsonProperty("timestamp")
+    private Object timestamp;
+
+    /**
+     * 分句结果，只出现在offline/2pass-offline消息中，保留服务端的全部字段
+     */
+    @JsonProperty("stamp_sents")
+    private List<Map<String, Object>> stampSents;
+
+    /**
+     * offline、online、2pass-online、2pass-offline
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @JsonProperty("is_final")
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    public String getWavName() {
+        return wavName;
+    }
+
+    public Object getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Map<String, Object>> getStampSents() {
+        return stampSents;
+    }
+
+    /**
+     * 结果覆盖到的音频结束时间，取最后一个分句或字时间戳的结束值
+     * @return 毫秒数，消息不带时间戳时返回-1
+     */
+    @JsonIgnore
+    public long getEndMillis() {
+        if (stampSents != null && !stampSents.isEmpty()
+                && stampSents.get(stampSents.size() - 1).get("end") instanceof Number end) {
+            return end.longValue();
+        }
+        if (timestamp == null) {
+            return -1;
+        }
+        // "[[开始,结束],...]"或对应的数组，最后一个数字即结束时间
+        String text = timestamp.toString();
+        int end = text.length();
+        while (end > 0 && !Character.isDigit(text.charAt(end - 1))) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && Character.isDigit(text.charAt(start - 1))) {
+            start--;
+        }
+        return start < end ? Long.parseLong(text.substring(start, end)) : -1;
+    }
+
+    /**
+     * 复制一份消息并换算其中的时间，用于把压缩静音后的时间还原到原音频
+     * @param mapping 毫秒数的换算函数
+     * @return 时间戳和分句时间换算后的消息
+     */
+    public FunASRMessage mapTimes(LongUnaryOperator mapping) {
+        FunASRMessage mapped = new FunASRMessage();
+        mapped.mode = mode;
+        mapped.text = text;
+        mapped.isFinal = isFinal;
+        mapped.wavName = wavName;
+        if (timestamp instanceof String value) {
+            // 保持JSON字符串的形式，只替换其中的数字
+            Matcher matcher = NUMBER.matcher(value);
+            StringBuilder builder = new StringBuilder(value.length() + 16);
+            while (matcher.find()) {
+                matcher.appendReplacement(builder, Long.toString(mapping.applyAsLong(Long.parseLong(matcher.group()))));
+            }
+            matcher.appendTail(builder);
+            mapped.timestamp = builder.toString();
+        } else {
+            mapped.timestamp = mapValue(timestamp, mapping);
+        }
+        if (stampSents != null) {
+            mapped.stampSents = new ArrayList<>(stampSents.size());
+            for (Map<String, Object> sentence : stampSents) {
+                Map<String, Object> copy = new LinkedHashMap<>(sentence);
+                for (String key : new String[]{"start", "end", "ts_list"}) {
+                    if (copy.containsKey(key)) {
+                        copy.put(key, mapValue(copy.get(key), mapping));
+                    }
+                }
+                mapped.stampSents.add(copy);
+            }
+        }
+        return mapped;
+    }
+
+    private static Object mapValue(Object value, LongUnaryOperator mapping) {
+        if (value instanceof Number number) {
+            return mapping.applyAsLong(number.longValue());
+        }
+        if (value instanceof List<?> list) {
+            List<Object> mapped = new ArrayList<>(list.size());
+            for (Object item : list) {
+                mapped.add(mapValue(item, mapping));
+            }
+            return mapped;
+        }
+        return value;
+    }
+
+    /**
+     * online中间结果，会被随后的offline结果修正
+     */
+    @JsonIgnore
+    public boolean isPartial() {
+        return mode != null && mode.endsWith("online");
+    }
+}
@@ -1,35 +1,70 @@
 package org.lijian.interview001.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.lijian.interview001.utils.SilenceTrimmer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.client.WebSocketClient;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class FunASRService {
 
     private static final Logger log = LoggerFactory.getLogger(FunASRService.class);
 
-    private final WebSocketClient webSocketClient;
-    private final ObjectMapper objectMapper;
+    /**
+     * online/2pass模式的分块参数，[回看, 当前, 前瞻]，单位60ms
+     */
+    private static final int[] ONLINE_CHUNK_SIZE = {5, 10, 5};
 
-    @Value("${parameters.serverIpPort}")
-    private String serverIpPort;
+    private static final int ONLINE_CHUNK_INTERVAL = 10;
+
+    /**
+     * 音频结束标记，内容固定，所有会话共用
+     */
+    private static final TextMessage END_MESSAGE = new TextMessage("{\"end\":true}");
+
+    /**
+     * 初始化消息按模式缓存在HotWords中，其他取值每次序列化，避免请求参数使缓存无限增长
+     */
+    private static final Set<String> CACHED_MODES = Set.of("offline", "online", "2pass");
+
+    /**
+     * 原样发送压缩音频时的识别模式，FunASR只在offline模式下按wav_format解码整个文件
+     */
+    public static final String PASSTHROUGH_MODE = "offline";
+
+    private final FunASRConnectionPool connectionPool;
+    private final AudioSender audioSender;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader messageReader;
+    private final RecognitionMetrics metrics;
 
     @Value("${parameters.model}")
     private String model;
@@ -37,13 +72,87 @@ public class FunASRService {
     @Value("${parameters.hotWords:}")
     private String hotWords;
 
+    @Value("${parameters.session.connectTimeoutMillis:15000}")
+    private long connectTimeoutMillis;
+
+    @Value("${parameters.session.firstResultTimeoutMillis:60000}")
+    private long firstResultTimeoutMillis;
+
+    @Value("${parameters.session.maxLifetimeMillis:1800000}")
+    private long maxLifetimeMillis;
+
+    @Value("${parameters.session.reapIntervalMillis:5000}")
+    private long reapIntervalMillis;
+
     private final Map<String, CompletableFuture<String>> resultMap = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<WebSocketSession>> sessionMap = new ConcurrentHashMap<>();
-    private final Map<String, StringBuilder> resultTextMap = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<FunASRConnection>> sessionMap = new ConcurrentHashMap<>();
+    private final Map<String, Transcript> resultTextMap = new ConcurrentHashMap<>();
+    private final Map<String, SessionClock> sessionClocks = new ConcurrentHashMap<>();
+
+    /**
+     * 由parameters.hotWords解析，启动时创建
+     */
+    private HotWords defaultHotWords = HotWords.NONE;
+
+    private ScheduledExecutorService reaper;
+
+    /**
+     * 上一轮回收时发现的残留条目，只在回收线程上访问
+     */
+    private Set<String> suspectedOrphans = Set.of();
 
-    public FunASRService(WebSocketClient webSocketClient, ObjectMapper objectMapper) {
-        this.webSocketClient = webSocketClient;
+    public FunASRService(FunASRConnectionPool connectionPool, AudioSender audioSender, ObjectMapper objectMapper,
+                         RecognitionMetrics metrics) {
+        this.connectionPool = connectionPool;
+        this.audioSender = audioSender;
         this.objectMapper = objectMapper;
+        this.messageReader = objectMapper.readerFor(FunASRMessage.class);
+        this.metrics = metrics;
+        metrics.gaugeSize("asr.sessions.active", resultMap);
+        metrics.gaugeSize("asr.sessions.connections", sessionMap);
+        metrics.gauge("asr.sessions.oldest", "进行中最久的识别会话已持续的秒数", this::oldestSessionSeconds);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            // 配置由运维维护，不受请求热词的数量和长度限制；格式错误时启动失败，而不是等到第一次识别
+            defaultHotWords = HotWords.parse(hotWords, objectMapper, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("parameters.hotWords配置错误: " + e.getMessage(), e);
+        }
+        if (reapIntervalMillis <= 0) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "funasr-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::reapExpired, reapIntervalMillis, reapIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    /**
+     * 配置的默认识别模式
+     * @return offline/online/2pass
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * 配置的热词，请求未指定热词时使用
+     * @return 热词，未配置时为HotWords.NONE
+     */
+    public HotWords getHotWords() {
+        return defaultHotWords;
     }
 
     /**
@@ -52,117 +161,434 @@ public class FunASRService {
      * @return 返回识别结果的CompletableFuture
      */
     public CompletableFuture<String> recognizeAudio(byte[] audioData) {
-        String requestId = UUID.randomUUID().toString();
-        return startSession(requestId)
-                .thenCompose(session -> {
+        return recognizeAudio(audioData, 0, audioData.length);
+    }
+
+    /**
+     * 识别字节数组中的一段音频，例如AudioProbe直通时源数组中的PCM数据段
+     * @param audioData 音频数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(byte[] audioData, int offset, int length) {
+        return recognizeAudio(audioData, offset, length, model, null);
+    }
+
+    /**
+     * 以指定模式识别字节数组中的一段音频
+     * @param audioData 音频数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param mode 识别模式(offline/online/2pass)
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(byte[] audioData, int offset, int length, String mode,
+                                                    Consumer<FunASRMessage> messageListener) {
+        return recognizeAudio(ByteBuffer.wrap(audioData, offset, length), mode, messageListener);
+    }
+
+    /**
+     * 识别缓冲区中的PCM数据，例如内存映射的文件，分块发送时直接切片不复制
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM数据，识别结束前调用方不能修改
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(ByteBuffer pcm) {
+        return recognizeAudio(pcm, model, null);
+    }
+
+    /**
+     * 以指定模式识别缓冲区中的PCM数据
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM数据，识别结束前调用方不能修改
+     * @param mode 识别模式(offline/online/2pass)
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(ByteBuffer pcm, String mode, Consumer<FunASRMessage> messageListener) {
+        return recognizeAudio(null, pcm, mode, null, messageListener);
+    }
+
+    /**
+     * 以指定模式和热词识别缓冲区中的PCM数据
+     * @param requestId 请求ID，用于指标、日志和转写结果的关联，为null时生成
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM数据，识别结束前调用方不能修改
+     * @param mode 识别模式(offline/online/2pass)
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(String requestId, ByteBuffer pcm, String mode, HotWords hotWords,
+                                                    Consumer<FunASRMessage> messageListener) {
+        return recognize(requestId, mode, null, hotWords, messageListener, id -> sendAudioData(id, mode, pcm));
+    }
+
+    /**
+     * 识别压缩过静音的PCM数据，回调中的时间戳已换算为原音频的时间
+     * @param audio 压缩结果
+     * @param mode 识别模式(offline/online/2pass)
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(SilenceTrimmer.Result audio, String mode,
+                                                    Consumer<FunASRMessage> messageListener) {
+        return recognizeAudio(null, audio, mode, null, messageListener);
+    }
+
+    /**
+     * 以指定热词识别压缩过静音的PCM数据，回调中的时间戳已换算为原音频的时间
+     * @param requestId 请求ID，为null时生成
+     * @param audio 压缩结果
+     * @param mode 识别模式(offline/online/2pass)
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeAudio(String requestId, SilenceTrimmer.Result audio, String mode,
+                                                    HotWords hotWords, Consumer<FunASRMessage> messageListener) {
+        Consumer<FunASRMessage> listener = messageListener;
+        if (messageListener != null && audio.isTrimmed()) {
+            listener = message -> messageListener.accept(message.mapTimes(audio::toOriginalMillis));
+        }
+        return recognizeAudio(requestId, audio.getPcm(), mode, hotWords, listener);
+    }
+
+    /**
+     * 原样发送压缩音频(mp3、m4a等)，在初始化消息中声明格式，由FunASR解码
+     * 以offline模式识别，不经过本地转换，发送的字节数也远小于PCM
+     * @param audio position到limit之间的原始文件内容，识别结束前调用方不能修改
+     * @param wavFormat 文件格式，如mp3
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeEncoded(ByteBuffer audio, String wavFormat, Consumer<FunASRMessage> messageListener) {
+        return recognizeEncoded(null, audio, wavFormat, null, messageListener);
+    }
+
+    /**
+     * 以指定热词原样发送压缩音频
+     * @param requestId 请求ID，为null时生成
+     * @param audio position到limit之间的原始文件内容，识别结束前调用方不能修改
+     * @param wavFormat 文件格式，如mp3
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeEncoded(String requestId, ByteBuffer audio, String wavFormat,
+                                                      HotWords hotWords, Consumer<FunASRMessage> messageListener) {
+        return recognize(requestId, PASSTHROUGH_MODE, wavFormat, hotWords, messageListener,
+                id -> sendAudioData(id, PASSTHROUGH_MODE, audio));
+    }
+
+    /**
+     * 原样发送压缩音频流，边读边发
+     * @param audio 原始文件内容，识别结束前调用方不能关闭
+     * @param wavFormat 文件格式，如mp3
+     * @param messageListener 识别消息回调，可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeEncoded(InputStream audio, String wavFormat, Consumer<FunASRMessage> messageListener) {
+        return recognizeEncoded(null, audio, wavFormat, null, messageListener);
+    }
+
+    /**
+     * 以指定热词原样发送压缩音频流，边读边发
+     * @param requestId 请求ID，为null时生成
+     * @param audio 原始文件内容，识别结束前调用方不能关闭
+     * @param wavFormat 文件格式，如mp3
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeEncoded(String requestId, InputStream audio, String wavFormat,
+                                                      HotWords hotWords, Consumer<FunASRMessage> messageListener) {
+        return recognize(requestId, PASSTHROUGH_MODE, wavFormat, hotWords, messageListener,
+                id -> sendAudioStream(id, PASSTHROUGH_MODE, audio));
+    }
+
+    /**
+     * 流式识别，音频流在独占的读取线程上边读边发，调用方不阻塞
+     * @param pcmStream 16kHz、16bit、单声道PCM数据流，识别结束前调用方不能关闭
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeStream(InputStream pcmStream) {
+        return recognizeStream(pcmStream, model, null);
+    }
+
+    /**
+     * 流式识别，服务端每返回一条识别消息立即回调，可用于增量展示
+     * @param pcmStream 16kHz、16bit、单声道PCM数据流，识别结束前调用方不能关闭
+     * @param mode 识别模式(offline/online/2pass)
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeStream(InputStream pcmStream, String mode, Consumer<FunASRMessage> messageListener) {
+        return recognizeStream(null, pcmStream, mode, null, messageListener);
+    }
+
+    /**
+     * 以指定热词流式识别
+     * @param requestId 请求ID，为null时生成
+     * @param pcmStream 16kHz、16bit、单声道PCM数据流，识别结束前调用方不能关闭
+     * @param mode 识别模式(offline/online/2pass)
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 返回识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> recognizeStream(String requestId, InputStream pcmStream, String mode,
+                                                     HotWords hotWords, Consumer<FunASRMessage> messageListener) {
+        return recognize(requestId, mode, null, hotWords, messageListener, id -> sendAudioStream(id, mode, pcmStream));
+    }
+
+    /**
+     * 借用连接、发送音频、发送结束标记，整个流程异步执行
+     * @param id 请求ID，为null时生成
+     * @param mode 识别模式
+     * @param wavFormat 原样发送的音频格式，PCM为null
+     * @param hotWords 热词，为null时使用配置的热词
+     * @param messageListener 识别消息回调，可以为null
+     * @param sender 按请求ID发送音频的函数
+     * @return 返回识别结果的CompletableFuture
+     */
+    private CompletableFuture<String> recognize(String id, String mode, String wavFormat, HotWords hotWords,
+                                                Consumer<FunASRMessage> messageListener,
+                                                Function<String, CompletableFuture<Long>> sender) {
+        String requestId = id != null ? id : UUID.randomUUID().toString();
+        CompletableFuture<String> resultFuture = new CompletableFuture<>();
+        RecognitionMetrics.Trace trace = metrics.start(requestId, mode);
+        trace.stage("session");
+        Consumer<FunASRMessage> listener = messageListener;
+        if (wavFormat != null) {
+            // 压缩音频的时长由识别结果的时间戳得到
+            trace.format(wavFormat);
+            listener = message -> {
+                trace.audioEnd(message.getEndMillis());
+                if (messageListener != null) {
+                    messageListener.accept(message);
+                }
+            };
+        }
+        return startSession(requestId, mode, wavFormat, hotWords != null ? hotWords : getHotWords(), resultFuture, listener)
+                // 发送音频数据
+                .thenCompose(connection -> {
+                    trace.stage("send");
+                    return sender.apply(requestId);
+                })
+                .thenCompose(bytes -> {
+                    trace.sent(bytes);
                     try {
-                        // 发送音频数据
-                        sendAudioData(requestId, audioData);
                         // 告知服务器音频结束
                         finishAudioRecognition(requestId);
-                        return resultMap.get(requestId);
+                        trace.stage("processing");
+                        return resultFuture;
                     } catch (IOException e) {
-                        CompletableFuture<String> failedFuture = new CompletableFuture<>();
-                        failedFuture.completeExceptionally(e);
-                        return failedFuture;
+                        return CompletableFuture.<String>failedFuture(e);
                     }
+                })
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        cleanup(requestId, false);
+                    }
+                    trace.stop(ex);
                 });
     }
 
     /**
-     * 开始一个WebSocket会话
-     * @param requestId 请求ID
-     * @return 返回会话的CompletableFuture
+     * 打开一个流式识别会话，音频由调用方分段推送
+     * @return 会话就绪后完成的CompletableFuture
+     */
+    public CompletableFuture<RecognitionSession> openSession() {
+        return openSession(model, null);
+    }
+
+    /**
+     * 以指定模式打开流式识别会话，服务端的每条识别消息(含online中间结果)到达时立即回调
+     * @param mode 识别模式(offline/online/2pass)
+     * @param messageListener 识别消息回调，在WebSocket接收线程上执行，不能阻塞；可以为null
+     * @return 会话就绪后完成的CompletableFuture
      */
-    private CompletableFuture<WebSocketSession> startSession(String requestId) {
-        CompletableFuture<WebSocketSession> sessionFuture = new CompletableFuture<>();
+    public CompletableFuture<RecognitionSession> openSession(String mode, Consumer<FunASRMessage> messageListener) {
+        String requestId = UUID.randomUUID().toString();
         CompletableFuture<String> resultFuture = new CompletableFuture<>();
+        RecognitionMetrics.Trace trace = metrics.start(requestId, mode);
+        trace.stage("session");
+        resultFuture.whenComplete((result, ex) -> trace.stop(ex));
+        return startSession(requestId, mode, null, getHotWords(), resultFuture, messageListener)
+                .thenApply(connection -> {
+                    // 音频由调用方推送，发送和识别交替进行，不再细分阶段
+                    trace.stage("stream");
+                    return new RecognitionSession(this, requestId, connection.getSession(), resultFuture, trace);
+                });
+    }
 
+    /**
+     * 从连接池借用一个WebSocket连接并发送初始化消息
+     * @param requestId 请求ID
+     * @param mode 识别模式
+     * @param wavFormat 原样发送的音频格式，PCM为null
+     * @param hotWords 热词
+     * @param resultFuture 识别结果的CompletableFuture
+     * @param messageListener 识别消息回调，可以为null
+     * @return 返回连接的CompletableFuture
+     */
+    private CompletableFuture<FunASRConnection> startSession(String requestId, String mode, String wavFormat,
+                                                             HotWords hotWords, CompletableFuture<String> resultFuture,
+                                                             Consumer<FunASRMessage> messageListener) {
+        CompletableFuture<FunASRConnection> sessionFuture = new CompletableFuture<>();
+
+        // 计时条目最先放入、最后移除，回收任务据此判断其余条目是否残留
+        SessionClock clock = new SessionClock();
+        sessionClocks.put(requestId, clock);
         resultMap.put(requestId, resultFuture);
         sessionMap.put(requestId, sessionFuture);
-        resultTextMap.put(requestId, new StringBuilder());
+        resultTextMap.put(requestId, new Transcript());
 
-        try {
-            URI uri = URI.create(serverIpPort);
-            FunASRWebSocketHandler handler = new FunASRWebSocketHandler(requestId);
+        connectionPool.borrow().whenComplete((connection, ex) -> {
+            if (ex == null && sessionMap.get(requestId) != sessionFuture) {
+                // 等待连接期间会话已超时被回收，尚未发送初始化消息，连接可以直接归还
+                connectionPool.release(connection);
+                return;
+            }
+            if (ex != null) {
+                log.error("获取FunASR连接失败: {}", ex.getMessage(), ex);
+                sessionFuture.completeExceptionally(ex);
+                resultFuture.completeExceptionally(ex);
+                cleanup(requestId, false);
+                return;
+            }
 
-            // 使用CompletableFuture来处理WebSocket连接
+            log.info("获取FunASR连接成功: {}, requestId: {}", connection, requestId);
+            connection.setListener(new FunASRWebSocketHandler(requestId, messageListener));
             try {
-                // 使用execute方法替代已弃用的doHandshake方法
-                CompletableFuture<WebSocketSession> webSocketFuture = webSocketClient.execute(handler, uri.toString());
-
-                // 当WebSocketSession就绪时，完成我们的sessionFuture
-                webSocketFuture.whenComplete((session, ex) -> {
-                    if (ex != null) {
-                        log.error("连接FunASR服务失败: {}", ex.getMessage(), ex);
-                        sessionFuture.completeExceptionally(ex);
-                        resultFuture.completeExceptionally(ex);
-                        cleanup(requestId);
-                    }
-                    // 成功案例在FunASRWebSocketHandler.afterConnectionEstablished中处理
-                });
+                // 每次识别前发送初始化消息
+                connection.getSession().sendMessage(initMessage(mode, wavFormat, hotWords));
+                clock.connectedNanos = System.nanoTime();
+                sessionFuture.complete(connection);
             } catch (Exception e) {
-                log.error("创建WebSocket连接失败: {}", e.getMessage(), e);
-                sessionFuture.completeExceptionally(e);
+                log.error("发送初始化消息失败: {}", e.getMessage(), e);
+                sessionFuture.complete(connection);
                 resultFuture.completeExceptionally(e);
-                cleanup(requestId);
+                cleanup(requestId, false);
             }
-        } catch (Exception e) {
-            log.error("启动音频识别失败: {}", e.getMessage(), e);
-            sessionFuture.completeExceptionally(e);
-            resultFuture.completeExceptionally(e);
-            cleanup(requestId);
-        }
+        });
 
         return sessionFuture;
     }
 
+    /**
+     * 初始化消息，同一组热词、模式和格式的消息内容不变，序列化一次后缓存在HotWords中
+     * @param mode 识别模式
+     * @param wavFormat 原样发送的音频格式，PCM为null；取值来自配置的格式列表，可以随模式一起缓存
+     * @param hotWords 热词
+     * @return 初始化消息
+     */
+    private TextMessage initMessage(String mode, String wavFormat, HotWords hotWords) throws JsonProcessingException {
+        String cacheKey = wavFormat == null ? mode : mode + "/" + wavFormat;
+        TextMessage cached = hotWords.getInitMessage(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<String, Object> initParams = new LinkedHashMap<>();
+        initParams.put("mode", mode); // offline/online/2pass
+        if (!"offline".equalsIgnoreCase(mode)) {
+            // online/2pass需要指定流式分块参数
+            initParams.put("chunk_size", ONLINE_CHUNK_SIZE);
+            initParams.put("chunk_interval", ONLINE_CHUNK_INTERVAL);
+            initParams.put("is_speaking", true);
+        }
+
+        if (wavFormat != null) {
+            // 未声明时FunASR按16kHz PCM处理
+            initParams.put("wav_name", "asr." + wavFormat);
+            initParams.put("wav_format", wavFormat);
+        }
+
+        if (!hotWords.isEmpty()) {
+            initParams.put("hot_words", hotWords.getJson());
+        }
+
+        TextMessage message = new TextMessage(objectMapper.writeValueAsString(initParams));
+        if (CACHED_MODES.contains(mode)) {
+            hotWords.putInitMessage(cacheKey, message);
+        }
+        return message;
+    }
+
     /**
      * 发送音频数据到FunASR服务
+     * 分块、限速由AudioSender按当前模式处理，调用方无需等待发送完成
      * @param requestId 请求ID
      * @param audioData 音频数据
-     * @throws IOException 发送失败时抛出
+     * @return 全部数据发送完成后完成的CompletableFuture，结果为发送的字节数
      */
-    public void sendAudioData(String requestId, byte[] audioData) throws IOException {
-        CompletableFuture<WebSocketSession> sessionFuture = sessionMap.get(requestId);
-        if (sessionFuture == null) {
-            throw new IOException("WebSocket会话不存在");
-        }
+    public CompletableFuture<Long> sendAudioData(String requestId, byte[] audioData) {
+        return sendAudioData(requestId, audioData, 0, audioData.length);
+    }
+
+    /**
+     * 发送字节数组中的一段音频数据，不复制源数组
+     * @param requestId 请求ID
+     * @param audioData 音频数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 全部数据发送完成后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> sendAudioData(String requestId, byte[] audioData, int offset, int length) {
+        return sendAudioData(requestId, model, ByteBuffer.wrap(audioData, offset, length));
+    }
 
+    private CompletableFuture<Long> sendAudioData(String requestId, String mode, ByteBuffer audioData) {
+        WebSocketSession session;
         try {
-            // 尝试获取会话，如果会话还未建立，会抛出异常
-            WebSocketSession session = sessionFuture.getNow(null);
-            if (session == null) {
-                throw new IOException("WebSocket会话尚未建立");
-            }
+            session = openWebSocketSession(requestId);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return audioSender.send(session, mode, audioData);
+    }
 
-            if (session.isOpen()) {
-                // 对于大文件，分块发送
-                int chunkSize = 8192; // 8KB 每块
+    /**
+     * 从数据流读取音频并发送到FunASR服务，读取和发送在该数据流独占的线程上执行，缓冲区复用
+     * @param requestId 请求ID
+     * @param pcmStream 音频数据流
+     * @return 数据流读完且全部发送后完成的CompletableFuture，结果为发送的字节数
+     */
+    public CompletableFuture<Long> sendAudioStream(String requestId, InputStream pcmStream) {
+        return sendAudioStream(requestId, model, pcmStream);
+    }
 
-                for (int i = 0; i < audioData.length; i += chunkSize) {
-                    int length = Math.min(chunkSize, audioData.length - i);
-                    byte[] chunk = new byte[length];
-                    System.arraycopy(audioData, i, chunk, 0, length);
+    private CompletableFuture<Long> sendAudioStream(String requestId, String mode, InputStream pcmStream) {
+        WebSocketSession session;
+        try {
+            session = openWebSocketSession(requestId);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return audioSender.send(session, mode, pcmStream);
+    }
 
-                    // 使用BinaryMessage发送二进制数据
-                    ByteBuffer buffer = ByteBuffer.wrap(chunk);
-                    session.sendMessage(new BinaryMessage(buffer));
+    /**
+     * 获取请求当前使用的、处于打开状态的WebSocket会话
+     * @param requestId 请求ID
+     * @return WebSocket会话
+     * @throws IOException 会话不存在、尚未建立或已关闭时抛出
+     */
+    private WebSocketSession openWebSocketSession(String requestId) throws IOException {
+        CompletableFuture<FunASRConnection> sessionFuture = sessionMap.get(requestId);
+        if (sessionFuture == null) {
+            throw new IOException("WebSocket会话不存在");
+        }
 
-                    // 短暂暂停，避免发送过快
-                    try {
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("发送音频数据被中断", e);
-                    }
-                }
-            } else {
-                throw new IOException("WebSocket会话已关闭");
-            }
-        } catch (Exception e) {
-            throw new IOException("发送音频数据失败", e);
+        FunASRConnection connection = sessionFuture.getNow(null);
+        WebSocketSession session = connection == null ? null : connection.getSession();
+        if (session == null) {
+            throw new IOException("WebSocket会话尚未建立");
+        }
+        if (!session.isOpen()) {
+            throw new IOException("WebSocket会话已关闭");
         }
+        return session;
     }
 
     /**
@@ -171,22 +597,26 @@ public class FunASRService {
      * @throws IOException 发送结束消息失败时抛出
      */
     public void finishAudioRecognition(String requestId) throws IOException {
-        CompletableFuture<WebSocketSession> sessionFuture = sessionMap.get(requestId);
+        CompletableFuture<FunASRConnection> sessionFuture = sessionMap.get(requestId);
         if (sessionFuture == null) {
             throw new IOException("WebSocket会话不存在");
         }
 
         try {
-            WebSocketSession session = sessionFuture.getNow(null);
+            FunASRConnection connection = sessionFuture.getNow(null);
+            WebSocketSession session = connection == null ? null : connection.getSession();
             if (session == null) {
                 throw new IOException("WebSocket会话尚未建立");
             }
 
             if (session.isOpen()) {
-                Map<String, Object> endParams = new HashMap<>();
-                endParams.put("end", true);
-                String endMessage = objectMapper.writeValueAsString(endParams);
-                session.sendMessage(new TextMessage(endMessage));
+                // 只在音频全部发送完成(发送的CompletableFuture完成或推送方调用finish)后发送，
+                // 同一连接始终只有一个线程在写，AudioSender和RecognitionSession才能在sendMessage返回后复用缓冲区
+                session.sendMessage(END_MESSAGE);
+                SessionClock clock = sessionClocks.get(requestId);
+                if (clock != null) {
+                    clock.endSentNanos = System.nanoTime();
+                }
             } else {
                 throw new IOException("WebSocket会话已关闭");
             }
@@ -196,76 +626,165 @@ public class FunASRService {
     }
 
     /**
-     * 清理资源
+     * 把FunASR的识别消息转换为对外的分段结果
+     * online结果为中间结果(partial)，offline结果为修正后的分句(segment)，带时间戳时一并返回
+     * @param response FunASR消息
+     * @return 分段结果，消息不含文本时返回null
+     */
+    public static Map<String, Object> toSegment(FunASRMessage response) {
+        String text = response.getText();
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> segment = new LinkedHashMap<>();
+        segment.put("type", response.isPartial() ? "partial" : "segment");
+        segment.put("text", text);
+        if (response.getTimestamp() != null) {
+            segment.put("timestamp", response.getTimestamp());
+        }
+        if (response.getStampSents() != null) {
+            segment.put("sentences", response.getStampSents());
+        }
+        return segment;
+    }
+
+    /**
+     * 放弃识别，连接不再复用
      * @param requestId 请求ID
      */
-    private void cleanup(String requestId) {
-        CompletableFuture<WebSocketSession> sessionFuture = sessionMap.remove(requestId);
+    void abort(String requestId) {
+        cleanup(requestId, false);
+    }
+
+    /**
+     * 取消识别：关闭连接并以cause结束识别结果，用于调用方超时后停止仍在进行的会话
+     * @param requestId 请求ID，会话已结束时无操作
+     * @param cause 识别结果的失败原因
+     */
+    public void cancel(String requestId, Throwable cause) {
+        CompletableFuture<FunASRConnection> sessionFuture = sessionMap.get(requestId);
+        CompletableFuture<String> future = resultMap.get(requestId);
+        // 先关闭连接再通知调用方，调用方看到失败时连接已不在使用中
+        cleanup(requestId, false);
         if (sessionFuture != null) {
-            try {
-                WebSocketSession session = sessionFuture.getNow(null);
-                if (session != null && session.isOpen()) {
-                    session.close();
+            sessionFuture.completeExceptionally(cause);
+        }
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 清理资源，正常结束的连接归还连接池，异常的连接直接销毁
+     * @param requestId 请求ID
+     * @param reusable 连接是否可以继续复用
+     */
+    private void cleanup(String requestId, boolean reusable) {
+        CompletableFuture<FunASRConnection> sessionFuture = sessionMap.remove(requestId);
+        // 借用连接失败时sessionFuture以异常结束，getNow会抛出异常
+        if (sessionFuture != null && !sessionFuture.isCompletedExceptionally()) {
+            FunASRConnection connection = sessionFuture.getNow(null);
+            if (connection != null) {
+                if (reusable) {
+                    connectionPool.release(connection);
+                } else {
+                    connectionPool.invalidate(connection);
                 }
-            } catch (Exception e) {
-                log.warn("关闭WebSocket会话失败: {}", e.getMessage());
             }
         }
         resultMap.remove(requestId);
         resultTextMap.remove(requestId);
+        sessionClocks.remove(requestId);
     }
 
     /**
-     * FunASR WebSocket处理器
+     * 关闭并移除超过期限的会话
+     * FunASR既不返回is_final也不断开连接时，调用方的超时只结束等待，会话条目和WebSocket连接由这里回收
      */
-    private class FunASRWebSocketHandler extends TextWebSocketHandler {
-        private final String requestId;
-
-        public FunASRWebSocketHandler(String requestId) {
-            this.requestId = requestId;
+    void reapExpired() {
+        long now = System.nanoTime();
+        sessionClocks.forEach((requestId, clock) -> {
+            String reason = clock.expired(now, connectTimeoutMillis, firstResultTimeoutMillis, maxLifetimeMillis);
+            if (reason != null) {
+                expire(requestId, reason);
+            }
+        });
+
+        // 没有计时条目的是清理遗漏的残留；清理过程中也会短暂出现，连续两轮都存在才回收
+        Set<String> orphans = new HashSet<>();
+        for (Map<String, ?> map : List.of(resultMap, sessionMap, resultTextMap)) {
+            for (String requestId : map.keySet()) {
+                if (!sessionClocks.containsKey(requestId)) {
+                    orphans.add(requestId);
+                }
+            }
         }
-
-        @Override
-        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-            log.info("与FunASR服务器连接建立成功，requestId: {}", requestId);
-
-            // 会话建立成功，完成sessionFuture
-            CompletableFuture<WebSocketSession> sessionFuture = sessionMap.get(requestId);
-            if (sessionFuture != null && !sessionFuture.isDone()) {
-                sessionFuture.complete(session);
+        for (String requestId : orphans) {
+            if (suspectedOrphans.contains(requestId)) {
+                expire(requestId, "orphan");
             }
+        }
+        suspectedOrphans = orphans;
+    }
 
-            // 发送初始化消息
-            Map<String, Object> initParams = new HashMap<>();
-            initParams.put("mode", model); // 使用配置的模式(offline/online/2pass)
+    private void expire(String requestId, String reason) {
+        log.warn("识别会话超时被回收: {}, requestId: {}", reason, requestId);
+        metrics.recordSessionExpired(reason);
+        cancel(requestId, new TimeoutException("识别会话超时: " + reason));
+    }
 
-            if (hotWords != null && !hotWords.isEmpty()) {
-                initParams.put("hot_words", hotWords);
-            }
+    private double oldestSessionSeconds() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (SessionClock clock : sessionClocks.values()) {
+            oldest = Math.max(oldest, now - clock.startedNanos);
+        }
+        return oldest / 1e9;
+    }
+
+    /**
+     * FunASR WebSocket处理器，借用连接期间接收该请求的服务端消息
+     */
+    private class FunASRWebSocketHandler implements FunASRConnection.Listener {
+        private final String requestId;
+        private final Consumer<FunASRMessage> messageListener;
 
-            String initMessage = objectMapper.writeValueAsString(initParams);
-            session.sendMessage(new TextMessage(initMessage));
+        public FunASRWebSocketHandler(String requestId, Consumer<FunASRMessage> messageListener) {
+            this.requestId = requestId;
+            this.messageListener = messageListener;
         }
 
         @Override
-        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-            String payload = message.getPayload();
+        public void handleTextMessage(String payload) throws Exception {
             log.debug("收到FunASR消息: {}", payload);
+            SessionClock clock = sessionClocks.get(requestId);
+            if (clock != null) {
+                clock.lastMessageNanos = System.nanoTime();
+            }
 
-            Map<String, Object> response = objectMapper.readValue(payload, Map.class);
+            FunASRMessage response = messageReader.readValue(payload);
 
-            if (response.containsKey("text")) {
-                String text = (String) response.get("text");
-                StringBuilder builder = resultTextMap.get(requestId);
-                if (builder != null) {
-                    builder.append(text);
+            if (messageListener != null) {
+                try {
+                    messageListener.accept(response);
+                } catch (Exception e) {
+                    log.warn("识别消息回调失败: {}, requestId: {}", e.getMessage(), requestId);
                 }
             }
 
-            if (response.containsKey("is_final") && (Boolean) response.get("is_final")) {
-                StringBuilder builder = resultTextMap.get(requestId);
-                if (builder != null) {
-                    String finalResult = builder.toString();
+            // 2pass模式下online中间结果会被随后的offline结果修正，不计入最终结果
+            if (response.getText() != null && !"2pass-online".equals(response.getMode())) {
+                Transcript transcript = resultTextMap.get(requestId);
+                if (transcript != null) {
+                    transcript.add(response.getText());
+                }
+            }
+
+            if (response.isFinal()) {
+                Transcript transcript = resultTextMap.get(requestId);
+                if (transcript != null) {
+                    String finalResult = transcript.text();
                     log.info("识别完成，结果: {}", finalResult);
                     CompletableFuture<String> future = resultMap.get(requestId);
                     if (future != null) {
@@ -273,13 +792,13 @@ public class FunASRService {
                     }
                 }
 
-                // 清理资源
-                cleanup(requestId);
+                // 识别结束，连接归还连接池
+                cleanup(requestId, true);
             }
         }
 
         @Override
-        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        public void handleTransportError(Throwable exception) {
             log.error("WebSocket传输错误: {}", exception.getMessage(), exception);
 
             CompletableFuture<String> future = resultMap.get(requestId);
@@ -287,22 +806,77 @@ public class FunASRService {
                 future.completeExceptionally(exception);
             }
 
-            cleanup(requestId);
+            cleanup(requestId, false);
         }
 
         @Override
-        public void afterConnectionClosed(WebSocketSession session, org.springframework.web.socket.CloseStatus status) throws Exception {
+        public void afterConnectionClosed(CloseStatus status) {
             log.info("WebSocket连接已关闭: {}, requestId: {}", status, requestId);
 
-            StringBuilder builder = resultTextMap.get(requestId);
-            if (builder != null) {
-                CompletableFuture<String> future = resultMap.get(requestId);
-                if (future != null && !future.isDone()) {
-                    future.complete(builder.toString());
-                }
+            // 未收到is_final即关闭时已有的文本不完整，按失败处理，不能被缓存或保存为识别结果；已到达的分段已通过回调送出
+            CompletableFuture<String> future = resultMap.get(requestId);
+            if (future != null && !future.isDone()) {
+                future.completeExceptionally(new IOException("FunASR连接在识别结束前关闭: " + status));
+            }
+
+            cleanup(requestId, false);
+        }
+    }
+
+    /**
+     * 会话各阶段的时间点，由回收任务判断是否超过期限
+     */
+    private static class SessionClock {
+        final long startedNanos = System.nanoTime();
+        volatile long connectedNanos;
+        volatile long endSentNanos;
+        volatile long lastMessageNanos;
+
+        /**
+         * @return 超过的期限，未超过时返回null；期限为0表示不限制
+         */
+        String expired(long now, long connectMillis, long firstResultMillis, long lifetimeMillis) {
+            if (lifetimeMillis > 0 && now - startedNanos > TimeUnit.MILLISECONDS.toNanos(lifetimeMillis)) {
+                return "lifetime";
+            }
+            if (connectMillis > 0 && connectedNanos == 0
+                    && now - startedNanos > TimeUnit.MILLISECONDS.toNanos(connectMillis)) {
+                return "connect";
+            }
+            long endSent = endSentNanos;
+            long lastMessage = lastMessageNanos;
+            if (firstResultMillis > 0 && endSent != 0 && (lastMessage == 0 || lastMessage - endSent < 0)
+                    && now - endSent > TimeUnit.MILLISECONDS.toNanos(firstResultMillis)) {
+                return "first_result";
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 一次识别中逐条到达的文本，结束时按总长度一次拼接
+     * 消息在WebSocket接收线程上追加，连接关闭时可能在其他线程读取
+     */
+    private static class Transcript {
+        private final List<String> segments = new ArrayList<>();
+        private int length;
+
+        synchronized void add(String text) {
+            if (!text.isEmpty()) {
+                segments.add(text);
+                length += text.length();
             }
+        }
 
-            cleanup(requestId);
+        synchronized String text() {
+            if (segments.size() == 1) {
+                return segments.get(0);
+            }
+            StringBuilder builder = new StringBuilder(length);
+            for (String segment : segments) {
+                builder.append(segment);
+            }
+            return builder.toString();
         }
     }
-}
\ No newline at end of file
+}
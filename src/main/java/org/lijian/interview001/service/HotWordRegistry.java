@@ -0,0 +1,116 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求携带的热词
+ * 校验和规范化只在第一次出现时做，结果按原文和规范化后的哈希两级LRU缓存：
+ * 同一原文直接命中，写法不同但内容相同的热词共用同一个HotWords及其序列化好的初始化消息
+ */
+@Component
+public class HotWordRegistry {
+
+    @Value("${parameters.requestHotWords.enabled:true}")
+    private boolean enabled;
+
+    @Value("${parameters.requestHotWords.maxWords:1000}")
+    private int maxWords;
+
+    @Value("${parameters.requestHotWords.maxWordLength:32}")
+    private int maxWordLength;
+
+    @Value("${parameters.requestHotWords.cacheSize:1000}")
+    private int cacheSize;
+
+    private final FunASRService funASRService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 两个accessOrder的LinkedHashMap共用一把锁
+     */
+    private final Map<String, HotWords> byText = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, HotWords> byHash = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong compileCount = new AtomicLong();
+
+    public HotWordRegistry(FunASRService funASRService, ObjectMapper objectMapper) {
+        this.funASRService = funASRService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 解析请求参数中的热词
+     * @param text {"热词":权重}形式的JSON，为空时使用parameters.hotWords
+     * @return 热词
+     * @throws IllegalArgumentException 未开启自定义热词、格式错误或超出限制
+     */
+    public HotWords resolve(String text) {
+        if (text == null || text.isBlank()) {
+            return funASRService.getHotWords();
+        }
+        if (!enabled) {
+            throw new IllegalArgumentException("未开启自定义热词");
+        }
+        synchronized (byText) {
+            HotWords cached = byText.get(text);
+            if (cached != null) {
+                // 同时刷新按哈希缓存的顺序，两级缓存的淘汰顺序保持一致
+                byHash.get(cached.getHash());
+                hitCount.incrementAndGet();
+                return cached;
+            }
+        }
+
+        // 在锁外解析，热词再多也不阻塞其他请求
+        if (text.length() > (long) maxWords * (maxWordLength + 16)) {
+            throw new IllegalArgumentException("热词过长");
+        }
+        HotWords parsed = HotWords.parse(text, objectMapper, maxWords, maxWordLength);
+        compileCount.incrementAndGet();
+        synchronized (byText) {
+            HotWords shared = byHash.get(parsed.getHash());
+            if (shared == null) {
+                shared = parsed;
+                byHash.put(parsed.getHash(), parsed);
+                evict(byHash);
+            }
+            byText.put(text, shared);
+            evict(byText);
+            return shared;
+        }
+    }
+
+    /**
+     * 缓存状态
+     * @return 缓存的原文数和热词组数、命中数、解析数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (byText) {
+            stats.put("texts", byText.size());
+            stats.put("sets", byHash.size());
+        }
+        stats.put("cacheSize", cacheSize);
+        stats.put("hitCount", hitCount.get());
+        stats.put("compileCount", compileCount.get());
+        return stats;
+    }
+
+    private void evict(Map<String, HotWords> cache) {
+        // accessOrder的LinkedHashMap迭代顺序即最近最少使用顺序
+        Iterator<Map.Entry<String, HotWords>> iterator = cache.entrySet().iterator();
+        while (cache.size() > cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
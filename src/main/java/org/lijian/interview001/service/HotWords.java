@@ -0,0 +1,141 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一组已校验、规范化的热词
+ * 规范化后的JSON和哈希只计算一次，按模式和格式序列化好的初始化消息也缓存在这里，识别时不再做JSON处理
+ */
+public class HotWords {
+
+    public static final int MIN_WEIGHT = 1;
+    public static final int MAX_WEIGHT = 100;
+
+    /**
+     * 不使用热词
+     */
+    public static final HotWords NONE = new HotWords("", "", 0);
+
+    private final String json;
+    private final String hash;
+    private final int size;
+    private final Map<String, TextMessage> initMessages = new ConcurrentHashMap<>();
+
+    private HotWords(String json, String hash, int size) {
+        this.json = json;
+        this.hash = hash;
+        this.size = size;
+    }
+
+    /**
+     * 解析并规范化热词：去掉首尾空白、连续空白合并为一个空格，重复的热词取最大权重，按热词排序
+     * 写法不同但内容相同的热词得到相同的JSON和哈希
+     * @param text {"热词":权重}形式的JSON，为空时不使用热词
+     * @param objectMapper JSON解析
+     * @param maxWords 最多热词数
+     * @param maxWordLength 单个热词的最大字数
+     * @return 热词
+     * @throws IllegalArgumentException 格式错误或超出限制
+     */
+    public static HotWords parse(String text, ObjectMapper objectMapper, int maxWords, int maxWordLength) {
+        if (text == null || text.isBlank()) {
+            return NONE;
+        }
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("热词格式错误，应为{\"热词\":权重}形式的JSON");
+        }
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("热词格式错误，应为{\"热词\":权重}形式的JSON");
+        }
+
+        Map<String, Integer> words = new TreeMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String word = field.getKey().strip().replaceAll("\\s+", " ");
+            if (word.isEmpty()) {
+                throw new IllegalArgumentException("热词不能为空");
+            }
+            if (word.codePointCount(0, word.length()) > maxWordLength) {
+                throw new IllegalArgumentException("热词超过" + maxWordLength + "个字: " + word);
+            }
+            JsonNode weight = field.getValue();
+            if (!weight.isIntegralNumber() || weight.asLong() < MIN_WEIGHT || weight.asLong() > MAX_WEIGHT) {
+                throw new IllegalArgumentException("热词权重应为" + MIN_WEIGHT + "到" + MAX_WEIGHT + "的整数: " + word);
+            }
+            words.merge(word, weight.asInt(), Math::max);
+            if (words.size() > maxWords) {
+                throw new IllegalArgumentException("热词超过" + maxWords + "个");
+            }
+        }
+        if (words.isEmpty()) {
+            return NONE;
+        }
+
+        try {
+            String json = objectMapper.writeValueAsString(words);
+            return new HotWords(json, sha256(json), words.size());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 初始化消息中hot_words的值，不使用热词时为空字符串
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * 规范化JSON的SHA-256，用作缓存键
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    TextMessage getInitMessage(String key) {
+        return initMessages.get(key);
+    }
+
+    void putInitMessage(String key, TextMessage message) {
+        initMessages.put(key, message);
+    }
+
+    private static String sha256(String json) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return size + "个热词(" + (hash.isEmpty() ? "无" : hash.substring(0, 8)) + ")";
+    }
+}
@@ -0,0 +1,210 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lijian.interview001.utils.EnergyVad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长音频识别
+ * 按静音切分为多个分段，在多个FunASR会话上并发识别，再按顺序拼接并把时间戳换算到整段音频的时间轴
+ */
+@Service
+public class LongAudioService {
+
+    private static final Logger log = LoggerFactory.getLogger(LongAudioService.class);
+
+    /**
+     * 分段识别使用offline模式，不按实时速度限速；SegmentResult依赖每段只有一条最终结果
+     */
+    private static final String SEGMENT_MODE = "offline";
+
+    private final FunASRService funASRService;
+    private final RecognitionScheduler scheduler;
+    private final AudioPreprocessor preprocessor;
+    private final ObjectMapper objectMapper;
+
+    @Value("${parameters.longAudio.parallelism:4}")
+    private int parallelism;
+
+    @Value("${parameters.longAudio.minSegmentSeconds:10}")
+    private int minSegmentSeconds;
+
+    @Value("${parameters.longAudio.maxSegmentSeconds:60}")
+    private int maxSegmentSeconds;
+
+    @Value("${parameters.longAudio.minSilenceMillis:400}")
+    private int minSilenceMillis;
+
+    @Value("${parameters.longAudio.thresholdDb:10}")
+    private double thresholdDb;
+
+    @Value("${parameters.recognizeTimeoutSeconds:60}")
+    private long segmentTimeoutSeconds;
+
+    public LongAudioService(FunASRService funASRService, RecognitionScheduler scheduler, AudioPreprocessor preprocessor,
+                            ObjectMapper objectMapper) {
+        this.funASRService = funASRService;
+        this.scheduler = scheduler;
+        this.preprocessor = preprocessor;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 识别长音频
+     * @param pcm 16kHz、16bit、单声道PCM，识别结束前调用方不能修改
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 完整文本(result)和各分段的时间范围、文本、时间戳(segments)
+     */
+    public CompletableFuture<Map<String, Object>> recognize(byte[] pcm, int offset, int length) {
+        return recognize(ByteBuffer.wrap(pcm, offset, length));
+    }
+
+    /**
+     * 识别缓冲区中的长音频，例如内存映射的文件，各分段直接切片发送
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM，识别结束前调用方不能修改
+     * @return 完整文本(result)和各分段的时间范围、文本、时间戳(segments)
+     */
+    public CompletableFuture<Map<String, Object>> recognize(ByteBuffer pcm) {
+        return recognize(null, pcm, null);
+    }
+
+    /**
+     * 以指定热词识别长音频，各分段使用同一组热词
+     * @param requestId 请求ID，各分段以"请求ID-序号"作为FunASR请求ID；为null时各分段分别生成
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM，识别结束前调用方不能修改
+     * @param hotWords 热词，为null时使用配置的热词
+     * @return 完整文本(result)和各分段的时间范围、文本、时间戳(segments)
+     */
+    public CompletableFuture<Map<String, Object>> recognize(String requestId, ByteBuffer pcm, HotWords hotWords) {
+        EnergyVad vad = new EnergyVad(minSegmentSeconds * 1000, maxSegmentSeconds * 1000, minSilenceMillis, thresholdDb);
+        List<EnergyVad.Segment> segments = vad.split(pcm, pcm.position(), pcm.remaining());
+        log.info("长音频切分为{}段: {}", segments.size(), segments);
+
+        SegmentResult[] results = new SegmentResult[segments.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        // 固定数量的工作链，每条链识别完一段再领取下一段，并发数不超过parallelism
+        int workers = Math.min(Math.max(1, parallelism), segments.size());
+        CompletableFuture<?>[] chains = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            chains[i] = runWorker(requestId, pcm, hotWords, segments, results, next, failed);
+        }
+
+        return CompletableFuture.allOf(chains).thenApply(v -> assemble(results));
+    }
+
+    private CompletableFuture<Void> runWorker(String requestId, ByteBuffer pcm, HotWords hotWords,
+                                              List<EnergyVad.Segment> segments, SegmentResult[] results,
+                                              AtomicInteger next, AtomicBoolean failed) {
+        int index = next.getAndIncrement();
+        if (index >= segments.size() || failed.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        EnergyVad.Segment segment = segments.get(index);
+        SegmentResult result = new SegmentResult(segment);
+        results[index] = result;
+
+        return scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE,
+                        () -> funASRService.recognizeAudio(requestId != null ? requestId + "-" + index : null,
+                                preprocessor.process(pcm.slice(segment.getOffset(), segment.getLength())),
+                                SEGMENT_MODE, hotWords, result::onMessage))
+                .orTimeout(segmentTimeoutSeconds, TimeUnit.SECONDS)
+                .handle((text, ex) -> {
+                    if (ex != null) {
+                        failed.set(true);
+                        throw new IllegalStateException("第" + (index + 1) + "段识别失败: " + ex.getMessage(), ex);
+                    }
+                    result.text = text;
+                    return text;
+                })
+                .thenCompose(text -> runWorker(requestId, pcm, hotWords, segments, results, next, failed));
+    }
+
+    private Map<String, Object> assemble(SegmentResult[] results) {
+        StringBuilder text = new StringBuilder();
+        List<Map<String, Object>> segments = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            SegmentResult result = results[i];
+            text.append(result.text);
+
+            Map<String, Object> segment = new LinkedHashMap<>();
+            segment.put("index", i);
+            segment.put("startMillis", result.segment.getStartMillis());
+            segment.put("endMillis", result.segment.getEndMillis());
+            segment.put("text", result.text);
+            if (result.timestamp != null) {
+                segment.put("timestamp", shift(result.timestamp, result.segment.getStartMillis()));
+            }
+            segments.add(segment);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("result", text.toString());
+        response.put("segments", segments);
+        return response;
+    }
+
+    /**
+     * 把分段内的时间戳[[开始,结束],...]加上分段起始时间
+     * FunASR返回的时间戳可能是JSON字符串也可能是数组
+     */
+    private List<long[]> shift(Object timestamp, long startMillis) {
+        List<long[]> shifted = new ArrayList<>();
+        try {
+            Object parsed = timestamp instanceof String ? objectMapper.readValue((String) timestamp, List.class) : timestamp;
+            if (!(parsed instanceof List<?> pairs)) {
+                return shifted;
+            }
+            for (Object pair : pairs) {
+                if (pair instanceof List<?> range && range.size() >= 2) {
+                    shifted.add(new long[]{
+                            ((Number) range.get(0)).longValue() + startMillis,
+                            ((Number) range.get(1)).longValue() + startMillis});
+                }
+            }
+        } catch (IOException | ClassCastException e) {
+            log.warn("无法解析时间戳: {}", timestamp);
+        }
+        return shifted;
+    }
+
+    /**
+     * 单个分段的识别结果
+     */
+    private static class SegmentResult {
+        private final EnergyVad.Segment segment;
+        private volatile String text = "";
+        private volatile Object timestamp;
+
+        SegmentResult(EnergyVad.Segment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * 只保留最后一条带时间戳的消息：SEGMENT_MODE为offline时每段只有一条最终结果。
+         * 改为2pass时每句都会返回一条带时间戳的2pass-offline消息，需要改为逐条累积，否则只剩最后一句的时间戳
+         */
+        void onMessage(FunASRMessage response) {
+            if (response.getTimestamp() != null) {
+                timestamp = response.getTimestamp();
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.lijian.interview001.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 识别结果缓存
+ * 以规范化PCM、识别模式和热词的SHA-256为键；内存LRU按条数和TTL淘汰，可选磁盘层保存在fileUrl/cache下；
+ * 相同内容的并发请求共享同一次识别
+ */
+@Component
+public class RecognitionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RecognitionCache.class);
+
+    @Value("${parameters.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${parameters.cache.maxEntries:1000}")
+    private int maxEntries;
+
+    @Value("${parameters.cache.ttlSeconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${parameters.cache.disk:false}")
+    private boolean diskEnabled;
+
+    @Value("${parameters.fileUrl}")
+    private String fileUrl;
+
+    private final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算缓存键
+     * @param pcm PCM数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param mode 识别模式
+     * @param hotWords 热词配置
+     * @return 十六进制SHA-256
+     */
+    public static String key(byte[] pcm, int offset, int length, String mode, String hotWords) {
+        return key(ByteBuffer.wrap(pcm, offset, length), mode, hotWords);
+    }
+
+    /**
+     * 计算缓冲区中PCM数据的缓存键，内存映射的文件直接在映射区域上计算
+     * @param pcm position到limit之间的PCM数据，不改变其position
+     * @param mode 识别模式
+     * @param hotWords 热词配置
+     * @return 缓存键
+     */
+    public static String key(ByteBuffer pcm, String mode, String hotWords) {
+        MessageDigest digest = sha256();
+        digest.update(pcm.duplicate());
+        return key(digest, mode, hotWords);
+    }
+
+    /**
+     * 边读取边计算数据流的缓存键，不保存完整数据，结果与读入缓冲区后计算的相同
+     * @param pcm PCM数据流，读取到末尾，不关闭
+     * @param mode 识别模式
+     * @param hotWords 热词配置
+     * @return 缓存键
+     * @throws IOException 读取失败时抛出
+     */
+    public static String key(InputStream pcm, String mode, String hotWords) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = pcm.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return key(digest, mode, hotWords);
+    }
+
+    private static String key(MessageDigest digest, String mode, String hotWords) {
+        digest.update((byte) 0);
+        digest.update(String.valueOf(mode).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(hotWords).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 获取缓存的识别结果，未命中时调用loader识别；同一键正在识别时直接共享其结果
+     * 识别失败的结果不缓存
+     * @param key 缓存键
+     * @param loader 发起识别
+     * @return 识别结果
+     */
+    public CompletableFuture<String> get(String key, Supplier<CompletableFuture<String>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        String cached = getFromMemory(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            // 每个调用方拿到独立的副本，某个调用方超时不会影响共享的识别
+            return existing.copy();
+        }
+
+        try {
+            cached = readFromDisk(key);
+            if (cached != null) {
+                diskHitCount.incrementAndGet();
+                putInMemory(key, cached);
+                inFlight.remove(key, created);
+                created.complete(cached);
+                return created;
+            }
+
+            missCount.incrementAndGet();
+            loader.get().whenComplete((result, ex) -> {
+                if (ex == null && result != null) {
+                    putInMemory(key, result);
+                    writeToDisk(key, result);
+                }
+                // 先移出再完成，完成回调中的重试不会拿到已失败的结果
+                inFlight.remove(key, created);
+                if (ex != null) {
+                    created.completeExceptionally(ex);
+                } else {
+                    created.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * 缓存命中率等统计
+     * @return 统计信息
+     */
+    public Map<String, Object> stats() {
+        long hits = hitCount.get() + diskHitCount.get() + coalescedCount.get();
+        long total = hits + missCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (memory) {
+            stats.put("size", memory.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("disk", diskEnabled);
+        stats.put("hitCount", hitCount.get());
+        stats.put("diskHitCount", diskHitCount.get());
+        stats.put("coalescedCount", coalescedCount.get());
+        stats.put("missCount", missCount.get());
+        stats.put("evictionCount", evictionCount.get());
+        stats.put("inFlight", inFlight.size());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        return stats;
+    }
+
+    private String getFromMemory(String key) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                memory.remove(key);
+                evictionCount.incrementAndGet();
+                return null;
+            }
+            return entry.text;
+        }
+    }
+
+    private void putInMemory(String key, String text) {
+        synchronized (memory) {
+            memory.put(key, new Entry(text, System.currentTimeMillis() + ttlSeconds * 1000));
+            // accessOrder的LinkedHashMap迭代顺序即最近最少使用顺序
+            var iterator = memory.entrySet().iterator();
+            while (memory.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Path diskPath(String key) {
+        return Paths.get(fileUrl, "cache", key + ".txt");
+    }
+
+    private String readFromDisk(String key) {
+        if (!diskEnabled) {
+            return null;
+        }
+        Path path = diskPath(key);
+        try {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            if (Files.getLastModifiedTime(path).toMillis() + ttlSeconds * 1000 < System.currentTimeMillis()) {
+                Files.deleteIfExists(path);
+                evictionCount.incrementAndGet();
+                return null;
+            }
+            return Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("读取识别结果缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String text) {
+        if (!diskEnabled) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            // 先写临时文件再改名，并发读取不会读到写了一半的内容
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入识别结果缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        private final String text;
+        private final long expiresAt;
+
+        Entry(String text, long expiresAt) {
+            this.text = text;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.lijian.interview001.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 识别链路的监控指标
+ * 每次识别是一个asr.recognition观测，各阶段(session/send/processing)是其子观测，
+ * 观测同时产生计时器和带requestId的追踪span，可按阶段拆分单个慢请求的耗时
+ */
+@Component
+public class RecognitionMetrics {
+
+    /**
+     * 作为指标标签的识别模式，其他取值归为other，避免请求参数产生无限多的时间序列
+     */
+    private static final Set<String> MODES = Set.of("offline", "online", "2pass");
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    public RecognitionMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * 开始记录一次识别
+     * @param requestId 请求ID，只作为span标签，不进入指标
+     * @param mode 识别模式
+     * @return 识别过程的记录
+     */
+    public Trace start(String requestId, String mode) {
+        String modeTag = MODES.contains(mode) ? mode : "other";
+        Observation observation = Observation.createNotStarted("asr.recognition", observationRegistry)
+                .contextualName("asr recognize")
+                .lowCardinalityKeyValue("mode", modeTag)
+                .highCardinalityKeyValue("requestId", requestId)
+                .start();
+        return new Trace(requestId, modeTag, observation);
+    }
+
+    /**
+     * 记录音频解码、转换耗时
+     * @param source stream(边读边转)或file(整段读取)
+     * @param nanos 耗时
+     */
+    public void recordConvert(String source, long nanos) {
+        Timer.builder("asr.convert")
+                .description("音频读取、解码和转换为16kHz PCM的耗时")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 把Map的大小注册为仪表
+     * @param name 指标名
+     * @param map 被观察的Map
+     */
+    public void gaugeSize(String name, Map<?, ?> map) {
+        Gauge.builder(name, map, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 注册仪表
+     * @param name 指标名
+     * @param description 说明
+     * @param value 取值函数，每次采集时调用
+     */
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value).description(description).register(meterRegistry);
+    }
+
+    /**
+     * 记录被回收的超时会话
+     * @param reason connect(借用连接和初始化)、first_result(结束后等待结果)、lifetime(总时长)、orphan(残留条目)
+     */
+    public void recordSessionExpired(String reason) {
+        Counter.builder("asr.sessions.expired")
+                .description("超过期限被强制关闭的识别会话数")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录上传音频的处理方式
+     * @param format 文件格式(扩展名)，不在原样发送列表中的归为other
+     * @param handling decode(本地转换为PCM)、passthrough(原样发送并声明格式)、raw(无法识别，原样发送)
+     */
+    public void recordFormat(String format, String handling) {
+        Counter.builder("asr.format")
+                .description("上传音频按格式和处理方式的计数")
+                .tag("format", format)
+                .tag("handling", handling)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录静音压缩去除的数据量
+     * @param inputBytes 压缩前的字节数
+     * @param removedBytes 去除的字节数
+     */
+    public void recordTrim(long inputBytes, long removedBytes) {
+        Counter.builder("asr.trim.input")
+                .description("经过静音压缩的PCM字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .increment(inputBytes);
+        Counter.builder("asr.trim.removed")
+                .description("静音压缩去除的PCM字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .increment(removedBytes);
+    }
+
+    private void recordSent(String mode, String format, long bytes) {
+        Counter.builder("asr.audio.sent")
+                .description("发送给FunASR的音频字节数")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .tag("format", format)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    private void recordCompleted(String mode, String format, long bytes, long audioMillis, long elapsedNanos) {
+        // 原样发送的压缩音频无法按字节数换算时长，使用FunASR返回的时间戳
+        double audioSeconds = format == null ? bytes / (double) AudioSender.PCM_BYTES_PER_SECOND
+                : Math.max(0, audioMillis) / 1000.0;
+        if (format != null && audioMillis > 0) {
+            double pcmBytes = audioSeconds * AudioSender.PCM_BYTES_PER_SECOND;
+            Counter.builder("asr.passthrough.saved")
+                    .description("原样发送压缩音频相比发送16kHz PCM节省的字节数(按识别出的时长估算)")
+                    .baseUnit("bytes")
+                    .tag("format", format)
+                    .register(meterRegistry)
+                    .increment(Math.max(0, pcmBytes - bytes));
+        }
+        Counter.builder("asr.audio.processed")
+                .description("识别完成的音频时长")
+                .baseUnit("seconds")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment(audioSeconds);
+        if (audioSeconds > 0) {
+            DistributionSummary.builder("asr.realtime.factor")
+                    .description("识别耗时与音频时长之比，小于1表示快于实时")
+                    .tag("mode", mode)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry)
+                    .record(elapsedNanos / 1e9 / audioSeconds);
+        }
+    }
+
+    private void recordFailure(String mode, String stage, Throwable ex) {
+        Counter.builder("asr.failures")
+                .description("识别失败次数，按失败阶段和原因分类")
+                .tag("mode", mode)
+                .tag("stage", stage)
+                .tag("cause", cause(ex))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String cause(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return "rejected";
+        }
+        if (cause instanceof IOException) {
+            return "io";
+        }
+        return "other";
+    }
+
+    /**
+     * 一次识别的记录，依次进入各阶段，结束时记录结果
+     * 阶段切换发生在不同线程的回调中，但同一时刻只有一个阶段
+     */
+    public class Trace {
+        private final String requestId;
+        private final String mode;
+        private final Observation observation;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong audioMillis = new AtomicLong(-1);
+        private volatile String format;
+
+        private Observation stage;
+        private String stageName = "start";
+        private boolean stopped;
+
+        private Trace(String requestId, String mode, Observation observation) {
+            this.requestId = requestId;
+            this.mode = mode;
+            this.observation = observation;
+        }
+
+        /**
+         * 结束当前阶段并开始下一阶段
+         * @param name session(借用连接、握手、初始化)、send(发送音频)、processing(等待is_final)
+         */
+        public synchronized void stage(String name) {
+            if (stopped) {
+                return;
+            }
+            if (stage != null) {
+                stage.stop();
+            }
+            stageName = name;
+            stage = Observation.createNotStarted("asr.stage", observationRegistry)
+                    .contextualName("asr " + name)
+                    .lowCardinalityKeyValue("stage", name)
+                    .lowCardinalityKeyValue("mode", mode)
+                    .highCardinalityKeyValue("requestId", requestId)
+                    .parentObservation(observation)
+                    .start();
+        }
+
+        /**
+         * 原样发送压缩音频时记录其格式，发送前调用
+         * @param format wav_format
+         */
+        public void format(String format) {
+            this.format = format;
+        }
+
+        /**
+         * 记录FunASR识别结果中的音频结束时间，原样发送时用于计算音频时长
+         * @param millis 相对音频开头的毫秒数，未知时为负数
+         */
+        public void audioEnd(long millis) {
+            audioMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        /**
+         * 记录已发送的音频字节数
+         */
+        public void sent(long bytes) {
+            bytesSent.addAndGet(bytes);
+            String currentFormat = format;
+            recordSent(mode, currentFormat == null ? "pcm" : currentFormat, bytes);
+        }
+
+        /**
+         * 结束记录
+         * @param ex 失败原因，成功时为null
+         */
+        public synchronized void stop(Throwable ex) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            if (ex != null) {
+                if (stage != null) {
+                    stage.error(ex);
+                }
+                observation.error(ex);
+                recordFailure(mode, stageName, ex);
+            } else {
+                recordCompleted(mode, format, bytesSent.get(), audioMillis.get(), System.nanoTime() - startNanos);
+            }
+            if (stage != null) {
+                stage.stop();
+            }
+            observation.stop();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.lijian.interview001.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.lijian.interview001.config.TaskExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 识别任务调度器
+ * 限制同时进行的FunASR识别数；交互请求优先，批量任务最多占用batchMaxInFlight个名额，给交互请求留出余量
+ * 任务在调度线程池上开始，不占用完成上一个任务的FunASR接收线程
+ */
+@Component
+public class RecognitionScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(RecognitionScheduler.class);
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    @Value("${parameters.scheduler.maxInFlight:8}")
+    private int maxInFlight;
+
+    @Value("${parameters.scheduler.batchMaxInFlight:6}")
+    private int batchMaxInFlight;
+
+    @Value("${parameters.scheduler.maxQueued:10000}")
+    private int maxQueued;
+
+    @Value("${parameters.scheduler.threads:4}")
+    private int threads;
+
+    private final Environment environment;
+
+    private AsyncTaskExecutor startExecutor;
+
+    private final Deque<Task<?>> interactiveQueue = new ArrayDeque<>();
+    private final Deque<Task<?>> batchQueue = new ArrayDeque<>();
+
+    private int inFlight;
+    private int batchInFlight;
+
+    /**
+     * 调度循环的重入计数，完成回调中触发的调度由正在执行的循环代为处理，避免递归
+     */
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+    private final AtomicLong startedCount = new AtomicLong();
+
+    public RecognitionScheduler(Environment environment) {
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() {
+        startExecutor = TaskExecutors.create(environment, "asr-dispatch-", threads, threads, Integer.MAX_VALUE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (startExecutor instanceof DisposableBean disposable) {
+            try {
+                disposable.destroy();
+            } catch (Exception e) {
+                log.warn("关闭识别调度线程池失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 提交识别任务，有空闲名额时立即开始，否则排队
+     * @param priority 优先级
+     * @param work 开始识别，返回识别结果
+     * @return 识别结果；调用方在开始前取消或超时的任务不会再开始
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> work) {
+        Task<T> task = new Task<>(priority, work);
+        synchronized (this) {
+            if (interactiveQueue.size() + batchQueue.size() >= maxQueued) {
+                rejectedCount.incrementAndGet();
+                return CompletableFuture.failedFuture(new RejectedExecutionException("识别队列已满"));
+            }
+            (priority == Priority.INTERACTIVE ? interactiveQueue : batchQueue).add(task);
+        }
+        submittedCount.incrementAndGet();
+        dispatch();
+        return task.future;
+    }
+
+    /**
+     * 调度器状态
+     * @return 并发上限、进行中及排队的任务数
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("batchMaxInFlight", batchMaxInFlight);
+        stats.put("inFlight", inFlight);
+        stats.put("batchInFlight", batchInFlight);
+        stats.put("queuedInteractive", interactiveQueue.size());
+        stats.put("queuedBatch", batchQueue.size());
+        stats.put("submittedCount", submittedCount.get());
+        stats.put("completedCount", completedCount.get());
+        stats.put("rejectedCount", rejectedCount.get());
+        long started = startedCount.get();
+        stats.put("avgQueueMillis", started == 0 ? 0 : totalQueueMillis.get() / started);
+        return stats;
+    }
+
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Task<?> task;
+            while ((task = next()) != null) {
+                start(task);
+            }
+        } while (dispatchRequests.decrementAndGet() != 0);
+    }
+
+    /**
+     * 取出下一个可以开始的任务并占用名额
+     */
+    private synchronized Task<?> next() {
+        while (inFlight < maxInFlight) {
+            Task<?> task = interactiveQueue.poll();
+            if (task == null && batchInFlight < batchMaxInFlight) {
+                task = batchQueue.poll();
+            }
+            if (task == null) {
+                return null;
+            }
+            if (task.future.isDone()) {
+                // 排队期间已被调用方取消或超时
+                continue;
+            }
+            inFlight++;
+            if (task.priority == Priority.BATCH) {
+                batchInFlight++;
+            }
+            return task;
+        }
+        return null;
+    }
+
+    private <T> void start(Task<T> task) {
+        startedCount.incrementAndGet();
+        totalQueueMillis.addAndGet(System.currentTimeMillis() - task.submittedAt);
+
+        // dispatch可能在上一个任务的完成回调(FunASR接收线程)中调用，开始识别的工作交给调度线程池
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(task.work, startExecutor).thenCompose(work -> work);
+        } catch (RejectedExecutionException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((value, ex) -> {
+            synchronized (this) {
+                inFlight--;
+                if (task.priority == Priority.BATCH) {
+                    batchInFlight--;
+                }
+            }
+            completedCount.incrementAndGet();
+            if (ex != null) {
+                task.future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                task.future.complete(value);
+            }
+            dispatch();
+        });
+    }
+
+    private static class Task<T> {
+        private final Priority priority;
+        private final Supplier<CompletableFuture<T>> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long submittedAt = System.currentTimeMillis();
+
+        Task(Priority priority, Supplier<CompletableFuture<T>> work) {
+            this.priority = priority;
+            this.work = work;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.lijian.interview001.service;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次流式识别会话
+ * 调用方边产生音频边调用sendAudio推送，全部推送后调用finish，通过result获取识别结果
+ * 同一会话只能由一个线程推送
+ */
+public class RecognitionSession {
+
+    private final FunASRService service;
+    private final String requestId;
+    private final WebSocketSession session;
+    private final CompletableFuture<String> result;
+    private final RecognitionMetrics.Trace trace;
+
+    RecognitionSession(FunASRService service, String requestId, WebSocketSession session, CompletableFuture<String> result,
+                       RecognitionMetrics.Trace trace) {
+        this.service = service;
+        this.requestId = requestId;
+        this.session = session;
+        this.result = result;
+        this.trace = trace;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * 同步发送一段音频，返回后缓冲区即可复用
+     * 发送在调用线程上完成，网络写满时阻塞调用方，形成对上游读取的反压；
+     * 推送方是该连接唯一的写入者(finish在最后一段之后调用)，数据不会滞留在会话装饰器的发送缓冲中
+     * @param buffer 音频数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @throws IOException 发送失败时抛出
+     */
+    public void sendAudio(byte[] buffer, int offset, int length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        if (!session.isOpen()) {
+            throw new IOException("WebSocket会话已关闭");
+        }
+        session.sendMessage(new BinaryMessage(ByteBuffer.wrap(buffer, offset, length)));
+        trace.sent(length);
+    }
+
+    /**
+     * 告知服务器音频结束
+     * @return 识别结果的CompletableFuture
+     * @throws IOException 发送结束消息失败时抛出
+     */
+    public CompletableFuture<String> finish() throws IOException {
+        service.finishAudioRecognition(requestId);
+        return result;
+    }
+
+    /**
+     * 识别结果
+     * @return 识别结果的CompletableFuture
+     */
+    public CompletableFuture<String> result() {
+        return result;
+    }
+
+    /**
+     * 放弃本次识别并释放连接
+     * @param cause 失败原因
+     */
+    public void abort(Throwable cause) {
+        result.completeExceptionally(cause);
+        service.abort(requestId);
+    }
+}
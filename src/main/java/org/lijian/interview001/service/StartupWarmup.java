@@ -0,0 +1,157 @@
+package org.lijian.interview001.service;
+
+import org.lijian.interview001.utils.AudioProbe;
+import org.lijian.interview001.utils.AudioUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动预热
+ * 预先建立FunASR连接、反复转换一段合成音频触发JIT编译和javax.sound的格式解析器加载、发送一段静音完成一次完整识别。
+ * ApplicationRunner执行完毕后Spring Boot才发布ACCEPTING_TRAFFIC，预热期间就绪探针保持OUT_OF_SERVICE，
+ * 新实例不会在冷启动状态下接收流量；任何一步失败或超时都只记录日志，不影响启动
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    @Value("${parameters.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${parameters.warmup.connections:2}")
+    private int connections;
+
+    @Value("${parameters.warmup.conversions:20}")
+    private int conversions;
+
+    @Value("${parameters.warmup.recognize:true}")
+    private boolean recognize;
+
+    @Value("${parameters.warmup.timeoutSeconds:30}")
+    private long timeoutSeconds;
+
+    private final FunASRConnectionPool connectionPool;
+    private final FunASRService funASRService;
+
+    public StartupWarmup(FunASRConnectionPool connectionPool, FunASRService funASRService) {
+        this.connectionPool = connectionPool;
+        this.funASRService = funASRService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        // 建连在WebSocket线程上进行，同时在当前线程上预热音频转换
+        CompletableFuture<Integer> connected = openConnections();
+        int converted = convert(deadline);
+        Integer opened = await(connected, deadline, "预建FunASR连接");
+        boolean recognized = false;
+        if (recognize && opened != null && opened > 0) {
+            // 已有空闲连接，这次识别只包含初始化消息、发送和结果解析
+            recognized = await(funASRService.recognizeAudio(new byte[AudioSender.PCM_BYTES_PER_SECOND]),
+                    deadline, "预热识别") != null;
+        }
+
+        log.info("启动预热完成，耗时: {}ms，FunASR连接: {}个，音频转换: {}次，识别: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), opened == null ? 0 : opened, converted,
+                recognized ? "成功" : "未完成");
+    }
+
+    /**
+     * 同时借用多个连接再全部归还，连接留在池中空闲
+     * @return 成功建立的连接数
+     */
+    private CompletableFuture<Integer> openConnections() {
+        List<CompletableFuture<FunASRConnection>> borrowed = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            borrowed.add(connectionPool.borrow());
+        }
+        // 超时后仍在建立的连接建立后同样归还
+        return CompletableFuture.allOf(borrowed.toArray(new CompletableFuture<?>[0])).handle((v, ex) -> {
+            int count = 0;
+            for (CompletableFuture<FunASRConnection> future : borrowed) {
+                if (!future.isCompletedExceptionally()) {
+                    connectionPool.release(future.join());
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * 转换44.1kHz立体声和8kHz单声道两种WAV，覆盖混音和不同比例的重采样
+     * @return 完成的转换次数
+     */
+    private int convert(long deadline) {
+        int count = 0;
+        try {
+            byte[][] samples = {wav(new AudioFormat(44100, 16, 2, true, false)), wav(new AudioFormat(8000, 16, 1, true, false))};
+            while (count < conversions && System.nanoTime() < deadline) {
+                try (AudioProbe probe = AudioUtils.probe(samples[count % samples.length])) {
+                    probe.readPcmBuffer();
+                }
+                count++;
+            }
+        } catch (IOException e) {
+            log.warn("预热音频转换失败: {}", e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * 一秒440Hz正弦波
+     */
+    private static byte[] wav(AudioFormat format) throws IOException {
+        int frames = (int) format.getSampleRate();
+        byte[] pcm = new byte[frames * format.getFrameSize()];
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / format.getSampleRate()) * 8000);
+            for (int channel = 0; channel < format.getChannels(); channel++) {
+                int offset = (i * format.getChannels() + channel) * 2;
+                pcm[offset] = (byte) sample;
+                pcm[offset + 1] = (byte) (sample >> 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pcm.length + 64);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, frames), AudioFileFormat.Type.WAVE, out);
+        return out.toByteArray();
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long deadline, String step) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("{}超时，不再等待", step);
+        } catch (ExecutionException e) {
+            log.warn("{}失败: {}", step, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
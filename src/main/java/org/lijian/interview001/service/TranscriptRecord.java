@@ -0,0 +1,72 @@
+package org.lijian.interview001.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次识别的转写结果，交给TranscriptStore异步保存
+ */
+public class TranscriptRecord {
+
+    private final String requestId;
+    private final String source;
+    private final String audioHash;
+    private final Long durationMillis;
+    private final String text;
+    private final List<Map<String, Object>> segments;
+    private final long latencyMillis;
+    private final long createdAt;
+
+    /**
+     * @param requestId 请求ID
+     * @param source 来源接口: recognize/sse/stream/long/batch
+     * @param audioHash 音频的SHA-256，取识别时已计算的结果缓存键(音频内容、模式和热词)；未经过缓存时为null
+     * @param durationMillis 音频时长，未知时为null
+     * @param text 识别文本
+     * @param segments 分段结果，没有时为null
+     * @param latencyMillis 识别耗时
+     */
+    public TranscriptRecord(String requestId, String source, String audioHash, Long durationMillis, String text,
+                            List<Map<String, Object>> segments, long latencyMillis) {
+        this.requestId = requestId;
+        this.source = source;
+        this.audioHash = audioHash;
+        this.durationMillis = durationMillis;
+        this.text = text;
+        this.segments = segments;
+        this.latencyMillis = latencyMillis;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getAudioHash() {
+        return audioHash;
+    }
+
+    public Long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<Map<String, Object>> getSegments() {
+        return segments;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
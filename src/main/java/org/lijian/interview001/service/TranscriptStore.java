@@ -0,0 +1,428 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 转写结果的持久化和检索
+ * 识别完成时只把结果放入有界队列，由后台线程攒批后以JDBC批量插入写库，识别请求从不等待数据库；
+ * 数据库不可用或队列已满时丢弃结果并计数，不影响识别。
+ * 文本按字符二元组建立倒排表asr_transcript_term，检索时要求包含查询的全部二元组且查询原文连续出现，
+ * 中文无需分词，MySQL和H2上行为一致
+ */
+@Component
+public class TranscriptStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptStore.class);
+
+    /**
+     * 查询最多拆分的词数
+     */
+    private static final int MAX_QUERY_TERMS = 64;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS asr_transcript ("
+                    + "request_id VARCHAR(36) NOT NULL PRIMARY KEY, "
+                    + "source VARCHAR(16) NOT NULL, "
+                    + "audio_hash CHAR(64), "
+                    + "duration_millis BIGINT, "
+                    + "text_content MEDIUMTEXT, "
+                    + "segments MEDIUMTEXT, "
+                    + "latency_millis BIGINT NOT NULL, "
+                    + "created_at BIGINT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS asr_transcript_term ("
+                    + "term VARCHAR(8) NOT NULL, "
+                    + "request_id VARCHAR(36) NOT NULL, "
+                    + "PRIMARY KEY (term, request_id))"
+    };
+
+    private static final String INSERT_TRANSCRIPT = "INSERT INTO asr_transcript "
+            + "(request_id, source, audio_hash, duration_millis, text_content, segments, latency_millis, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TERM = "INSERT INTO asr_transcript_term (term, request_id) VALUES (?, ?)";
+
+    private static final String COLUMNS = "t.request_id, t.source, t.audio_hash, t.duration_millis, t.text_content, "
+            + "t.latency_millis, t.created_at";
+
+    private static final RowMapper<Map<String, Object>> SUMMARY = (rs, rowNum) -> {
+        Map<String, Object> transcript = new LinkedHashMap<>();
+        transcript.put("requestId", rs.getString("request_id"));
+        transcript.put("source", rs.getString("source"));
+        transcript.put("audioHash", rs.getString("audio_hash"));
+        long duration = rs.getLong("duration_millis");
+        transcript.put("durationMillis", rs.wasNull() ? null : duration);
+        transcript.put("text", rs.getString("text_content"));
+        transcript.put("latencyMillis", rs.getLong("latency_millis"));
+        transcript.put("createdAt", rs.getLong("created_at"));
+        return transcript;
+    };
+
+    @Value("${parameters.transcript.enabled:true}")
+    private boolean enabled;
+
+    @Value("${parameters.transcript.queueCapacity:10000}")
+    private int queueCapacity;
+
+    @Value("${parameters.transcript.batchSize:200}")
+    private int batchSize;
+
+    @Value("${parameters.transcript.maxDelayMillis:200}")
+    private long maxDelayMillis;
+
+    @Value("${parameters.transcript.maxSearchResults:100}")
+    private int maxSearchResults;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private BlockingQueue<TranscriptRecord> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean schemaReady;
+
+    public TranscriptStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeLoop, "transcript-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 停止写入线程，并写入队列中剩余的结果
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(maxDelayMillis + TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<TranscriptRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交转写结果，不等待写入
+     * @param record 转写结果
+     * @return 是否已放入写入队列，未开启或队列已满时返回false
+     */
+    public boolean save(TranscriptRecord record) {
+        if (!enabled || !running) {
+            return false;
+        }
+        if (!queue.offer(record)) {
+            // 数据库长时间不可用时队列一直是满的，只间隔记录日志
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                log.warn("转写结果写入队列已满，已丢弃{}条", count);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        List<TranscriptRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                TranscriptRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 负载高时很快攒满一批，负载低时最多等待maxDelayMillis
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    TranscriptRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(batch);
+                return;
+            } catch (RuntimeException e) {
+                log.error("转写结果写入线程异常: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中批量插入转写结果及其倒排项
+     * 个别记录写不进去(如主键重复)时整批回滚，改为逐条写入，只丢弃失败的记录；数据库不可用时整批丢弃
+     */
+    private void write(List<TranscriptRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            ensureSchema();
+            insert(batch);
+            written.addAndGet(batch.size());
+        } catch (DataAccessResourceFailureException | TransientDataAccessException e) {
+            failed.addAndGet(batch.size());
+            log.warn("写入转写结果失败，丢弃{}条: {}", batch.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("批量写入转写结果失败，逐条重试{}条: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                TranscriptRecord record = batch.get(i);
+                try {
+                    insert(List.of(record));
+                    written.incrementAndGet();
+                } catch (DataAccessResourceFailureException | TransientDataAccessException ex) {
+                    failed.addAndGet(batch.size() - i);
+                    log.warn("写入转写结果失败，丢弃{}条: {}", batch.size() - i, ex.getMessage());
+                    return;
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    log.warn("写入转写结果失败，丢弃: {}, {}", record.getRequestId(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void insert(List<TranscriptRecord> records) {
+        List<Object[]> rows = new ArrayList<>(records.size());
+        List<Object[]> terms = new ArrayList<>();
+        for (TranscriptRecord record : records) {
+            rows.add(new Object[]{record.getRequestId(), record.getSource(), record.getAudioHash(),
+                    record.getDurationMillis(), record.getText(), toJson(record.getSegments()),
+                    record.getLatencyMillis(), record.getCreatedAt()});
+            for (String term : terms(record.getText())) {
+                terms.add(new Object[]{term, record.getRequestId()});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_TRANSCRIPT, rows);
+            if (!terms.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_TERM, terms);
+            }
+        });
+    }
+
+    /**
+     * 按文本检索，先按倒排表筛出包含查询全部字符二元组的记录，再要求查询的每段字母数字连续出现，按识别时间倒序
+     * @param query 查询文本
+     * @param limit 最多返回的条数，不超过maxSearchResults
+     * @return 转写结果，不含分段
+     */
+    public List<Map<String, Object>> search(String query, int limit) {
+        Set<String> queryTerms = terms(query);
+        if (queryTerms.size() > MAX_QUERY_TERMS || words(query).size() > MAX_QUERY_TERMS) {
+            throw new IllegalArgumentException("查询内容过长");
+        }
+        int max = Math.max(1, Math.min(limit, maxSearchResults));
+        ensureSchema();
+        if (queryTerms.isEmpty()) {
+            // 不足两个字，倒排表无法命中，退化为逐行匹配
+            String keyword = query.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            if (keyword.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return jdbcTemplate.query("SELECT " + COLUMNS + " FROM asr_transcript t WHERE t.text_content LIKE ? "
+                    + "ORDER BY t.created_at DESC LIMIT ?", SUMMARY, "%" + keyword + "%", max);
+        }
+
+        // 倒排表只能保证二元组都出现，再要求查询中每段连续的字母数字原样出现在文本中
+        List<String> words = words(query);
+        String placeholders = String.join(",", Collections.nCopies(queryTerms.size(), "?"));
+        String contains = String.join("", Collections.nCopies(words.size(), " AND LOWER(t.text_content) LIKE ?"));
+        List<Object> args = new ArrayList<>(queryTerms);
+        args.add(queryTerms.size());
+        for (String word : words) {
+            args.add("%" + word + "%");
+        }
+        args.add(max);
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM asr_transcript t JOIN ("
+                + "SELECT request_id FROM asr_transcript_term WHERE term IN (" + placeholders + ") "
+                + "GROUP BY request_id HAVING COUNT(*) = ?) m ON m.request_id = t.request_id"
+                + " WHERE 1 = 1" + contains + " "
+                + "ORDER BY t.created_at DESC LIMIT ?", SUMMARY, args.toArray());
+    }
+
+    /**
+     * 查询一次识别的转写结果
+     * @param requestId 请求ID
+     * @return 转写结果，含分段；不存在时返回null
+     */
+    public Map<String, Object> find(String requestId) {
+        ensureSchema();
+        List<Map<String, Object>> results = jdbcTemplate.query("SELECT " + COLUMNS + ", t.segments FROM asr_transcript t "
+                + "WHERE t.request_id = ?", (rs, rowNum) -> {
+            Map<String, Object> transcript = SUMMARY.mapRow(rs, rowNum);
+            String segments = rs.getString("segments");
+            transcript.put("segments", segments == null ? null : fromJson(segments));
+            return transcript;
+        }, requestId);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * 写入队列状态
+     * @return 排队数、已写入、队列满丢弃和写入失败丢弃的条数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", queue == null ? 0 : queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    /**
+     * 拆分为去重的字符二元组，字母和数字以外的字符作为分隔，英文转为小写
+     * @param text 文本
+     * @return 倒排项，不足两个字时为空
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int previous = -1;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                previous = -1;
+                continue;
+            }
+            codePoint = Character.toLowerCase(codePoint);
+            if (previous >= 0) {
+                terms.add(new StringBuilder(4).appendCodePoint(previous).appendCodePoint(codePoint).toString());
+            }
+            previous = codePoint;
+        }
+        return terms;
+    }
+
+    /**
+     * 拆分为连续的字母数字片段，与terms使用相同的分隔规则，英文转为小写
+     * @param text 文本
+     * @return 去重的片段，只含字母和数字，可直接用于LIKE
+     */
+    static List<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * 首次写入或查询时建表，数据库在启动时不可用也不影响服务启动
+     */
+    private void ensureSchema() {
+        if (schemaReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!schemaReady) {
+                for (String statement : SCHEMA) {
+                    jdbcTemplate.execute(statement);
+                }
+                schemaReady = true;
+            }
+        }
+    }
+
+    private String toJson(List<Map<String, Object>> segments) {
+        if (segments == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(segments);
+        } catch (JsonProcessingException e) {
+            log.warn("序列化分段结果失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private List<Map<String, Object>> fromJson(String segments) {
+        try {
+            return objectMapper.readValue(segments, new TypeReference<>() {
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("解析分段结果失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.lijian.interview001.utils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 一次探测的结果：源音频格式信息以及对应的PCM数据源
+ * 由AudioUtils.probe创建，源只打开一次，读取完毕后需要关闭
+ */
+public class AudioProbe implements Closeable {
+
+    /**
+     * 按帧数预分配转换结果时多留的余量，重采样的边界处理可能多输出少量样本
+     */
+    private static final int ESTIMATE_SLACK_BYTES = 4096;
+
+    private final AudioFileFormat.Type fileType;
+    private final AudioFormat sourceFormat;
+    private final long frameLength;
+    private final boolean passthrough;
+    private final InputStream pcmStream;
+
+    private final byte[] array;
+    private final int offset;
+    private final int length;
+    private final ByteBuffer buffer;
+
+    AudioProbe(AudioFileFormat.Type fileType, AudioFormat sourceFormat, long frameLength,
+               boolean passthrough, InputStream pcmStream) {
+        this(fileType, sourceFormat, frameLength, passthrough, pcmStream, null, 0, 0);
+    }
+
+    AudioProbe(AudioFileFormat.Type fileType, AudioFormat sourceFormat, long frameLength,
+               boolean passthrough, InputStream pcmStream, ByteBuffer buffer) {
+        this.fileType = fileType;
+        this.sourceFormat = sourceFormat;
+        this.frameLength = frameLength;
+        this.passthrough = passthrough;
+        this.pcmStream = pcmStream;
+        this.array = null;
+        this.offset = 0;
+        this.length = 0;
+        this.buffer = buffer;
+    }
+
+    AudioProbe(AudioFileFormat.Type fileType, AudioFormat sourceFormat, long frameLength,
+               boolean passthrough, InputStream pcmStream, byte[] array, int offset, int length) {
+        this.fileType = fileType;
+        this.sourceFormat = sourceFormat;
+        this.frameLength = frameLength;
+        this.passthrough = passthrough;
+        this.pcmStream = pcmStream;
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+        this.buffer = null;
+    }
+
+    /**
+     * 是否为javax.sound可以识别的格式，不支持时PCM数据源为原始字节
+     */
+    public boolean isSupported() {
+        return sourceFormat != null;
+    }
+
+    /**
+     * 源音频已是16kHz、16bit、单声道小端PCM，无需转换
+     */
+    public boolean isPassthrough() {
+        return passthrough;
+    }
+
+    public AudioFileFormat.Type getFileType() {
+        return fileType;
+    }
+
+    public AudioFormat getSourceFormat() {
+        return sourceFormat;
+    }
+
+    /**
+     * 源音频帧数，未知时为AudioSystem.NOT_SPECIFIED
+     */
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * 源音频时长(秒)，未知时返回-1
+     */
+    public double getDurationSeconds() {
+        if (sourceFormat == null || frameLength <= 0 || sourceFormat.getFrameRate() <= 0) {
+            return -1;
+        }
+        return frameLength / sourceFormat.getFrameRate();
+    }
+
+    /**
+     * 按需转换的PCM数据流
+     */
+    public InputStream getPcmStream() {
+        return pcmStream;
+    }
+
+    /**
+     * 源为字节数组且无需转换时，PCM数据直接是源数组中的一段
+     */
+    public boolean hasPcmArray() {
+        return array != null;
+    }
+
+    public byte[] getPcmArray() {
+        return array;
+    }
+
+    public int getPcmOffset() {
+        return offset;
+    }
+
+    public int getPcmLength() {
+        return length;
+    }
+
+    /**
+     * PCM数据已在内存中(源数组或内存映射的文件)，无需读取即可切片发送
+     */
+    public boolean hasPcmBuffer() {
+        return array != null || buffer != null;
+    }
+
+    /**
+     * 读取全部PCM数据，返回只读视图
+     * 数据已在内存中时不复制；需要转换时按帧数预分配一次，结果不再裁剪复制
+     * @return PCM数据，position为0
+     * @throws IOException 读取失败时抛出
+     */
+    public ByteBuffer readPcmBuffer() throws IOException {
+        if (array != null) {
+            return ByteBuffer.wrap(array, offset, length).slice().asReadOnlyBuffer();
+        }
+        if (buffer != null) {
+            return buffer.duplicate();
+        }
+
+        int estimate = estimatePcmLength();
+        if (estimate <= 0) {
+            return ByteBuffer.wrap(pcmStream.readAllBytes()).asReadOnlyBuffer();
+        }
+        byte[] pcm = new byte[estimate];
+        int filled = pcmStream.readNBytes(pcm, 0, pcm.length);
+        if (filled == pcm.length) {
+            pcm = appendRemaining(pcm);
+            filled = pcm.length;
+        }
+        return ByteBuffer.wrap(pcm, 0, filled).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 读取全部PCM数据
+     * @return PCM数据
+     * @throws IOException 读取失败时抛出
+     */
+    public byte[] readAllPcm() throws IOException {
+        if (array != null) {
+            if (offset == 0 && length == array.length) {
+                return array;
+            }
+            return Arrays.copyOfRange(array, offset, offset + length);
+        }
+        if (buffer != null) {
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            return copy;
+        }
+
+        int estimate = estimatePcmLength();
+        if (estimate <= 0) {
+            return pcmStream.readAllBytes();
+        }
+        byte[] pcm = new byte[estimate];
+        int filled = pcmStream.readNBytes(pcm, 0, pcm.length);
+        if (filled == pcm.length) {
+            return appendRemaining(pcm);
+        }
+        return Arrays.copyOf(pcm, filled);
+    }
+
+    /**
+     * 按源帧数估算转换后的PCM字节数，未知时返回-1
+     */
+    private int estimatePcmLength() {
+        if (sourceFormat == null || frameLength <= 0 || sourceFormat.getFrameRate() <= 0) {
+            return -1;
+        }
+        double samples = frameLength * (double) AudioUtils.TARGET_FORMAT.getSampleRate() / sourceFormat.getFrameRate();
+        double bytes = Math.ceil(samples) * AudioUtils.TARGET_FORMAT.getFrameSize() + ESTIMATE_SLACK_BYTES;
+        return bytes > Integer.MAX_VALUE - 8 ? -1 : (int) bytes;
+    }
+
+    /**
+     * 估算偏小时读取剩余数据并拼接
+     */
+    private byte[] appendRemaining(byte[] pcm) throws IOException {
+        byte[] remaining = pcmStream.readAllBytes();
+        if (remaining.length == 0) {
+            return pcm;
+        }
+        byte[] all = Arrays.copyOf(pcm, pcm.length + remaining.length);
+        System.arraycopy(remaining, 0, all, pcm.length, remaining.length);
+        return all;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pcmStream.close();
+    }
+
+    @Override
+    public String toString() {
+        return "AudioProbe[type=" + fileType + ", format=" + sourceFormat
+                + ", frames=" + frameLength + ", passthrough=" + passthrough + "]";
+    }
+}
@@ -5,10 +5,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sound.sampled.*;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 //@Slf4j
 public class AudioUtils {
@@ -17,6 +24,22 @@ public class AudioUtils {
 
     private static final Logger log = LoggerFactory.getLogger(AudioUtils.class);
 
+    /**
+     * 目标PCM格式 (16kHz, 16bit, 单声道, 有符号, 小端序)
+     */
+    public static final AudioFormat TARGET_FORMAT = new AudioFormat(
+            16000, // 采样率
+            16,     // 采样位数
+            1,      // 声道数
+            true,   // 有符号
+            false   // 大端序
+    );
+
+    /**
+     * 格式探测时的读缓冲大小，需要足够容纳文件头
+     */
+    private static final int PROBE_BUFFER_SIZE = 64 * 1024;
+
     /**
      * 将音频文件转换为PCM格式
      * @param audioData 原始音频数据
@@ -24,76 +47,239 @@ public class AudioUtils {
      * @throws IOException 转换失败时抛出
      */
     public static byte[] convertToPCM(byte[] audioData) throws IOException {
+        try (AudioProbe probe = probe(audioData)) {
+            if (!probe.isSupported()) {
+                throw new IOException("不支持的音频格式");
+            }
+            return probe.readAllPcm();
+        }
+    }
+
+    /**
+     * 将音频文件转换为PCM格式
+     * @param audioFile 音频文件
+     * @return PCM格式的音频数据
+     * @throws IOException 转换失败时抛出
+     */
+    public static byte[] convertFileToPCM(File audioFile) throws IOException {
+        try (AudioProbe probe = probe(audioFile)) {
+            if (!probe.isSupported()) {
+                throw new IOException("不支持的音频格式");
+            }
+            log.info("原始音频格式: {}", probe.getSourceFormat());
+            return probe.readAllPcm();
+        }
+    }
+
+    /**
+     * 将音频流包装为PCM数据流，按需边读边转换，不缓冲整段音频
+     * 不支持的格式原样返回，交由服务端直接识别
+     * @param inputStream 原始音频流
+     * @return 16kHz、16bit、单声道PCM数据流
+     * @throws IOException 读取失败时抛出
+     */
+    public static InputStream openPCMStream(InputStream inputStream) throws IOException {
+        return probe(inputStream).getPcmStream();
+    }
+
+    /**
+     * 打开一次音频文件，同时得到格式信息和PCM数据源
+     * @param audioFile 音频文件
+     * @return 探测结果，使用完毕后需要关闭
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probe(File audioFile) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(audioFile), PROBE_BUFFER_SIZE);
         try {
-            // 从字节数组创建音频流
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(
-                    new ByteArrayInputStream(audioData));
-
-            // 获取音频格式
-            AudioFormat sourceFormat = audioInputStream.getFormat();
-
-            // 定义目标PCM格式 (16kHz, 16bit, 单声道)
-            AudioFormat targetFormat = new AudioFormat(
-                    16000, // 采样率
-                    16,     // 采样位数
-                    1,      // 声道数
-                    true,   // 有符号
-                    false   // 大端序
-            );
-
-            // 转换格式
-            AudioInputStream convertedStream = AudioSystem.getAudioInputStream(
-                    targetFormat, audioInputStream);
-
-            // 读取转换后的音频数据
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            int read;
+            return probe(inputStream);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
 
-            while ((read = convertedStream.read(buffer, 0, buffer.length)) != -1) {
-                outputStream.write(buffer, 0, read);
+    /**
+     * 打开音频文件，大文件以内存映射方式打开，小文件映射的开销大于收益，仍按流读取
+     * @param audioFile 音频文件
+     * @param mapThreshold 内存映射的最小文件大小(字节)，小于0时不映射
+     * @return 探测结果，使用完毕后需要关闭
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probe(File audioFile, long mapThreshold) throws IOException {
+        if (mapThreshold >= 0 && audioFile.length() >= mapThreshold) {
+            return probeMapped(audioFile);
+        }
+        return probe(audioFile);
+    }
+
+    /**
+     * 以内存映射方式打开音频文件，PCM数据直接引用映射区域，发送时切片即可，不复制到堆内存
+     * 需要转换的格式也从映射区域读取；映射在缓冲区被回收时释放
+     * @param audioFile 音频文件
+     * @return 探测结果，使用完毕后需要关闭
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probeMapped(File audioFile) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                // 单个映射区域不能超过2GB
+                return probe(audioFile);
+            }
+            // 通道关闭后映射仍然有效
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return probe(mapped);
+    }
+
+    /**
+     * 探测ByteBuffer中的音频数据，例如内存映射的文件
+     * 已是目标格式时PCM数据是源缓冲区的一个切片，不做任何复制
+     * @param audioData 原始音频数据
+     * @return 探测结果
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probe(ByteBuffer audioData) throws IOException {
+        ByteBufferInputStream inputStream = new ByteBufferInputStream(audioData);
+        AudioFileFormat fileFormat;
+        AudioInputStream audioInputStream;
+        try {
+            fileFormat = AudioSystem.getAudioFileFormat(inputStream);
+            audioInputStream = AudioSystem.getAudioInputStream(inputStream);
+        } catch (UnsupportedAudioFileException e) {
+            log.warn("不支持的音频格式，将尝试直接识别");
+            return new AudioProbe(null, null, AudioSystem.NOT_SPECIFIED, false,
+                    inputStream, audioData.slice().asReadOnlyBuffer());
+        }
+
+        AudioFormat sourceFormat = audioInputStream.getFormat();
+        if (isTargetFormat(sourceFormat)) {
+            // 文件头解析完后流正好停在音频数据起点
+            int offset = inputStream.position();
+            int length = inputStream.available();
+            long frameLength = audioInputStream.getFrameLength();
+            if (frameLength != AudioSystem.NOT_SPECIFIED) {
+                length = (int) Math.min(length, frameLength * sourceFormat.getFrameSize());
             }
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, true,
+                    audioInputStream, audioData.slice(offset, length).asReadOnlyBuffer());
+        }
+        return toProbe(fileFormat, audioInputStream);
+    }
+
+    /**
+     * 探测内存中的音频数据
+     * 已是目标格式时PCM数据直接引用源数组中的数据段，不做任何复制
+     * @param audioData 原始音频数据
+     * @return 探测结果
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probe(byte[] audioData) throws IOException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(audioData);
+        AudioFileFormat fileFormat;
+        AudioInputStream audioInputStream;
+        try {
+            fileFormat = AudioSystem.getAudioFileFormat(inputStream);
+            audioInputStream = AudioSystem.getAudioInputStream(inputStream);
+        } catch (UnsupportedAudioFileException e) {
+            // 不支持的格式按原始字节处理
+            return new AudioProbe(null, null, AudioSystem.NOT_SPECIFIED, false,
+                    inputStream, audioData, 0, audioData.length);
+        }
 
-            convertedStream.close();
-            audioInputStream.close();
+        AudioFormat sourceFormat = audioInputStream.getFormat();
+        if (isTargetFormat(sourceFormat)) {
+            // 文件头解析完后流正好停在音频数据起点
+            int offset = audioData.length - inputStream.available();
+            int length = inputStream.available();
+            long frameLength = audioInputStream.getFrameLength();
+            if (frameLength != AudioSystem.NOT_SPECIFIED) {
+                length = (int) Math.min(length, frameLength * sourceFormat.getFrameSize());
+            }
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, true,
+                    audioInputStream, audioData, offset, length);
+        }
+        return toProbe(fileFormat, audioInputStream);
+    }
 
-            return outputStream.toByteArray();
+    /**
+     * 探测音频流，只读取一次，文件头之后的数据按需转换
+     * @param inputStream 原始音频流
+     * @return 探测结果，使用完毕后需要关闭
+     * @throws IOException 读取失败时抛出
+     */
+    public static AudioProbe probe(InputStream inputStream) throws IOException {
+        // 格式探测需要mark/reset
+        InputStream markableStream = inputStream.markSupported()
+                ? inputStream
+                : new BufferedInputStream(inputStream, PROBE_BUFFER_SIZE);
 
+        AudioFileFormat fileFormat;
+        AudioInputStream audioInputStream;
+        try {
+            fileFormat = AudioSystem.getAudioFileFormat(markableStream);
+            audioInputStream = AudioSystem.getAudioInputStream(markableStream);
         } catch (UnsupportedAudioFileException e) {
-            log.error("不支持的音频格式: {}", e.getMessage(), e);
-            throw new IOException("不支持的音频格式", e);
+            log.warn("不支持的音频格式，将尝试直接识别");
+            return new AudioProbe(null, null, AudioSystem.NOT_SPECIFIED, false, markableStream);
         }
+        return toProbe(fileFormat, audioInputStream);
     }
 
     /**
-     * 将音频文件转换为PCM格式
-     * @param audioFile 音频文件
+     * 判断音频格式是否已是目标PCM格式
+     * @param format 音频格式
+     * @return 是否无需转换
+     */
+    public static boolean isTargetFormat(AudioFormat format) {
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                && format.getSampleRate() == TARGET_FORMAT.getSampleRate()
+                && format.getSampleSizeInBits() == TARGET_FORMAT.getSampleSizeInBits()
+                && format.getChannels() == TARGET_FORMAT.getChannels()
+                && !format.isBigEndian();
+    }
+
+    private static AudioProbe toProbe(AudioFileFormat fileFormat, AudioInputStream audioInputStream) {
+        AudioFormat sourceFormat = audioInputStream.getFormat();
+        long frameLength = audioInputStream.getFrameLength();
+
+        if (isTargetFormat(sourceFormat)) {
+            // 已是目标格式，直接透传
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, true, audioInputStream);
+        }
+
+        // PCM及浮点格式由PcmConverter完成重采样和混音，不经过javax.sound的格式转换
+        if (PcmConverter.isSupported(sourceFormat)) {
+            InputStream convertedStream = new PcmConverterInputStream(audioInputStream, new PcmConverter(sourceFormat));
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, false, convertedStream);
+        }
+
+        try {
+            // 其他编码(如ULAW/ALAW)先由javax.sound解码为PCM，采样率和声道仍由PcmConverter处理
+            AudioInputStream decodedStream = AudioSystem.getAudioInputStream(
+                    AudioFormat.Encoding.PCM_SIGNED, audioInputStream);
+            AudioFormat decodedFormat = decodedStream.getFormat();
+            if (PcmConverter.isSupported(decodedFormat)) {
+                InputStream convertedStream = new PcmConverterInputStream(decodedStream, new PcmConverter(decodedFormat));
+                return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, false, convertedStream);
+            }
+            AudioInputStream convertedStream = AudioSystem.getAudioInputStream(TARGET_FORMAT, decodedStream);
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, false, convertedStream);
+        } catch (IllegalArgumentException e) {
+            log.warn("无法转换音频格式: {}，将尝试直接识别", e.getMessage());
+            return new AudioProbe(fileFormat.getType(), sourceFormat, frameLength, false, audioInputStream);
+        }
+    }
+
+    /**
+     * 使用javax.sound的格式转换得到PCM数据，保留作为PcmConverter的对照实现
+     * @param audioData 原始音频数据
      * @return PCM格式的音频数据
      * @throws IOException 转换失败时抛出
      */
-    public static byte[] convertFileToPCM(File audioFile) throws IOException {
-        try {
-            // 从文件创建音频流
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(audioFile);
-
-            // 获取音频格式
-            AudioFormat sourceFormat = audioInputStream.getFormat();
-            log.info("原始音频格式: {}", sourceFormat);
-
-            // 定义目标PCM格式 (16kHz, 16bit, 单声道)
-            AudioFormat targetFormat = new AudioFormat(
-                    16000, // 采样率
-                    16,     // 采样位数
-                    1,      // 声道数
-                    true,   // 有符号
-                    false   // 大端序
-            );
-
-            // 转换格式
-            AudioInputStream convertedStream = AudioSystem.getAudioInputStream(
-                    targetFormat, audioInputStream);
-
-            // 读取转换后的音频数据
+    public static byte[] convertToPCMWithAudioSystem(byte[] audioData) throws IOException {
+        try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(audioData));
+             AudioInputStream convertedStream = AudioSystem.getAudioInputStream(TARGET_FORMAT, audioInputStream)) {
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             byte[] buffer = new byte[4096];
             int read;
@@ -101,12 +287,7 @@ public class AudioUtils {
             while ((read = convertedStream.read(buffer, 0, buffer.length)) != -1) {
                 outputStream.write(buffer, 0, read);
             }
-
-            convertedStream.close();
-            audioInputStream.close();
-
             return outputStream.toByteArray();
-
         } catch (UnsupportedAudioFileException e) {
             log.error("不支持的音频格式: {}", e.getMessage(), e);
             throw new IOException("不支持的音频格式", e);
@@ -119,11 +300,10 @@ public class AudioUtils {
      * @return 是否支持
      */
     public static boolean isSupportedAudioFormat(File file) {
-        try {
-            AudioSystem.getAudioInputStream(file);
+        try (AudioInputStream ignored = AudioSystem.getAudioInputStream(file)) {
             return true;
         } catch (UnsupportedAudioFileException | IOException e) {
             return false;
         }
     }
-}
\ No newline at end of file
+}
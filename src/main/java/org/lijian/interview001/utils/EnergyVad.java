@@ -0,0 +1,215 @@
+package org.lijian.interview001.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于短时能量的静音检测，用于把长音频在静音处切分为多个分段
+ * 输入为16kHz、16bit、单声道小端PCM；阈值取噪声底(能量较低的10%帧)之上固定dB，适应不同录音电平
+ */
+public class EnergyVad {
+
+    static final int SAMPLE_RATE = (int) AudioUtils.TARGET_FORMAT.getSampleRate();
+
+    static final int BYTES_PER_SAMPLE = 2;
+
+    /**
+     * 分析帧长(毫秒)
+     */
+    static final int FRAME_MILLIS = 30;
+
+    static final int FRAME_SAMPLES = SAMPLE_RATE * FRAME_MILLIS / 1000;
+
+    /**
+     * 能量低于该值(dBFS)的帧一律视为静音
+     */
+    static final double ABSOLUTE_SILENCE_DB = -55;
+
+    private final int minSegmentFrames;
+    private final int maxSegmentFrames;
+    private final int minSilenceFrames;
+    private final double thresholdMarginDb;
+
+    /**
+     * @param minSegmentMillis 分段最短时长，短于该时长不在静音处切分
+     * @param maxSegmentMillis 分段最长时长，超过时在最近一段窗口内能量最低处强制切分
+     * @param minSilenceMillis 可作为切分点的最短静音时长
+     * @param thresholdMarginDb 语音判定阈值高出噪声底的dB数
+     */
+    public EnergyVad(int minSegmentMillis, int maxSegmentMillis, int minSilenceMillis, double thresholdMarginDb) {
+        if (maxSegmentMillis < minSegmentMillis || minSegmentMillis <= 0) {
+            throw new IllegalArgumentException("分段时长配置错误: " + minSegmentMillis + "-" + maxSegmentMillis);
+        }
+        this.minSegmentFrames = Math.max(1, minSegmentMillis / FRAME_MILLIS);
+        this.maxSegmentFrames = Math.max(minSegmentFrames, maxSegmentMillis / FRAME_MILLIS);
+        this.minSilenceFrames = Math.max(1, minSilenceMillis / FRAME_MILLIS);
+        this.thresholdMarginDb = thresholdMarginDb;
+    }
+
+    /**
+     * 切分PCM数据
+     * @param pcm PCM数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 按时间顺序排列、首尾相接覆盖全部数据的分段
+     */
+    public List<Segment> split(byte[] pcm, int offset, int length) {
+        return split(ByteBuffer.wrap(pcm), offset, length);
+    }
+
+    /**
+     * 切分缓冲区中的PCM数据，例如内存映射的文件
+     * @param pcm PCM数据，按绝对位置读取，不改变其position
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 按时间顺序排列、首尾相接覆盖全部数据的分段，位置相对于缓冲区
+     */
+    public List<Segment> split(ByteBuffer pcm, int offset, int length) {
+        int sampleCount = length / BYTES_PER_SAMPLE;
+        int frameCount = (sampleCount + FRAME_SAMPLES - 1) / FRAME_SAMPLES;
+        List<Segment> segments = new ArrayList<>();
+        if (frameCount == 0) {
+            return segments;
+        }
+
+        double[] energy = frameEnergy(pcm, offset, sampleCount, frameCount);
+        double threshold = Math.max(ABSOLUTE_SILENCE_DB, noiseFloor(energy) + thresholdMarginDb);
+
+        int segmentStart = 0;
+        int silenceStart = -1;
+        for (int frame = 0; frame < frameCount; frame++) {
+            boolean silent = energy[frame] < threshold;
+            if (silent) {
+                if (silenceStart < 0) {
+                    silenceStart = frame;
+                }
+            } else if (silenceStart >= 0) {
+                // 一段静音结束，足够长且分段已达最短时长时在静音中点切分
+                int cut = silenceStart + (frame - silenceStart) / 2;
+                if (frame - silenceStart >= minSilenceFrames && cut - segmentStart >= minSegmentFrames) {
+                    segments.add(toSegment(offset, length, segmentStart, cut));
+                    segmentStart = cut;
+                }
+                silenceStart = -1;
+            }
+
+            if (frame + 1 - segmentStart >= maxSegmentFrames) {
+                // 长时间没有合适的静音，在后半段能量最低处强制切分
+                int cut = quietestFrame(energy, segmentStart + Math.max(1, maxSegmentFrames / 2), frame + 1);
+                segments.add(toSegment(offset, length, segmentStart, cut));
+                segmentStart = cut;
+                silenceStart = silenceStart >= 0 && silenceStart < cut ? cut : silenceStart;
+            }
+        }
+
+        if (segmentStart < frameCount) {
+            int tailFrames = frameCount - segmentStart;
+            if (!segments.isEmpty() && tailFrames < minSegmentFrames / 2
+                    && segments.get(segments.size() - 1).frames() + tailFrames <= maxSegmentFrames) {
+                // 尾部过短时并入上一段
+                Segment last = segments.remove(segments.size() - 1);
+                segments.add(toSegment(offset, length, last.startFrame, frameCount));
+            } else {
+                segments.add(toSegment(offset, length, segmentStart, frameCount));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 每帧的能量(dBFS)
+     */
+    static double[] frameEnergy(ByteBuffer buffer, int offset, int sampleCount, int frameCount) {
+        ByteBuffer pcm = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        double[] energy = new double[frameCount];
+        for (int frame = 0; frame < frameCount; frame++) {
+            int start = frame * FRAME_SAMPLES;
+            int end = Math.min(start + FRAME_SAMPLES, sampleCount);
+            long sum = 0;
+            for (int i = start, p = offset + start * BYTES_PER_SAMPLE; i < end; i++, p += BYTES_PER_SAMPLE) {
+                int sample = pcm.getShort(p);
+                sum += (long) sample * sample;
+            }
+            double meanSquare = (double) sum / Math.max(1, end - start);
+            // 相对满幅的dB值，全零帧取一个足够低的下限
+            energy[frame] = meanSquare > 0 ? 10 * Math.log10(meanSquare / (32768.0 * 32768.0)) : -120;
+        }
+        return energy;
+    }
+
+    /**
+     * 取能量第10百分位作为噪声底
+     */
+    static double noiseFloor(double[] energy) {
+        double[] sorted = energy.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 10];
+    }
+
+    private static int quietestFrame(double[] energy, int from, int to) {
+        int quietest = from;
+        for (int frame = from + 1; frame < to; frame++) {
+            if (energy[frame] < energy[quietest]) {
+                quietest = frame;
+            }
+        }
+        return quietest;
+    }
+
+    private static Segment toSegment(int offset, int length, int startFrame, int endFrame) {
+        int start = Math.min(length, startFrame * FRAME_SAMPLES * BYTES_PER_SAMPLE);
+        int end = Math.min(length, endFrame * FRAME_SAMPLES * BYTES_PER_SAMPLE);
+        return new Segment(startFrame, endFrame, offset + start, end - start);
+    }
+
+    /**
+     * 一个分段在源数组中的位置及其时间范围
+     */
+    public static class Segment {
+        private final int startFrame;
+        private final int endFrame;
+        private final int offset;
+        private final int length;
+
+        Segment(int startFrame, int endFrame, int offset, int length) {
+            this.startFrame = startFrame;
+            this.endFrame = endFrame;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        int frames() {
+            return endFrame - startFrame;
+        }
+
+        /**
+         * 在源数组中的起始位置
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * 相对整段音频的起始时间(毫秒)
+         */
+        public long getStartMillis() {
+            return (long) startFrame * FRAME_MILLIS;
+        }
+
+        public long getEndMillis() {
+            return getStartMillis() + (long) length / BYTES_PER_SAMPLE * 1000 / SAMPLE_RATE;
+        }
+
+        @Override
+        public String toString() {
+            return "Segment[" + getStartMillis() + "ms-" + getEndMillis() + "ms]";
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.lijian.interview001.utils;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * PCM格式转换引擎：解码8/16/24/32位整数及32/64位浮点样本，多声道平均混为单声道，
+ * 重采样到16kHz后量化为16bit小端PCM
+ * 流式处理，所有工作缓冲在实例内复用，非线程安全
+ */
+public class PcmConverter {
+
+    private static final int TARGET_RATE = (int) AudioUtils.TARGET_FORMAT.getSampleRate();
+
+    private static final int SIGNED = 0;
+    private static final int SIGNED_16 = 1;
+    private static final int UNSIGNED = 2;
+    private static final int FLOAT_32 = 3;
+    private static final int FLOAT_64 = 4;
+
+    private final int sampleType;
+    private final int bytesPerSample;
+    private final int signShift;
+    private final long halfRange;
+    private final int channels;
+    private final int frameSize;
+    private final boolean bigEndian;
+    private final Resampler resampler;
+
+    /**
+     * 未凑满一帧的剩余字节
+     */
+    private final byte[] carry;
+    private int carryLength;
+
+    private float[] mono = new float[0];
+    private float[] resampled = new float[0];
+    private byte[] output = new byte[0];
+
+    /**
+     * @param sourceFormat 源PCM格式
+     */
+    public PcmConverter(AudioFormat sourceFormat) {
+        if (!isSupported(sourceFormat)) {
+            throw new IllegalArgumentException("不支持的PCM格式: " + sourceFormat);
+        }
+        AudioFormat.Encoding encoding = sourceFormat.getEncoding();
+        this.bytesPerSample = sourceFormat.getSampleSizeInBits() / 8;
+        this.signShift = 64 - bytesPerSample * 8;
+        this.halfRange = 1L << (bytesPerSample * 8 - 1);
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+            this.sampleType = bytesPerSample == 4 ? FLOAT_32 : FLOAT_64;
+        } else if (AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+            this.sampleType = UNSIGNED;
+        } else {
+            this.sampleType = bytesPerSample == 2 ? SIGNED_16 : SIGNED;
+        }
+        this.channels = sourceFormat.getChannels();
+        this.frameSize = bytesPerSample * channels;
+        this.bigEndian = sourceFormat.isBigEndian();
+        this.resampler = new Resampler(Math.round(sourceFormat.getSampleRate()), TARGET_RATE);
+        this.carry = new byte[frameSize];
+    }
+
+    /**
+     * 判断格式是否可由本引擎直接转换
+     * @param format 音频格式
+     * @return 是否支持
+     */
+    public static boolean isSupported(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (format.getChannels() <= 0 || format.getSampleRate() <= 0
+                || Math.round(format.getSampleRate()) != format.getSampleRate()) {
+            return false;
+        }
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+            return bits == 32 || bits == 64;
+        }
+        if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+            return bits == 8 || bits == 16 || bits == 24 || bits == 32;
+        }
+        return false;
+    }
+
+    /**
+     * 转换一块源数据，块边界不必与帧对齐
+     * @param input 源数据
+     * @param offset 起始位置
+     * @param length 字节数
+     * @return 输出字节数，数据位于getOutput()返回的数组开头，下次调用前有效
+     */
+    public int convert(byte[] input, int offset, int length) {
+        int frames = (carryLength + length) / frameSize;
+        ensureMono(frames);
+
+        int frameIndex = 0;
+        // 先拼上一块剩下的半帧
+        if (carryLength > 0) {
+            int need = frameSize - carryLength;
+            if (length < need) {
+                System.arraycopy(input, offset, carry, carryLength, length);
+                carryLength += length;
+                return 0;
+            }
+            System.arraycopy(input, offset, carry, carryLength, need);
+            offset += need;
+            length -= need;
+            carryLength = 0;
+            mono[frameIndex++] = decodeFrame(carry, 0);
+        }
+
+        int whole = length / frameSize;
+        decodeFrames(input, offset, whole, frameIndex);
+        frameIndex += whole;
+        int rest = length - whole * frameSize;
+        if (rest > 0) {
+            System.arraycopy(input, offset + whole * frameSize, carry, 0, rest);
+            carryLength = rest;
+        }
+
+        return resampleAndEncode(frameIndex);
+    }
+
+    /**
+     * 源数据结束，输出重采样器中剩余的样本
+     * @return 输出字节数，数据位于getOutput()返回的数组开头
+     */
+    public int flush() {
+        ensureResampled(resampler.maxOutput(0));
+        int samples = resampler.flush(resampled);
+        return encode(samples);
+    }
+
+    /**
+     * 转换结果缓冲，被后续convert/flush调用复用
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+
+    /**
+     * 重置状态以便转换下一段音频
+     */
+    public void reset() {
+        carryLength = 0;
+        resampler.reset();
+    }
+
+    private int resampleAndEncode(int frames) {
+        if (frames == 0) {
+            return 0;
+        }
+        ensureResampled(resampler.maxOutput(frames));
+        int samples = resampler.process(mono, 0, frames, resampled);
+        return encode(samples);
+    }
+
+    private int encode(int samples) {
+        int bytes = samples * 2;
+        if (output.length < bytes) {
+            output = new byte[bytes];
+        }
+        for (int i = 0; i < samples; i++) {
+            float value = resampled[i] * 32768f;
+            // 四舍五入后限幅
+            int sample = (int) (value + (value >= 0 ? 0.5f : -0.5f));
+            sample = Math.max(-32768, Math.min(32767, sample));
+            output[i * 2] = (byte) sample;
+            output[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return bytes;
+    }
+
+    /**
+     * 批量解码整帧，16bit小端单声道/立体声走专用循环
+     */
+    private void decodeFrames(byte[] data, int position, int frames, int outIndex) {
+        if (sampleType == SIGNED_16 && !bigEndian && channels == 1) {
+            for (int i = 0; i < frames; i++) {
+                int p = position + i * 2;
+                mono[outIndex + i] = ((data[p + 1] << 8) | (data[p] & 0xFF)) * (1f / 32768f);
+            }
+            return;
+        }
+        if (sampleType == SIGNED_16 && !bigEndian && channels == 2) {
+            for (int i = 0; i < frames; i++) {
+                int p = position + i * 4;
+                int left = (data[p + 1] << 8) | (data[p] & 0xFF);
+                int right = (data[p + 3] << 8) | (data[p + 2] & 0xFF);
+                mono[outIndex + i] = (left + right) * (1f / 65536f);
+            }
+            return;
+        }
+        for (int i = 0; i < frames; i++) {
+            mono[outIndex + i] = decodeFrame(data, position + i * frameSize);
+        }
+    }
+
+    private float decodeFrame(byte[] data, int position) {
+        if (channels == 1) {
+            return decodeSample(data, position);
+        }
+        float sum = 0f;
+        for (int c = 0; c < channels; c++) {
+            sum += decodeSample(data, position + c * bytesPerSample);
+        }
+        return sum / channels;
+    }
+
+    private float decodeSample(byte[] data, int position) {
+        switch (sampleType) {
+            case SIGNED_16:
+                // 最常见的格式单独处理，避免逐字节循环
+                int sample = bigEndian
+                        ? (data[position] << 8) | (data[position + 1] & 0xFF)
+                        : (data[position + 1] << 8) | (data[position] & 0xFF);
+                return sample * (1f / 32768f);
+            case FLOAT_32:
+                return Float.intBitsToFloat((int) readBits(data, position, 4));
+            case FLOAT_64:
+                return (float) Double.longBitsToDouble(readBits(data, position, 8));
+            case UNSIGNED:
+                return (float) ((readBits(data, position, bytesPerSample) - halfRange) / (double) halfRange);
+            default:
+                // 符号扩展
+                long value = (readBits(data, position, bytesPerSample) << signShift) >> signShift;
+                return (float) (value / (double) halfRange);
+        }
+    }
+
+    private long readBits(byte[] data, int position, int bytes) {
+        long value = 0;
+        if (bigEndian) {
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | (data[position + i] & 0xFF);
+            }
+        } else {
+            for (int i = bytes - 1; i >= 0; i--) {
+                value = (value << 8) | (data[position + i] & 0xFF);
+            }
+        }
+        return value;
+    }
+
+    private void ensureMono(int frames) {
+        if (mono.length < frames) {
+            mono = new float[frames];
+        }
+    }
+
+    private void ensureResampled(int samples) {
+        if (resampled.length < samples) {
+            resampled = new float[samples];
+        }
+    }
+}
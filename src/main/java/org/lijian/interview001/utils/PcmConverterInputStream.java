@@ -0,0 +1,78 @@
+package org.lijian.interview001.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于PcmConverter的转换流，读取时按块从源流取数据并转换为16kHz、16bit、单声道PCM
+ */
+public class PcmConverterInputStream extends InputStream {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final InputStream source;
+    private final PcmConverter converter;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+    private int outputPosition;
+    private int outputLength;
+    private boolean flushed;
+
+    public PcmConverterInputStream(InputStream source, PcmConverter converter) {
+        this.source = source;
+        this.converter = converter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return converter.getOutput()[outputPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, outputLength - outputPosition);
+        System.arraycopy(converter.getOutput(), outputPosition, b, off, count);
+        outputPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return outputLength - outputPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * 输出缓冲读完时从源流取下一块转换
+     * @return 是否还有数据
+     */
+    private boolean fill() throws IOException {
+        while (outputPosition >= outputLength) {
+            if (flushed) {
+                return false;
+            }
+            int read = source.read(readBuffer, 0, readBuffer.length);
+            outputPosition = 0;
+            if (read == -1) {
+                outputLength = converter.flush();
+                flushed = true;
+            } else {
+                outputLength = converter.convert(readBuffer, 0, read);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,274 @@
+package org.lijian.interview001.utils;
+
+import java.util.Arrays;
+
+/**
+ * 单声道流式重采样器，多相加窗sinc滤波
+ * 输入输出均为float数组，内部缓冲可复用，适合分块连续处理
+ */
+public class Resampler {
+
+    /**
+     * 每侧过零点数，越大过渡带越窄
+     */
+    private static final int ZERO_CROSSINGS = 8;
+
+    /**
+     * 相位表上限，采样率比值的分子超过该值时按最近相位量化
+     */
+    private static final int MAX_PHASES = 1024;
+
+    /**
+     * Kaiser窗参数，约80dB阻带衰减
+     */
+    private static final double KAISER_BETA = 8.0;
+
+    /**
+     * 截止频率相对目标奈奎斯特频率的比例，留出过渡带
+     */
+    private static final double ROLLOFF = 0.95;
+
+    private final int up;
+    private final int down;
+    private final int phases;
+    private final int halfTaps;
+    private final int taps;
+    private final float[] coefficients;
+
+    /**
+     * 输入缓冲，前halfTaps个样本为上一块留下的历史数据
+     */
+    private float[] buffer;
+    private int bufferLength;
+    private long bufferStart;
+
+    private long inputCount;
+    private long outputCount;
+
+    /**
+     * 下一个输出样本在输入中的位置：整数部分center，小数部分fraction / up，增量递推，避免逐样本做长整数除法
+     */
+    private long center;
+    private int fraction;
+    private final long centerStep;
+    private final int fractionStep;
+
+    /**
+     * @param inputRate 输入采样率
+     * @param outputRate 输出采样率
+     */
+    public Resampler(int inputRate, int outputRate) {
+        int gcd = gcd(inputRate, outputRate);
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        this.phases = Math.min(up, MAX_PHASES);
+        this.centerStep = down / up;
+        this.fractionStep = down % up;
+
+        // 降采样时截止频率随比例下降，滤波器相应加长
+        double cutoff = Math.min(1.0, (double) up / down) * ROLLOFF;
+        // 取偶数，使总抽头数为4的倍数
+        int half = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        this.halfTaps = half + (half & 1);
+        this.taps = halfTaps * 2;
+        this.coefficients = buildCoefficients(cutoff);
+
+        this.buffer = new float[taps + 4096];
+        // 起点前用零填充，第一个输出样本同样有完整的左侧数据
+        this.bufferLength = halfTaps;
+        this.bufferStart = -halfTaps;
+    }
+
+    public boolean isPassthrough() {
+        return up == down;
+    }
+
+    /**
+     * 给定输入样本数时最多产生的输出样本数，用于预分配输出缓冲
+     * @param inputSamples 输入样本数
+     * @return 输出样本数上限
+     */
+    public int maxOutput(int inputSamples) {
+        return (int) ((long) (inputSamples + taps) * up / down) + 2;
+    }
+
+    /**
+     * 处理一块输入
+     * @param input 输入样本
+     * @param offset 起始位置
+     * @param length 样本数
+     * @param output 输出缓冲，容量至少为maxOutput(length)
+     * @return 写入输出缓冲的样本数
+     */
+    public int process(float[] input, int offset, int length, float[] output) {
+        if (isPassthrough()) {
+            System.arraycopy(input, offset, output, 0, length);
+            inputCount += length;
+            outputCount += length;
+            return length;
+        }
+
+        append(input, offset, length);
+        inputCount += length;
+        return drain(output, bufferStart + bufferLength - halfTaps);
+    }
+
+    /**
+     * 输入结束，补零输出尾部样本
+     * @param output 输出缓冲，容量至少为maxOutput(0)
+     * @return 写入输出缓冲的样本数
+     */
+    public int flush(float[] output) {
+        if (isPassthrough()) {
+            return 0;
+        }
+        ensureCapacity(halfTaps);
+        Arrays.fill(buffer, bufferLength, bufferLength + halfTaps, 0f);
+        bufferLength += halfTaps;
+
+        // 输出总数为ceil(inputCount * up / down)
+        long total = (inputCount * up + down - 1) / down;
+        int written = 0;
+        while (outputCount < total) {
+            output[written++] = interpolate();
+            advance();
+        }
+        return written;
+    }
+
+    /**
+     * 重置状态以便处理下一段音频
+     */
+    public void reset() {
+        Arrays.fill(buffer, 0, halfTaps, 0f);
+        bufferLength = halfTaps;
+        bufferStart = -halfTaps;
+        inputCount = 0;
+        outputCount = 0;
+        center = 0;
+        fraction = 0;
+    }
+
+    /**
+     * 输出所有右侧数据已就绪的样本，并丢弃之后不再需要的输入
+     * @param limit 可用输入的绝对下标上限(不含)
+     */
+    private int drain(float[] output, long limit) {
+        int written = 0;
+        while (center < limit) {
+            output[written++] = interpolate();
+            advance();
+        }
+
+        // 保留下一个输出样本左侧所需的历史数据
+        long keepFrom = center - halfTaps + 1;
+        int discard = (int) Math.max(0, Math.min(keepFrom - bufferStart, bufferLength));
+        if (discard > 0) {
+            System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+            bufferLength -= discard;
+            bufferStart += discard;
+        }
+        return written;
+    }
+
+    private void advance() {
+        outputCount++;
+        center += centerStep;
+        fraction += fractionStep;
+        if (fraction >= up) {
+            fraction -= up;
+            center++;
+        }
+    }
+
+    private float interpolate() {
+        int phase = phases == up ? fraction : (int) ((long) fraction * phases / up);
+
+        int start = (int) (center - bufferStart) - halfTaps + 1;
+        int base = phase * taps;
+        // 四路累加打断浮点加法的依赖链，taps为4的倍数
+        float sum0 = 0f;
+        float sum1 = 0f;
+        float sum2 = 0f;
+        float sum3 = 0f;
+        float[] samples = buffer;
+        float[] table = coefficients;
+        for (int k = 0; k < taps; k += 4) {
+            sum0 += samples[start + k] * table[base + k];
+            sum1 += samples[start + k + 1] * table[base + k + 1];
+            sum2 += samples[start + k + 2] * table[base + k + 2];
+            sum3 += samples[start + k + 3] * table[base + k + 3];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private void append(float[] input, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(input, offset, buffer, bufferLength, length);
+        bufferLength += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (bufferLength + extra > buffer.length) {
+            float[] grown = new float[Math.max(buffer.length * 2, bufferLength + extra)];
+            System.arraycopy(buffer, 0, grown, 0, bufferLength);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * 第p个相位的第k个系数对应输入样本(center - halfTaps + 1 + k)，与精确位置的距离为(k - halfTaps + 1 - p / phases)
+     */
+    private float[] buildCoefficients(double cutoff) {
+        float[] table = new float[phases * taps];
+        double i0Beta = besselI0(KAISER_BETA);
+        for (int p = 0; p < phases; p++) {
+            double fraction = (double) p / phases;
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                double x = k - halfTaps + 1 - fraction;
+                double ratio = x / halfTaps;
+                double window = Math.abs(ratio) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - ratio * ratio)) / i0Beta;
+                double value = cutoff * sinc(cutoff * x) * window;
+                table[p * taps + k] = (float) value;
+                sum += value;
+            }
+            // 每个相位归一化，保证直流增益为1
+            for (int k = 0; k < taps; k++) {
+                table[p * taps + k] /= (float) sum;
+            }
+        }
+        return table;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1.0;
+        }
+        double pix = Math.PI * x;
+        return Math.sin(pix) / pix;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,194 @@
+package org.lijian.interview001.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 去除首尾静音并压缩中间的长静音，减少发送给FunASR的数据量
+ * 静音判定与EnergyVad相同；压缩后的时间与原音频时间的对应关系保存在Result中，用于还原识别结果的时间戳
+ */
+public class SilenceTrimmer {
+
+    private static final int FRAME_BYTES = EnergyVad.FRAME_SAMPLES * EnergyVad.BYTES_PER_SAMPLE;
+
+    private static final int BYTES_PER_MILLI = EnergyVad.SAMPLE_RATE * EnergyVad.BYTES_PER_SAMPLE / 1000;
+
+    private final int minSilenceFrames;
+    private final int keepSilenceFrames;
+    private final double thresholdMarginDb;
+
+    /**
+     * @param minSilenceMillis 中间静音达到该时长才压缩
+     * @param keepSilenceMillis 压缩或去除静音时保留的静音时长，首尾各保留一份，中间静音两侧各保留一半，避免切掉弱起和尾音
+     * @param thresholdMarginDb 语音判定阈值高出噪声底的dB数
+     */
+    public SilenceTrimmer(int minSilenceMillis, int keepSilenceMillis, double thresholdMarginDb) {
+        if (minSilenceMillis < keepSilenceMillis || keepSilenceMillis < 0) {
+            throw new IllegalArgumentException("静音压缩配置错误: " + minSilenceMillis + "/" + keepSilenceMillis);
+        }
+        this.minSilenceFrames = Math.max(1, minSilenceMillis / EnergyVad.FRAME_MILLIS);
+        this.keepSilenceFrames = keepSilenceMillis / EnergyVad.FRAME_MILLIS;
+        this.thresholdMarginDb = thresholdMarginDb;
+    }
+
+    /**
+     * 压缩静音
+     * @param pcm position到limit之间的16kHz、16bit、单声道PCM，不改变其position
+     * @return 压缩结果；没有可去除的静音或全部为静音时原样返回
+     */
+    public Result trim(ByteBuffer pcm) {
+        int offset = pcm.position();
+        int length = pcm.remaining();
+        int sampleCount = length / EnergyVad.BYTES_PER_SAMPLE;
+        int frameCount = (sampleCount + EnergyVad.FRAME_SAMPLES - 1) / EnergyVad.FRAME_SAMPLES;
+        if (frameCount == 0) {
+            return Result.untrimmed(pcm);
+        }
+
+        double[] energy = EnergyVad.frameEnergy(pcm, offset, sampleCount, frameCount);
+        double threshold = Math.max(EnergyVad.ABSOLUTE_SILENCE_DB, EnergyVad.noiseFloor(energy) + thresholdMarginDb);
+
+        // 保留的帧区间，按[开始, 结束)成对存放
+        int[] ranges = new int[16];
+        int rangeCount = 0;
+        int keptStart = -1;
+        int frame = 0;
+        while (frame < frameCount) {
+            if (energy[frame] >= threshold) {
+                if (keptStart < 0) {
+                    keptStart = frame;
+                }
+                frame++;
+                continue;
+            }
+
+            int silenceStart = frame;
+            while (frame < frameCount && energy[frame] < threshold) {
+                frame++;
+            }
+            boolean leading = keptStart < 0 && rangeCount == 0;
+            boolean trailing = frame == frameCount;
+            int silenceFrames = frame - silenceStart;
+            if (leading && trailing) {
+                // 全部为静音，交给FunASR处理
+                return Result.untrimmed(pcm);
+            }
+
+            int keepBefore;
+            int keepAfter;
+            if (leading) {
+                keepBefore = 0;
+                keepAfter = Math.min(silenceFrames, keepSilenceFrames);
+            } else if (trailing) {
+                keepBefore = Math.min(silenceFrames, keepSilenceFrames);
+                keepAfter = 0;
+            } else if (silenceFrames >= minSilenceFrames) {
+                keepBefore = keepSilenceFrames / 2;
+                keepAfter = keepSilenceFrames - keepBefore;
+            } else {
+                // 短静音是语音的一部分
+                if (keptStart < 0) {
+                    keptStart = silenceStart;
+                }
+                continue;
+            }
+
+            if (keptStart >= 0) {
+                if (rangeCount + 2 > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                }
+                ranges[rangeCount++] = keptStart;
+                ranges[rangeCount++] = silenceStart + keepBefore;
+            }
+            keptStart = trailing ? -1 : frame - keepAfter;
+        }
+        if (keptStart >= 0) {
+            if (rangeCount + 2 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[rangeCount++] = keptStart;
+            ranges[rangeCount++] = frameCount;
+        }
+
+        return compact(pcm, offset, length, ranges, rangeCount / 2);
+    }
+
+    private static Result compact(ByteBuffer pcm, int offset, int length, int[] ranges, int count) {
+        long[] compactedStarts = new long[count];
+        long[] originalStarts = new long[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int start = Math.min(length, ranges[2 * i] * FRAME_BYTES);
+            int end = Math.min(length, ranges[2 * i + 1] * FRAME_BYTES);
+            compactedStarts[i] = total;
+            originalStarts[i] = start;
+            total += end - start;
+        }
+        if (total == length) {
+            return Result.untrimmed(pcm);
+        }
+
+        byte[] compacted = new byte[total];
+        ByteBuffer source = pcm.duplicate();
+        for (int i = 0; i < count; i++) {
+            int start = (int) originalStarts[i];
+            int end = Math.min(length, ranges[2 * i + 1] * FRAME_BYTES);
+            source.get(offset + start, compacted, (int) compactedStarts[i], end - start);
+            compactedStarts[i] /= BYTES_PER_MILLI;
+            originalStarts[i] /= BYTES_PER_MILLI;
+        }
+        return new Result(ByteBuffer.wrap(compacted), compactedStarts, originalStarts, length - total);
+    }
+
+    /**
+     * 压缩结果及时间对应关系
+     */
+    public static class Result {
+        private final ByteBuffer pcm;
+        private final long[] compactedStarts;
+        private final long[] originalStarts;
+        private final int removedBytes;
+
+        Result(ByteBuffer pcm, long[] compactedStarts, long[] originalStarts, int removedBytes) {
+            this.pcm = pcm;
+            this.compactedStarts = compactedStarts;
+            this.originalStarts = originalStarts;
+            this.removedBytes = removedBytes;
+        }
+
+        /**
+         * 不做压缩，时间一一对应
+         */
+        public static Result untrimmed(ByteBuffer pcm) {
+            return new Result(pcm, new long[]{0}, new long[]{0}, 0);
+        }
+
+        /**
+         * 压缩后的PCM数据
+         */
+        public ByteBuffer getPcm() {
+            return pcm;
+        }
+
+        public int getRemovedBytes() {
+            return removedBytes;
+        }
+
+        public boolean isTrimmed() {
+            return removedBytes > 0;
+        }
+
+        /**
+         * 把压缩后音频中的时间换算为原音频中的时间
+         * @param millis 相对压缩后音频开头的毫秒数
+         * @return 相对原音频开头的毫秒数
+         */
+        public long toOriginalMillis(long millis) {
+            int index = Arrays.binarySearch(compactedStarts, millis);
+            if (index < 0) {
+                index = Math.max(0, -index - 2);
+            }
+            return originalStarts[index] + millis - compactedStarts[index];
+        }
+    }
+}
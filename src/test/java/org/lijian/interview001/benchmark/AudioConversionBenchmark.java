@@ -0,0 +1,153 @@
+package org.lijian.interview001.benchmark;
+
+import org.lijian.interview001.utils.AudioProbe;
+import org.lijian.interview001.utils.AudioUtils;
+import org.lijian.interview001.utils.PcmConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PcmConverter与javax.sound格式转换的对比，覆盖常见采样率、位数、声道和时长
+ * 运行: mvn -Pbenchmark test -Djmh.args=AudioConversionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AudioConversionBenchmark {
+
+    /**
+     * 采样率/位数/声道
+     */
+    @Param({"44100/16/2", "48000/16/2", "48000/24/2", "8000/16/1", "16000/16/1"})
+    private String format;
+
+    @Param({"10", "60"})
+    private int seconds;
+
+    private byte[] wav;
+    private byte[] pcm;
+    private AudioFormat sourceFormat;
+    private PcmConverter converter;
+    private File wavFile;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] parts = format.split("/");
+        sourceFormat = new AudioFormat(Float.parseFloat(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), true, false);
+        pcm = sineWave(sourceFormat, seconds);
+        wav = toWav(sourceFormat, pcm);
+        converter = new PcmConverter(sourceFormat);
+        wavFile = File.createTempFile("benchmark", ".wav");
+        Files.write(wavFile.toPath(), wav);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(wavFile.toPath());
+    }
+
+    @Benchmark
+    public byte[] audioSystem() throws IOException {
+        return AudioUtils.convertToPCMWithAudioSystem(wav);
+    }
+
+    @Benchmark
+    public byte[] convertToPCM() throws IOException {
+        return AudioUtils.convertToPCM(wav);
+    }
+
+    /**
+     * 上传文件落盘后的路径，包含读文件和容器解析
+     */
+    @Benchmark
+    public byte[] convertFileToPCM() throws IOException {
+        return AudioUtils.convertFileToPCM(wavFile);
+    }
+
+    /**
+     * 内存映射读取上传文件，16kHz单声道时直接返回映射区域的切片
+     */
+    @Benchmark
+    public ByteBuffer readMappedPcm() throws IOException {
+        try (AudioProbe probe = AudioUtils.probeMapped(wavFile)) {
+            return probe.readPcmBuffer();
+        }
+    }
+
+    /**
+     * 复用同一个转换器，按64KB分块转换裸PCM，不计容器解析
+     */
+    @Benchmark
+    public int pcmConverterChunked() {
+        converter.reset();
+        int total = 0;
+        int chunk = 64 * 1024;
+        for (int offset = 0; offset < pcm.length; offset += chunk) {
+            total += converter.convert(pcm, offset, Math.min(chunk, pcm.length - offset));
+        }
+        return total + converter.flush();
+    }
+
+    static byte[] sineWave(AudioFormat format, int seconds) {
+        int frames = (int) format.getSampleRate() * seconds;
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        int channels = format.getChannels();
+        long max = (1L << (format.getSampleSizeInBits() - 1)) - 1;
+        byte[] data = new byte[frames * bytesPerSample * channels];
+        int position = 0;
+        for (int i = 0; i < frames; i++) {
+            long sample = Math.round(0.5 * max * Math.sin(2 * Math.PI * 440 * i / format.getSampleRate()));
+            for (int c = 0; c < channels; c++) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    data[position++] = (byte) (sample >> (8 * b));
+                }
+            }
+        }
+        return data;
+    }
+
+    static byte[] toWav(AudioFormat format, byte[] pcm) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(pcm.length + 64);
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format,
+                pcm.length / format.getFrameSize());
+        AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AudioConversionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
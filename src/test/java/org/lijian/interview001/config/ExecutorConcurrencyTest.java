@@ -0,0 +1,78 @@
+package org.lijian.interview001.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 识别会话阻塞等待时各线程池配置能接收的并发会话数
+ * 虚拟线程与平台线程的吞吐对比见压测: mvn -Pload test -Dload.args="spring.threads.virtual.enabled=true"
+ */
+class ExecutorConcurrencyTest {
+
+    private static final int SESSIONS = 500;
+
+    @Test
+    void legacyPoolRejectsBeyondMaxPlusQueue() throws Exception {
+        ThreadPoolTaskExecutor executor = TaskExecutors.platform("legacy-", 5, 10, 25);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 35; i++) {
+                executor.submit(() -> {
+                    release.await();
+                    return null;
+                });
+            }
+            assertThrows(TaskRejectedException.class, () -> executor.submit(() -> null));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void configuredPoolAcceptsAllBlockedSessions() throws Exception {
+        ThreadPoolTaskExecutor executor = TaskExecutors.platform("platform-", 16, 64, 1000);
+        CountDownLatch started = new CountDownLatch(16);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(SESSIONS);
+            for (int i = 0; i < SESSIONS; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }));
+            }
+
+            // 全部会话都被接收: 核心线程全部阻塞，其余在队列中等待，队列未满不会扩容或拒绝
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(16, executor.getActiveCount());
+            assertEquals(SESSIONS - 16, executor.getThreadPoolExecutor().getQueue().size());
+
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            // 完成数在任务结束后才更新，等线程池终止再检查
+            ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(SESSIONS, pool.getCompletedTaskCount());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.lijian.interview001.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    private AdmissionControl current;
+
+    @AfterEach
+    void tearDown() {
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    private AdmissionControl admission(int maxSessions, long maxBufferedBytes, int maxQueued, long queueTimeoutMillis) {
+        AdmissionControl admission = new AdmissionControl(new MockEnvironment());
+        ReflectionTestUtils.setField(admission, "maxSessions", maxSessions);
+        ReflectionTestUtils.setField(admission, "maxBufferedBytes", maxBufferedBytes);
+        ReflectionTestUtils.setField(admission, "maxQueued", maxQueued);
+        ReflectionTestUtils.setField(admission, "queueTimeoutMillis", queueTimeoutMillis);
+        ReflectionTestUtils.setField(admission, "retryAfterSeconds", 1);
+        ReflectionTestUtils.setField(admission, "threads", 1);
+        admission.start();
+        current = admission;
+        return admission;
+    }
+
+    @Test
+    void queuesBeyondMaxSessionsAndRejectsWhenQueueIsFull() throws Exception {
+        AdmissionControl admission = admission(2, 1000, 1, 10000);
+        AdmissionControl.Permit first = admission.acquire(100).get();
+        admission.acquire(100).get();
+
+        CompletableFuture<AdmissionControl.Permit> queued = admission.acquire(100);
+        assertFalse(queued.isDone());
+
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, () -> admission.acquire(100));
+        assertEquals(AdmissionRejectedException.Reason.QUEUE_FULL, e.getReason());
+
+        first.release();
+        first.release();
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(2, admission.stats().get("activeSessions"));
+    }
+
+    @Test
+    void limitsBufferedBytesInArrivalOrder() throws Exception {
+        AdmissionControl admission = admission(10, 1000, 10, 10000);
+        AdmissionControl.Permit large = admission.acquire(800).get();
+
+        CompletableFuture<AdmissionControl.Permit> next = admission.acquire(500);
+        // 队首还在等待，后到的小请求不能插队
+        CompletableFuture<AdmissionControl.Permit> small = admission.acquire(100);
+        assertFalse(next.isDone());
+        assertFalse(small.isDone());
+        assertNull(admission.tryAcquire(0));
+
+        large.release();
+        next.get(5, TimeUnit.SECONDS);
+        small.get(5, TimeUnit.SECONDS);
+        assertEquals(600L, admission.stats().get("bufferedBytes"));
+    }
+
+    @Test
+    void oversizedRequestIsAdmittedAlone() throws Exception {
+        AdmissionControl admission = admission(10, 1000, 10, 10000);
+        AdmissionControl.Permit permit = admission.acquire(5000).get();
+        assertEquals(1000L, admission.stats().get("bufferedBytes"));
+        permit.release();
+        assertEquals(0L, admission.stats().get("bufferedBytes"));
+    }
+
+    @Test
+    void failsAfterQueueTimeout() throws Exception {
+        AdmissionControl admission = admission(1, 1000, 10, 100);
+        admission.acquire(0).get();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> admission.acquire(0).get(5, TimeUnit.SECONDS));
+        AdmissionRejectedException rejection = assertInstanceOf(AdmissionRejectedException.class, e.getCause());
+        assertEquals(AdmissionRejectedException.Reason.TIMEOUT, rejection.getReason());
+        assertEquals(0, admission.stats().get("queued"));
+        assertEquals(1L, admission.stats().get("rejectedTimeoutCount"));
+    }
+
+    @Test
+    void completesQueuedRequestsOffReleasingThread() throws Exception {
+        AdmissionControl admission = admission(1, 1000, 10, 10000);
+        AdmissionControl.Permit permit = admission.acquire(0).get();
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        // 排队请求的后续处理(读取、转换音频)不能在释放许可的线程(通常是FunASR接收线程)上执行
+        CompletableFuture<Void> queued = admission.acquire(0).thenAccept(next -> worker.set(Thread.currentThread()));
+
+        permit.release();
+
+        queued.get(5, TimeUnit.SECONDS);
+        assertNotSame(Thread.currentThread(), worker.get());
+        assertTrue(worker.get().getName().startsWith("asr-admission-"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.lijian.interview001.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 阻塞在上游读取上的数据流不能占用共享的发送线程
+ */
+class AudioSenderTest {
+
+    private AudioSender audioSender;
+
+    @BeforeEach
+    void setUp() {
+        audioSender = new AudioSender(new MockEnvironment(),
+                new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP));
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 4096);
+        ReflectionTestUtils.setField(audioSender, "onlineChunkSize", 9600);
+        ReflectionTestUtils.setField(audioSender, "threads", 1);
+        audioSender.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        audioSender.shutdown();
+    }
+
+    @Test
+    void slowStreamsDoNotBlockBufferSends() throws Exception {
+        CountDownLatch upload = new CountDownLatch(1);
+        // 比发送线程数多的慢速上传，读取一直阻塞到upload放行
+        StubWebSocketSession[] streamSessions = new StubWebSocketSession[3];
+        CompletableFuture<?>[] streams = new CompletableFuture<?>[streamSessions.length];
+        for (int i = 0; i < streams.length; i++) {
+            streamSessions[i] = new StubWebSocketSession();
+            streams[i] = audioSender.send(streamSessions[i], "offline", new SlowStream(upload, 10000));
+        }
+
+        StubWebSocketSession session = new StubWebSocketSession();
+        assertEquals(100000L, audioSender.send(session, "offline", new byte[100000]).get(5, TimeUnit.SECONDS));
+        assertEquals(100000L, session.getBytesSent());
+        for (CompletableFuture<?> stream : streams) {
+            assertFalse(stream.isDone());
+        }
+
+        upload.countDown();
+        for (int i = 0; i < streams.length; i++) {
+            assertEquals(10000L, streams[i].get(5, TimeUnit.SECONDS));
+            assertEquals(10000L, streamSessions[i].getBytesSent());
+        }
+    }
+
+    /**
+     * 放行前读取一直阻塞的数据流
+     */
+    private static class SlowStream extends InputStream {
+        private final CountDownLatch latch;
+        private final InputStream data;
+
+        SlowStream(CountDownLatch latch, int length) {
+            this.latch = latch;
+            this.data = new ByteArrayInputStream(new byte[length]);
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            return data.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地文件批量识别只允许访问allowedRoot下的文件，按解析符号链接后的真实路径检查；
+ * 识别超时时关闭FunASR会话后才释放调度名额
+ */
+class BatchJobServiceTest {
+
+    private static final String PARTIAL = "{\"mode\":\"offline\",\"text\":\"\",\"wav_name\":\"asr\",\"is_final\":false}";
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+    private AudioSender audioSender;
+    private RecognitionScheduler scheduler;
+    private final AtomicInteger invalidated = new AtomicInteger();
+    private volatile boolean silent;
+    private BatchJobService batchJobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = Files.createDirectory(tempDir.resolve("audio"));
+        RecognitionMetrics metrics = new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+
+        audioSender = new AudioSender(new MockEnvironment(), metrics);
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 65536);
+        ReflectionTestUtils.setField(audioSender, "threads", 1);
+        audioSender.start();
+        // silent时FunASR只回复非最终结果，会话一直不结束
+        StubConnectionPool pool = new StubConnectionPool(audioBytes -> silent ? PARTIAL : StubConnectionPool.RESULT) {
+            @Override
+            public void invalidate(FunASRConnection connection) {
+                invalidated.incrementAndGet();
+            }
+        };
+        FunASRService funASRService = new FunASRService(pool, audioSender, new ObjectMapper(), metrics);
+        ReflectionTestUtils.setField(funASRService, "model", "offline");
+        funASRService.start();
+
+        scheduler = new RecognitionScheduler(new MockEnvironment());
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", 2);
+        ReflectionTestUtils.setField(scheduler, "batchMaxInFlight", 1);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", 100);
+        ReflectionTestUtils.setField(scheduler, "threads", 1);
+        scheduler.start();
+
+        AudioFormatPolicy formatPolicy = new AudioFormatPolicy(metrics);
+        ReflectionTestUtils.setField(formatPolicy, "formats", Set.of("mp3"));
+        formatPolicy.init();
+        AudioPreprocessor preprocessor = new AudioPreprocessor(metrics);
+        preprocessor.init();
+
+        batchJobService = new BatchJobService(funASRService, scheduler, new RecognitionCache(), formatPolicy,
+                preprocessor, new TranscriptStore(null, null, null), new MockEnvironment(), metrics);
+        ReflectionTestUtils.setField(batchJobService, "maxFiles", 10);
+        ReflectionTestUtils.setField(batchJobService, "retentionMinutes", 60L);
+        ReflectionTestUtils.setField(batchJobService, "ioThreads", 1);
+        ReflectionTestUtils.setField(batchJobService, "allowedRoot", root.toString());
+        ReflectionTestUtils.setField(batchJobService, "recognizeTimeoutSeconds", 10L);
+        batchJobService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchJobService.shutdown();
+        audioSender.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void recognizesFilesUnderAllowedRoot() throws Exception {
+        writeWav(root.resolve("a.wav"));
+        Files.createDirectory(root.resolve("sub"));
+        // 目录内指向目录内文件的链接可以访问
+        Files.createSymbolicLink(root.resolve("sub/link.wav"), root.resolve("a.wav"));
+
+        BatchJob job = batchJobService.submitLocalPaths(List.of("a.wav", "sub/../sub/link.wav"), HotWords.NONE);
+
+        for (int i = 0; i < 100 && !job.isFinished(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(job.isFinished());
+        for (BatchJob.Item item : job.getItems()) {
+            assertEquals(BatchJob.Status.SUCCEEDED, item.getStatus());
+            assertEquals(root.toRealPath().resolve("a.wav"), item.getPath());
+        }
+    }
+
+    @Test
+    void closesFunASRSessionOnTimeoutBeforeReleasingSlot() throws Exception {
+        writeWav(root.resolve("a.wav"));
+        silent = true;
+        ReflectionTestUtils.setField(batchJobService, "recognizeTimeoutSeconds", 1L);
+
+        BatchJob job = batchJobService.submitLocalPaths(List.of("a.wav"), HotWords.NONE);
+
+        for (int i = 0; i < 100 && !job.isFinished(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(job.isFinished());
+        assertEquals(BatchJob.Status.FAILED, job.getItems().get(0).getStatus());
+        // 任务结束时连接已关闭，名额已释放
+        assertEquals(1, invalidated.get());
+        assertEquals(0, scheduler.stats().get("batchInFlight"));
+    }
+
+    @Test
+    void rejectsPathsOutsideAllowedRoot() throws Exception {
+        Path outside = tempDir.resolve("secret.wav");
+        writeWav(outside);
+
+        assertRejected("../secret.wav");
+        assertRejected(outside.toString());
+        assertRejected("sub/../../secret.wav");
+    }
+
+    @Test
+    void rejectsSymlinksEscapingAllowedRoot() throws Exception {
+        Path outside = tempDir.resolve("secret.wav");
+        writeWav(outside);
+        Files.createSymbolicLink(root.resolve("link.wav"), outside);
+        Files.createSymbolicLink(root.resolve("dir"), tempDir);
+
+        assertRejected("link.wav");
+        assertRejected("dir/secret.wav");
+    }
+
+    private void assertRejected(String path) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> batchJobService.submitLocalPaths(List.of(path), HotWords.NONE));
+        assertEquals("不允许访问的路径: " + path, error.getMessage());
+    }
+
+    /**
+     * 写入0.1秒16kHz单声道静音WAV
+     */
+    private static void writeWav(Path path) throws Exception {
+        byte[] pcm = new byte[AudioSender.PCM_BYTES_PER_SECOND / 10];
+        AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / 2)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+    }
+}
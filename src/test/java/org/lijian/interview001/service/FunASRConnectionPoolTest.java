@@ -0,0 +1,137 @@
+package org.lijian.interview001.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个FunASR服务时的路由、故障转移和健康检查，使用本地FunASRStubServer
+ */
+class FunASRConnectionPoolTest {
+
+    /**
+     * 本机没有服务监听的地址，建连会立即失败
+     */
+    private static final String DEAD_URI = "ws://127.0.0.1:1/";
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    @Test
+    void failsOverToHealthyBackend() throws Exception {
+        FunASRStubServer server = stub(FunASRStubServer.start());
+        FunASRConnectionPool pool = pool(DEAD_URI, server.getUri());
+
+        for (int i = 0; i < 4; i++) {
+            FunASRConnection connection = borrow(pool);
+            assertEquals(server.getUri(), connection.getBackend().getUri());
+            pool.release(connection);
+        }
+
+        Map<String, Object> stats = pool.stats();
+        assertEquals(1, stats.get("healthyBackends"));
+        assertTrue((Long) stats.get("failoverCount") >= 1);
+    }
+
+    @Test
+    void failsWhenAllBackendsAreDown() {
+        FunASRConnectionPool pool = pool(DEAD_URI, "ws://127.0.0.1:2/");
+
+        assertThrows(ExecutionException.class, () -> borrow(pool));
+        assertEquals(0, pool.stats().get("healthyBackends"));
+        assertEquals(1L, pool.stats().get("failoverCount"));
+    }
+
+    @Test
+    void routesToLeastOutstandingBackend() throws Exception {
+        FunASRStubServer first = stub(FunASRStubServer.start());
+        FunASRStubServer second = stub(FunASRStubServer.start());
+        FunASRConnectionPool pool = pool(first.getUri(), second.getUri());
+
+        List<FunASRConnection> connections = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            connections.add(borrow(pool));
+        }
+
+        long onFirst = connections.stream().filter(c -> c.getBackend().getUri().equals(first.getUri())).count();
+        assertEquals(3, onFirst);
+        connections.forEach(pool::release);
+    }
+
+    @Test
+    void unhealthyBackendRecoversAfterHealthCheck() throws Exception {
+        FunASRStubServer server = FunASRStubServer.start();
+        int port = server.getPort();
+        String uri = server.getUri();
+        server.close();
+
+        FunASRStubServer other = stub(FunASRStubServer.start());
+        FunASRConnectionPool pool = pool(uri, other.getUri());
+
+        // 让请求先路由到已停止的服务，失败后被标记为不可用
+        while (backend(pool, uri).isHealthy()) {
+            pool.release(borrow(pool));
+        }
+
+        stub(FunASRStubServer.start(port));
+        ReflectionTestUtils.invokeMethod(pool, "checkHealth");
+        // 健康检查异步建连
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!backend(pool, uri).isHealthy() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(backend(pool, uri).isHealthy());
+    }
+
+    private FunASRConnectionPool pool(String... uris) {
+        FunASRConnectionPool pool = new FunASRConnectionPool(new StandardWebSocketClient());
+        ReflectionTestUtils.setField(pool, "serverIpPorts", uris);
+        ReflectionTestUtils.setField(pool, "minIdle", 0);
+        ReflectionTestUtils.setField(pool, "maxSize", 4);
+        ReflectionTestUtils.setField(pool, "maxIdleMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMillis", 3000L);
+        ReflectionTestUtils.setField(pool, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(pool, "evictIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "testOnBorrow", true);
+        ReflectionTestUtils.setField(pool, "sendTimeLimitMillis", 10000);
+        ReflectionTestUtils.setField(pool, "sendBufferSizeLimit", 1 << 20);
+        ReflectionTestUtils.setField(pool, "failureThreshold", 1);
+        ReflectionTestUtils.setField(pool, "healthCheckIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "maxAttempts", 2);
+        pool.start();
+        resources.add(pool::shutdown);
+        return pool;
+    }
+
+    private FunASRStubServer stub(FunASRStubServer server) {
+        resources.add(server);
+        return server;
+    }
+
+    private static FunASRConnection borrow(FunASRConnectionPool pool) throws Exception {
+        return pool.borrow().get(10, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FunASRBackend backend(FunASRConnectionPool pool, String uri) {
+        List<FunASRBackend> backends = (List<FunASRBackend>) ReflectionTestUtils.getField(pool, "backends");
+        return backends.stream().filter(b -> b.getUri().equals(uri)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,291 @@
+package org.lijian.interview001.service;
+
+import org.lijian.interview001.LijianApplication;
+import org.lijian.interview001.config.TaskExecutors;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端压测，用本地FunASRStubServer代替FunASR服务，在进程内启动应用
+ * 按给定并发数依次压测，输出每个并发数下的延迟分位数、吞吐量和堆内存，得到吞吐/延迟曲线
+ * 堆内存包含同一进程中的压测客户端和FunASRStubServer，只适合横向比较
+ * 运行: mvn -Pload test -Dload.args="target=http concurrency=1,8,32 requests=500"
+ * <p>
+ * 参数(key=value):
+ * target          http(POST /api/asr/recognize) 或 service(FunASRService.recognizeAudio)，默认http
+ * concurrency     并发数，逗号分隔时依次压测，默认1,8,32
+ * requests        每个并发数的请求数，默认200
+ * warmup          正式压测前的预热请求数，默认50
+ * audioSeconds    每个请求的音频时长(秒)，默认10
+ * mode            service模式下的识别模式，默认offline
+ * timeoutSeconds  单个请求超时(秒)，默认120
+ * delayMillis     FunASRStubServer收到结束标记后的固定延迟，默认50
+ * realtimeFactor  FunASRStubServer按音频时长计算的延迟，默认0.02
+ * partialBytes    FunASRStubServer返回online中间结果的间隔字节数，默认9600
+ * failureRate     FunASRStubServer的故障概率，默认0
+ * failure         注入的故障类型CLOSE/SILENT，默认CLOSE
+ * 含"."的参数作为应用配置传入，如parameters.pool.maxSize=20；
+ * Java 21及以上分别以spring.threads.virtual.enabled=true/false运行，可对比虚拟线程与平台线程池的吞吐和延迟
+ */
+public class FunASRLoadGenerator {
+
+    /**
+     * 连接在返回结果前被关闭时识别以空文本正常结束，单独计为失败
+     */
+    private static final String EMPTY_RESULT = "empty result";
+
+    private static final AudioFormat PCM_FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+    private final Map<String, String> options;
+    private final String target;
+    private final int audioSeconds;
+    private final long timeoutSeconds;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private URI recognizeUri;
+    private byte[] pcm;
+    private byte[] wav;
+    private int wavDataOffset;
+
+    private FunASRLoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.target = options.getOrDefault("target", "http");
+        this.audioSeconds = Integer.parseInt(options.getOrDefault("audioSeconds", "10"));
+        this.timeoutSeconds = Long.parseLong(options.getOrDefault("timeoutSeconds", "120"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index > 0) {
+                options.put(arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+        new FunASRLoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        try (FunASRStubServer server = FunASRStubServer.start()) {
+            server.setDelayMillis(Long.parseLong(options.getOrDefault("delayMillis", "50")));
+            server.setRealtimeFactor(Double.parseDouble(options.getOrDefault("realtimeFactor", "0.02")));
+            server.setPartialIntervalBytes(Integer.parseInt(options.getOrDefault("partialBytes", "9600")));
+            server.setFailureRate(Double.parseDouble(options.getOrDefault("failureRate", "0")));
+            server.setFailure(FunASRStubServer.Failure.valueOf(options.getOrDefault("failure", "CLOSE")));
+
+            // 以命令行参数传入，优先于application.yml
+            List<String> properties = new ArrayList<>();
+            properties.add("--server.port=0");
+            properties.add("--logging.level.root=WARN");
+            properties.add("--parameters.serverIpPort=" + server.getUri());
+            properties.add("--parameters.fileUrl=" + Files.createTempDirectory("funasr-load"));
+            // 每个请求的音频都不同，关闭缓存避免额外的内存占用
+            properties.add("--parameters.cache.enabled=false");
+            // 压测环境没有数据库，不保存转写结果
+            properties.add("--parameters.transcript.enabled=false");
+            options.forEach((key, value) -> {
+                if (key.contains(".")) {
+                    properties.add("--" + key + "=" + value);
+                }
+            });
+            context = new SpringApplicationBuilder(LijianApplication.class)
+                    .run(properties.toArray(new String[0]));
+            try {
+                prepare();
+                int warmup = Integer.parseInt(options.getOrDefault("warmup", "50"));
+                if (warmup > 0) {
+                    runLevel(Math.min(warmup, 8), warmup);
+                }
+                int requests = Integer.parseInt(options.getOrDefault("requests", "200"));
+                System.out.printf("target=%s audioSeconds=%d requests=%d threads=%s%n", target, audioSeconds, requests,
+                        TaskExecutors.isVirtual(context.getEnvironment()) ? "virtual" : "platform");
+                for (String level : options.getOrDefault("concurrency", "1,8,32").split(",")) {
+                    report(runLevel(Integer.parseInt(level.trim()), requests));
+                }
+                System.out.printf("FunASRStubServer: 连接 %d, 注入故障 %d%n", server.getSessions(), server.getFailures());
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private void prepare() throws IOException {
+        pcm = new byte[audioSeconds * AudioSender.PCM_BYTES_PER_SECOND];
+        for (int i = 0; i < pcm.length / 2; i++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 16000.0));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(pcm.length + 64);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), PCM_FORMAT, pcm.length / 2),
+                AudioFileFormat.Type.WAVE, outputStream);
+        wav = outputStream.toByteArray();
+        wavDataOffset = wav.length - pcm.length;
+
+        httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        recognizeUri = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                + "/api/asr/recognize");
+    }
+
+    /**
+     * 以固定并发数发出requests个请求，每个工作线程完成一个请求后立即发出下一个
+     */
+    private Result runLevel(int concurrency, int requests) throws InterruptedException {
+        Result result = new Result(concurrency, requests);
+        AtomicInteger next = new AtomicInteger();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> result.heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 50, TimeUnit.MILLISECONDS);
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests) {
+                    long requestStart = System.nanoTime();
+                    String outcome = request(index);
+                    if (outcome == null) {
+                        result.latencies[index] = System.nanoTime() - requestStart;
+                    } else {
+                        result.latencies[index] = -1;
+                        result.errors.merge(outcome, 1, Integer::sum);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.DAYS);
+        result.elapsedNanos = System.nanoTime() - start;
+        sampler.shutdownNow();
+        result.gcCount = gcCount() - gcCount;
+        result.gcMillis = gcMillis() - gcMillis;
+        return result;
+    }
+
+    /**
+     * 发出一个请求，音频开头写入请求序号使每个请求的内容不同
+     * @return 成功时为null，失败时为失败原因
+     */
+    private String request(int index) {
+        try {
+            if ("service".equals(target)) {
+                byte[] audio = pcm.clone();
+                mark(audio, 0, index);
+                String mode = options.getOrDefault("mode", "offline");
+                String text = context.getBean(FunASRService.class).recognizeAudio(audio, 0, audio.length, mode, null)
+                        .get(timeoutSeconds, TimeUnit.SECONDS);
+                return text.isEmpty() ? EMPTY_RESULT : null;
+            }
+
+            byte[] audio = wav.clone();
+            mark(audio, wavDataOffset, index);
+            String boundary = "----funasr-load-" + index;
+            HttpRequest request = HttpRequest.newBuilder(recognizeUri)
+                    .timeout(Duration.ofSeconds(timeoutSeconds))
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(
+                            ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"load.wav\"\r\n"
+                                    + "Content-Type: audio/wav\r\n\r\n").getBytes(StandardCharsets.UTF_8),
+                            audio,
+                            ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8))))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return "HTTP " + response.statusCode();
+            }
+            return response.body().contains("\"result\":\"\"") ? EMPTY_RESULT : null;
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return cause.getClass().getSimpleName();
+        }
+    }
+
+    private static void mark(byte[] audio, int offset, int index) {
+        for (int i = 0; i < 4; i++) {
+            audio[offset + i] = (byte) (index >> (8 * i));
+        }
+    }
+
+    private void report(Result result) {
+        long[] latencies = Arrays.stream(result.latencies).filter(latency -> latency >= 0).sorted().toArray();
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf("并发 %3d: 成功 %d, 失败 %d %s%n", result.concurrency, latencies.length,
+                result.requests - latencies.length, result.errors.isEmpty() ? "" : new TreeMap<>(result.errors));
+        System.out.printf("  吞吐 %.1f 请求/秒, %.1f 音频秒/秒%n", latencies.length / seconds,
+                latencies.length * audioSeconds / seconds);
+        if (latencies.length > 0) {
+            System.out.printf("  延迟 p50 %.1fms, p90 %.1fms, p99 %.1fms, max %.1fms%n", percentile(latencies, 0.5),
+                    percentile(latencies, 0.9), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+        System.out.printf("  堆内存峰值 %dMB, GC %d次 %dms%n", result.heapPeak.get() >> 20, result.gcCount, result.gcMillis);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static class Result {
+        private final int concurrency;
+        private final int requests;
+        private final long[] latencies;
+        private final Map<String, Integer> errors = new ConcurrentHashMap<>();
+        private final AtomicLong heapPeak = new AtomicLong();
+        private long elapsedNanos;
+        private long gcCount;
+        private long gcMillis;
+
+        Result(int concurrency, int requests) {
+            this.concurrency = concurrency;
+            this.requests = requests;
+            this.latencies = new long[requests];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送路径和FunASR消息解析的基准测试
+ * 连接池和WebSocket会话都在进程内，不含网络和FunASR本身的耗时，只测本服务的分块、发送和解析开销
+ * 运行: mvn -Pbenchmark test -Djmh.args=FunASRServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunASRServiceBenchmark {
+
+    /**
+     * 发送路径，online模式不限速，测的是分块和发送本身的开销
+     */
+    @State(Scope.Benchmark)
+    public static class SendState {
+
+        @Param({"offline", "online"})
+        private String mode;
+
+        @Param({"10", "60"})
+        private int seconds;
+
+        private byte[] pcm;
+        private AudioSender audioSender;
+        private FunASRService service;
+        private RecognitionSession session;
+
+        @Setup
+        public void setup() {
+            pcm = new byte[seconds * AudioSender.PCM_BYTES_PER_SECOND];
+            audioSender = newAudioSender();
+            service = newService(new StubConnectionPool(), audioSender, mode);
+        }
+
+        @Setup(Level.Iteration)
+        public void openSession() {
+            session = service.openSession().join();
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeSession() {
+            session.abort(new CancellationException());
+        }
+
+        @TearDown
+        public void tearDown() {
+            audioSender.shutdown();
+        }
+    }
+
+    /**
+     * 消息解析，同时转换为对外的分段结果，与SSE接口的路径一致
+     */
+    @State(Scope.Thread)
+    public static class MessageState {
+
+        @Param({"2pass-online", "2pass-offline"})
+        private String message;
+
+        private String payload;
+        private AudioSender audioSender;
+        private FunASRService service;
+        private StubConnectionPool pool;
+        private RecognitionSession session;
+        private Map<String, Object> lastSegment;
+
+        @Setup
+        public void setup() {
+            payload = "2pass-online".equals(message)
+                    ? "{\"is_final\":false,\"mode\":\"2pass-online\",\"text\":\"今天天气\",\"wav_name\":\"asr\"}"
+                    : "{\"is_final\":false,\"mode\":\"2pass-offline\",\"text\":\"今天天气怎么样。\","
+                    + "\"timestamp\":\"[[380,620],[620,860],[860,1100],[1100,1340],[1340,1580],[1580,1820],[1820,2060]]\","
+                    + "\"stamp_sents\":[{\"text_seg\":\"今 天 天 气 怎 么 样\",\"punc\":\"。\",\"start\":380,\"end\":2060,"
+                    + "\"ts_list\":[[380,620],[620,860],[860,1100],[1100,1340],[1340,1580],[1580,1820],[1820,2060]]}],"
+                    + "\"wav_name\":\"asr\"}";
+            pool = new StubConnectionPool();
+            audioSender = newAudioSender();
+            service = newService(pool, audioSender, "2pass");
+        }
+
+        /**
+         * 每轮新开会话，避免累积的识别文本无限增长
+         */
+        @Setup(Level.Iteration)
+        public void openSession() {
+            session = service.openSession("2pass", response -> lastSegment = FunASRService.toSegment(response)).join();
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeSession() {
+            session.abort(new CancellationException());
+        }
+
+        @TearDown
+        public void tearDown() {
+            audioSender.shutdown();
+        }
+    }
+
+    /**
+     * 一次完整识别：初始化消息、分块发送、结束标记和最终结果
+     */
+    @Benchmark
+    public String recognizeAudio(SendState state) {
+        return state.service.recognizeAudio(state.pcm, 0, state.pcm.length, state.mode, null).join();
+    }
+
+    /**
+     * 已打开的会话上分块发送整段音频
+     */
+    @Benchmark
+    public long sendAudioData(SendState state) {
+        return state.service.sendAudioData(state.session.getRequestId(), state.pcm).join();
+    }
+
+    @Benchmark
+    public Map<String, Object> handleTextMessage(MessageState state) throws Exception {
+        state.pool.getLastBorrowed().getListener().handleTextMessage(state.payload);
+        return state.lastSegment;
+    }
+
+    private static AudioSender newAudioSender() {
+        quietLogging();
+        AudioSender audioSender = new AudioSender(new MockEnvironment(), newMetrics());
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 65536);
+        ReflectionTestUtils.setField(audioSender, "onlineChunkSize", 9600);
+        ReflectionTestUtils.setField(audioSender, "threads", 4);
+        audioSender.start();
+        return audioSender;
+    }
+
+    private static FunASRService newService(FunASRConnectionPool pool, AudioSender audioSender, String mode) {
+        FunASRService service = new FunASRService(pool, audioSender, new ObjectMapper(), newMetrics());
+        ReflectionTestUtils.setField(service, "model", mode);
+        service.start();
+        return service;
+    }
+
+    private static RecognitionMetrics newMetrics() {
+        return new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+
+    /**
+     * 测试环境没有日志配置，logback默认输出DEBUG日志，会淹没被测代码本身的耗时
+     */
+    private static void quietLogging() {
+        ch.qos.logback.classic.Logger root = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.WARN);
+    }
+}
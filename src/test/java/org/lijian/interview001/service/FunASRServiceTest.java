@@ -0,0 +1,200 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 通过本地FunASRStubServer识别，检查中间结果回调、消息解析、服务端延迟和超时会话回收
+ */
+class FunASRServiceTest {
+
+    private FunASRStubServer server;
+    private FunASRConnectionPool pool;
+    private AudioSender audioSender;
+    private FunASRService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RecognitionMetrics metrics = new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+
+        server = FunASRStubServer.start();
+        pool = new FunASRConnectionPool(new StandardWebSocketClient());
+        ReflectionTestUtils.setField(pool, "serverIpPorts", new String[]{server.getUri()});
+        ReflectionTestUtils.setField(pool, "maxSize", 4);
+        ReflectionTestUtils.setField(pool, "maxIdleMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMillis", 3000L);
+        ReflectionTestUtils.setField(pool, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(pool, "evictIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "sendTimeLimitMillis", 10000);
+        ReflectionTestUtils.setField(pool, "sendBufferSizeLimit", 1 << 20);
+        ReflectionTestUtils.setField(pool, "failureThreshold", 3);
+        ReflectionTestUtils.setField(pool, "healthCheckIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "maxAttempts", 1);
+        pool.start();
+
+        audioSender = new AudioSender(new MockEnvironment(), metrics);
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 65536);
+        ReflectionTestUtils.setField(audioSender, "onlineChunkSize", 9600);
+        ReflectionTestUtils.setField(audioSender, "threads", 1);
+        audioSender.start();
+
+        service = new FunASRService(pool, audioSender, new ObjectMapper(), metrics);
+        ReflectionTestUtils.setField(service, "model", "offline");
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        audioSender.shutdown();
+        pool.shutdown();
+        server.close();
+    }
+
+    @Test
+    void deliversPartialResultsAndExcludesThemFromFinalText() throws Exception {
+        server.setPartialIntervalBytes(9600);
+        List<FunASRMessage> messages = new CopyOnWriteArrayList<>();
+        // 1秒音频按9600字节分块，约3条中间结果
+        byte[] pcm = new byte[AudioSender.PCM_BYTES_PER_SECOND];
+
+        String result = service.recognizeAudio(pcm, 0, pcm.length, "2pass", messages::add).get(10, TimeUnit.SECONDS);
+
+        assertEquals("测试结果", result);
+        assertEquals(3, messages.stream().filter(message -> "2pass-online".equals(message.getMode())).count());
+        assertEquals("2pass-offline", messages.get(messages.size() - 1).getMode());
+    }
+
+    @Test
+    void convertsProtocolMessageToSegment() throws Exception {
+        FunASRMessage message = new ObjectMapper().readValue("{\"mode\":\"2pass-offline\",\"text\":\"你好。\","
+                + "\"timestamp\":\"[[100,300],[300,500]]\",\"stamp_sents\":[{\"text_seg\":\"你 好\",\"start\":100,\"end\":500}],"
+                + "\"wav_name\":\"asr\",\"is_final\":false,\"spk\":0}", FunASRMessage.class);
+
+        Map<String, Object> segment = FunASRService.toSegment(message);
+
+        assertEquals("segment", segment.get("type"));
+        assertEquals("你好。", segment.get("text"));
+        assertEquals("[[100,300],[300,500]]", segment.get("timestamp"));
+        assertEquals(List.of(Map.of("text_seg", "你 好", "start", 100, "end", 500)), segment.get("sentences"));
+        assertFalse(message.isFinal());
+        assertEquals(500, message.getEndMillis());
+    }
+
+    @Test
+    void mapsTimesBackToOriginalAudio() throws Exception {
+        FunASRMessage message = new ObjectMapper().readValue("{\"mode\":\"offline\",\"text\":\"你好\","
+                + "\"timestamp\":\"[[100,300],[300,500]]\",\"stamp_sents\":[{\"start\":100,\"end\":500,"
+                + "\"ts_list\":[[100,300],[300,500]]}]}", FunASRMessage.class);
+
+        FunASRMessage mapped = message.mapTimes(millis -> millis + 1000);
+
+        assertEquals("[[1100,1300],[1300,1500]]", mapped.getTimestamp());
+        assertEquals(Map.of("start", 1100L, "end", 1500L, "ts_list", List.of(List.of(1100L, 1300L), List.of(1300L, 1500L))),
+                mapped.getStampSents().get(0));
+        assertEquals("你好", mapped.getText());
+    }
+
+    @Test
+    void declaresFormatOfPassthroughAudio() throws Exception {
+        ByteBuffer mp3 = ByteBuffer.wrap(new byte[4096]);
+
+        assertEquals("测试结果", service.recognizeEncoded(mp3, "mp3", null).get(10, TimeUnit.SECONDS));
+
+        assertTrue(server.getLastInit().contains("\"wav_format\":\"mp3\""), server.getLastInit());
+        assertTrue(server.getLastInit().contains("\"mode\":\"offline\""), server.getLastInit());
+        assertEquals(4096, server.getBytesReceived());
+    }
+
+    @Test
+    void sendsRequestHotWordsInCachedInitMessage() throws Exception {
+        HotWords hotWords = HotWords.parse("{\" 阿里  巴巴 \":20}", new ObjectMapper(), 10, 10);
+
+        assertEquals("测试结果", service.recognizeAudio(null, ByteBuffer.wrap(new byte[3200]), "offline", hotWords, null)
+                .get(10, TimeUnit.SECONDS));
+
+        assertTrue(server.getLastInit().contains("\"hot_words\":\"{\\\"阿里 巴巴\\\":20}\""), server.getLastInit());
+        // 同一组热词和模式的初始化消息只序列化一次
+        assertEquals(server.getLastInit(), hotWords.getInitMessage("offline").getPayload());
+    }
+
+    @Test
+    void reapsSessionWithoutFinalResult() throws Exception {
+        server.setFailureRate(1);
+        server.setFailure(FunASRStubServer.Failure.SILENT);
+        ReflectionTestUtils.setField(service, "firstResultTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(service, "reapIntervalMillis", 50L);
+        service.start();
+        try {
+            CompletableFuture<String> future = service.recognizeAudio(new byte[3200]);
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertEquals(0, pool.stats().get("active"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void doesNotCacheTextOfSessionClosedBeforeFinalResult() throws Exception {
+        RecognitionCache cache = new RecognitionCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 3600L);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<String>> loader = () -> {
+            loads.incrementAndGet();
+            return service.recognizeAudio(new byte[3200]);
+        };
+
+        // 收到结束标记后直接关闭连接，不返回is_final
+        server.setFailureRate(1);
+        server.setFailure(FunASRStubServer.Failure.CLOSE);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> cache.get("a", loader).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+
+        server.setFailureRate(0);
+        assertEquals("测试结果", cache.get("a", loader).get(10, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void waitsForServerProcessingDelay() throws Exception {
+        server.setDelayMillis(200);
+        server.setRealtimeFactor(0.1);
+        // 2秒音频: 200ms + 2 * 100ms
+        byte[] pcm = new byte[AudioSender.PCM_BYTES_PER_SECOND * 2];
+
+        long start = System.nanoTime();
+        assertEquals("测试结果", service.recognizeAudio(pcm).get(10, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis >= 400, "elapsed " + elapsedMillis + "ms");
+    }
+}
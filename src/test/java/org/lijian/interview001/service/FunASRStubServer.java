@@ -0,0 +1,267 @@
+package org.lijian.interview001.service;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试用的本地FunASR服务
+ * 收到{"end":true}后返回一条最终结果，默认立即返回offline模式的结果
+ * 可设置处理延迟、online/2pass中间结果的间隔和故障注入，运行期间修改立即生效
+ */
+class FunASRStubServer implements AutoCloseable {
+
+    static final String RESULT = "{\"mode\":\"offline\",\"text\":\"测试结果\",\"is_final\":true}";
+
+    /**
+     * 注入的故障
+     */
+    enum Failure {
+        /**
+         * 收到结束标记后以1011关闭连接
+         */
+        CLOSE,
+        /**
+         * 收到结束标记后不返回结果，由客户端超时
+         */
+        SILENT
+    }
+
+    private final Tomcat tomcat = new Tomcat();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final ScheduledExecutorService replyScheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "funasr-stub-reply");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long delayMillis;
+    private volatile double realtimeFactor;
+    private volatile int partialIntervalBytes;
+    private volatile double failureRate;
+    private volatile Failure failure = Failure.CLOSE;
+    private volatile String lastInit;
+
+    private FunASRStubServer(int port) throws IOException, LifecycleException {
+        tomcat.setBaseDir(Files.createTempDirectory("funasr-stub").toString());
+        tomcat.setPort(port);
+        tomcat.getConnector();
+
+        Context context = tomcat.addContext("", null);
+        // WebSocket握手由WsFilter处理，过滤器只对映射到Servlet的请求生效
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        context.addServletContainerInitializer(new WsSci(), null);
+        context.addServletContainerInitializer((classes, servletContext) -> {
+            ServerContainer container = (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+            container.setDefaultMaxBinaryMessageBufferSize(1 << 20);
+            try {
+                container.addEndpoint(ServerEndpointConfig.Builder.create(StubEndpoint.class, "/")
+                        .configurator(new ServerEndpointConfig.Configurator() {
+                            @Override
+                            public <T> T getEndpointInstance(Class<T> endpointClass) {
+                                return endpointClass.cast(new StubEndpoint());
+                            }
+                        })
+                        .build());
+            } catch (DeploymentException e) {
+                throw new IllegalStateException(e);
+            }
+        }, null);
+        tomcat.start();
+    }
+
+    /**
+     * 在随机端口启动
+     */
+    static FunASRStubServer start() throws IOException, LifecycleException {
+        return new FunASRStubServer(0);
+    }
+
+    /**
+     * 在指定端口启动，用于模拟服务重启
+     */
+    static FunASRStubServer start(int port) throws IOException, LifecycleException {
+        return new FunASRStubServer(port);
+    }
+
+    int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    String getUri() {
+        return "ws://127.0.0.1:" + getPort() + "/";
+    }
+
+    /**
+     * 已建立过的WebSocket连接数
+     */
+    int getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * 收到的音频字节数
+     */
+    long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * 已注入的故障次数
+     */
+    long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * 收到结束标记到返回最终结果的固定延迟
+     */
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * 按音频时长计算的处理延迟，0.1表示每秒音频再延迟100ms，与固定延迟叠加
+     */
+    void setRealtimeFactor(double realtimeFactor) {
+        this.realtimeFactor = realtimeFactor;
+    }
+
+    /**
+     * online/2pass模式下每收到多少字节音频返回一条中间结果，0表示不返回
+     */
+    void setPartialIntervalBytes(int partialIntervalBytes) {
+        this.partialIntervalBytes = partialIntervalBytes;
+    }
+
+    /**
+     * 每次识别发生故障的概率
+     */
+    void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    void setFailure(Failure failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * 最近收到的初始化消息
+     */
+    String getLastInit() {
+        return lastInit;
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        if (closed.compareAndSet(false, true)) {
+            replyScheduler.shutdownNow();
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    /**
+     * 每个连接的识别状态，一个连接上的识别依次进行，消息回调不会并发
+     */
+    private class StubEndpoint extends Endpoint {
+        private String mode = "offline";
+        private long audioBytes;
+        private long partialBytes;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            sessions.incrementAndGet();
+            session.addMessageHandler(String.class, (MessageHandler.Whole<String>) message -> {
+                if (message.contains("\"end\"")) {
+                    finish(session);
+                } else if (message.contains("\"mode\"")) {
+                    // 初始化消息，开始新的识别
+                    lastInit = message;
+                    mode = message.contains("2pass") ? "2pass" : message.contains("online") ? "online" : "offline";
+                    audioBytes = 0;
+                    partialBytes = 0;
+                }
+            });
+            session.addMessageHandler(ByteBuffer.class, (MessageHandler.Whole<ByteBuffer>) audio -> {
+                int length = audio.remaining();
+                bytesReceived.addAndGet(length);
+                audioBytes += length;
+                partialBytes += length;
+                int interval = partialIntervalBytes;
+                if (interval > 0 && !"offline".equals(mode) && partialBytes >= interval) {
+                    partialBytes = 0;
+                    String partialMode = "2pass".equals(mode) ? "2pass-online" : "online";
+                    send(session, "{\"mode\":\"" + partialMode + "\",\"text\":\"测试\",\"is_final\":false}");
+                }
+            });
+        }
+
+        private void finish(Session session) {
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.incrementAndGet();
+                if (failure == Failure.CLOSE) {
+                    try {
+                        session.close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "injected failure"));
+                    } catch (IOException ignored) {
+                        // 连接已断开
+                    }
+                }
+                return;
+            }
+
+            String result = "offline".equals(mode) ? RESULT
+                    : "{\"mode\":\"" + ("2pass".equals(mode) ? "2pass-offline" : "online")
+                    + "\",\"text\":\"测试结果\",\"is_final\":true}";
+            long audioMillis = audioBytes * 1000 / AudioSender.PCM_BYTES_PER_SECOND;
+            long delay = delayMillis + (long) (audioMillis * realtimeFactor);
+            if (delay <= 0) {
+                send(session, result);
+            } else {
+                replyScheduler.schedule(() -> send(session, result), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 中间结果在Tomcat线程上发送，最终结果可能在延迟线程上发送，基本发送器不允许并发
+         */
+        private void send(Session session, String message) {
+            synchronized (session) {
+                if (!session.isOpen()) {
+                    return;
+                }
+                try {
+                    session.getBasicRemote().sendText(message);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+}
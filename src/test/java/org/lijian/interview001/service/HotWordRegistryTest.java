@@ -0,0 +1,83 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 检查请求热词的校验、规范化和LRU缓存
+ */
+class HotWordRegistryTest {
+
+    private FunASRService funASRService;
+    private HotWordRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        RecognitionMetrics metrics = new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        funASRService = new FunASRService(null, null, objectMapper, metrics);
+        ReflectionTestUtils.setField(funASRService, "hotWords", "{\"默认\":20}");
+        funASRService.start();
+
+        registry = new HotWordRegistry(funASRService, objectMapper);
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        ReflectionTestUtils.setField(registry, "maxWords", 3);
+        ReflectionTestUtils.setField(registry, "maxWordLength", 8);
+        ReflectionTestUtils.setField(registry, "cacheSize", 2);
+    }
+
+    @Test
+    void sharesCompiledHotWordsAcrossEquivalentSpellings() {
+        HotWords first = registry.resolve("{\"语音 识别\":20,\"热词\":30}");
+        HotWords second = registry.resolve("{\"热词\": 30, \" 语音   识别\": 10, \"语音 识别\": 20}");
+
+        assertSame(first, second);
+        assertEquals("{\"热词\":30,\"语音 识别\":20}", first.getJson());
+        assertSame(first, registry.resolve("{\"语音 识别\":20,\"热词\":30}"));
+        assertEquals(1L, registry.stats().get("hitCount"));
+        assertSame(funASRService.getHotWords(), registry.resolve(" "));
+        assertEquals("{\"默认\":20}", registry.resolve(null).getJson());
+    }
+
+    @Test
+    void rejectsInvalidHotWords() {
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("[\"热词\"]"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("{\"热词\":0}"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("{\"热词\":\"20\"}"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("{\"很长很长很长的热词\":20}"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("{\"a\":1,\"b\":1,\"c\":1,\"d\":1}"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("{\"  \":20}"));
+    }
+
+    @Test
+    void failsStartupOnMalformedConfiguredHotWords() {
+        FunASRService service = new FunASRService(null, null, new ObjectMapper(),
+                new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP));
+        ReflectionTestUtils.setField(service, "hotWords", "{\"默认\":0}");
+
+        assertThrows(IllegalStateException.class, service::start);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedHotWords() {
+        HotWords a = registry.resolve("{\"a\":1}");
+        registry.resolve("{\"b\":1}");
+        registry.resolve("{\"a\":1}");
+        registry.resolve("{\"c\":1}");
+
+        assertSame(a, registry.resolve("{\"a\":1}"));
+        assertEquals(2, registry.stats().get("sets"));
+        assertEquals(3L, registry.stats().get("compileCount"));
+        // b最久未使用，已被淘汰，需要重新解析
+        registry.resolve("{\"b\":1}");
+        assertEquals(4L, registry.stats().get("compileCount"));
+    }
+}
@@ -0,0 +1,138 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 长音频按静音切分后并发识别，结果按分段顺序拼接，时间戳换算到整段音频的时间轴
+ * StubConnectionPool按每段收到的音频时长回复文本和时间戳
+ */
+class LongAudioServiceTest {
+
+    private static final int BYTES_PER_MILLI = 32;
+
+    private AudioSender audioSender;
+    private RecognitionScheduler scheduler;
+    private LongAudioService longAudioService;
+
+    @BeforeEach
+    void setUp() {
+        RecognitionMetrics metrics = new RecognitionMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        // 每段回复"<时长>ms"，时间戳为分段内的[[100,300],[时长-200,时长-100]]
+        StubConnectionPool pool = new StubConnectionPool(audioBytes -> {
+            long millis = audioBytes / BYTES_PER_MILLI;
+            return "{\"mode\":\"offline\",\"text\":\"" + millis + "ms\",\"timestamp\":\"[[100,300],["
+                    + (millis - 200) + "," + (millis - 100) + "]]\",\"is_final\":true}";
+        });
+
+        audioSender = new AudioSender(new MockEnvironment(), metrics);
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 65536);
+        ReflectionTestUtils.setField(audioSender, "threads", 2);
+        audioSender.start();
+
+        FunASRService funASRService = new FunASRService(pool, audioSender, new ObjectMapper(), metrics);
+        ReflectionTestUtils.setField(funASRService, "model", "offline");
+        funASRService.start();
+
+        scheduler = new RecognitionScheduler(new MockEnvironment());
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", 4);
+        ReflectionTestUtils.setField(scheduler, "batchMaxInFlight", 2);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", 100);
+        ReflectionTestUtils.setField(scheduler, "threads", 1);
+        scheduler.start();
+
+        AudioPreprocessor preprocessor = new AudioPreprocessor(metrics);
+        preprocessor.init();
+
+        longAudioService = new LongAudioService(funASRService, scheduler, preprocessor, new ObjectMapper());
+        ReflectionTestUtils.setField(longAudioService, "parallelism", 2);
+        ReflectionTestUtils.setField(longAudioService, "minSegmentSeconds", 1);
+        ReflectionTestUtils.setField(longAudioService, "maxSegmentSeconds", 10);
+        ReflectionTestUtils.setField(longAudioService, "minSilenceMillis", 400);
+        ReflectionTestUtils.setField(longAudioService, "thresholdDb", 10.0);
+        ReflectionTestUtils.setField(longAudioService, "segmentTimeoutSeconds", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        audioSender.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stitchesSegmentsInOrderAndShiftsTimestamps() throws Exception {
+        // 语音、静音交替，三段语音之间的静音中点为2460ms和5430ms
+        ByteBuffer pcm = pcm(1980, 990, 1980, 990, 1980);
+
+        Map<String, Object> response = longAudioService.recognize(pcm).get(10, TimeUnit.SECONDS);
+
+        assertEquals("2460ms2970ms2490ms", response.get("result"));
+        List<Map<String, Object>> segments = (List<Map<String, Object>>) response.get("segments");
+        assertEquals(3, segments.size());
+        long[][] ranges = {{0, 2460}, {2460, 5430}, {5430, 7920}};
+        for (int i = 0; i < segments.size(); i++) {
+            Map<String, Object> segment = segments.get(i);
+            long start = ranges[i][0];
+            long end = ranges[i][1];
+            assertEquals(i, segment.get("index"));
+            assertEquals(start, segment.get("startMillis"));
+            assertEquals(end, segment.get("endMillis"));
+            List<long[]> timestamp = (List<long[]>) segment.get("timestamp");
+            assertArrayEquals(new long[]{start + 100, start + 300}, timestamp.get(0));
+            assertArrayEquals(new long[]{end - 200, end - 100}, timestamp.get(1));
+        }
+        // 调用方的缓冲区不受影响
+        assertEquals(0, pcm.position());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recognizesSlicedBufferRelativeToItsPosition() throws Exception {
+        ByteBuffer audio = pcm(1980, 990, 1980);
+        ByteBuffer padded = ByteBuffer.allocate(audio.remaining() + 320);
+        padded.position(320);
+        padded.put(audio);
+        padded.position(320);
+
+        Map<String, Object> response = longAudioService.recognize(padded).get(10, TimeUnit.SECONDS);
+
+        List<Map<String, Object>> segments = (List<Map<String, Object>>) response.get("segments");
+        assertEquals(2, segments.size());
+        assertEquals(2460L, segments.get(1).get("startMillis"));
+        assertEquals("2460ms2490ms", response.get("result"));
+    }
+
+    /**
+     * 按毫秒数交替生成语音(440Hz正弦波)和静音，从语音开始
+     */
+    private static ByteBuffer pcm(int... millis) {
+        int total = 0;
+        for (int value : millis) {
+            total += value;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total * BYTES_PER_MILLI).order(ByteOrder.LITTLE_ENDIAN);
+        int sample = 0;
+        for (int i = 0; i < millis.length; i++) {
+            for (int n = 0; n < millis[i] * 16; n++, sample++) {
+                buffer.putShort(i % 2 == 0 ? (short) (16000 * Math.sin(2 * Math.PI * 440 * sample / 16000.0)) : 0);
+            }
+        }
+        return buffer.flip();
+    }
+}
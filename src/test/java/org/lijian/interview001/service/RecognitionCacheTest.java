@@ -0,0 +1,159 @@
+package org.lijian.interview001.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 识别结果缓存的并发合并、失败不缓存、LRU/TTL淘汰和磁盘层
+ */
+class RecognitionCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RecognitionCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(2, 3600, false);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void coalescesConcurrentRequestsForSameKey() {
+        CompletableFuture<String> recognition = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.get("a", () -> {
+            loads.incrementAndGet();
+            return recognition;
+        });
+        CompletableFuture<String> second = cache.get("a", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("不应调用");
+        });
+        // 某个调用方取消不影响共享的识别
+        second.cancel(false);
+        CompletableFuture<String> third = cache.get("a", () -> load("a"));
+
+        recognition.complete("结果");
+
+        assertEquals(1, loads.get());
+        assertEquals("结果", first.join());
+        assertEquals("结果", third.join());
+        assertEquals(2L, cache.stats().get("coalescedCount"));
+        assertEquals("结果", cache.get("a", () -> load("a")).join());
+        assertEquals(1L, cache.stats().get("hitCount"));
+        assertEquals(0, cache.stats().get("inFlight"));
+    }
+
+    @Test
+    void doesNotCacheFailures() {
+        CompletableFuture<String> failed = cache.get("a", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("连接断开"));
+        });
+        assertThrows(Exception.class, failed::join);
+        assertThrows(Exception.class, () -> cache.get("b", () -> {
+            throw new IllegalStateException("无法发起识别");
+        }).join());
+
+        assertEquals("a", cache.get("a", () -> load("a")).join());
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().get("inFlight"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() {
+        cache.get("a", () -> load("a")).join();
+        cache.get("b", () -> load("b")).join();
+        cache.get("a", () -> load("a")).join();
+        // 超出2条，淘汰最久未使用的b
+        cache.get("c", () -> load("c")).join();
+
+        assertEquals(3, loads.get());
+        cache.get("a", () -> load("a")).join();
+        assertEquals(3, loads.get());
+        cache.get("b", () -> load("b")).join();
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.stats().get("size"));
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws Exception {
+        cache = newCache(10, 0, false);
+        cache.get("a", () -> load("a")).join();
+        Thread.sleep(5);
+
+        cache.get("a", () -> load("a")).join();
+
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.stats().get("evictionCount"));
+    }
+
+    @Test
+    void readsResultsWrittenByAnotherInstanceFromDisk() {
+        newCache(10, 3600, true).get("a", () -> load("a")).join();
+
+        RecognitionCache restarted = newCache(10, 3600, true);
+        assertEquals("a", restarted.get("a", () -> load("a")).join());
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, restarted.stats().get("diskHitCount"));
+    }
+
+    @Test
+    void keyDependsOnContentModeAndHotWords() {
+        byte[] pcm = {1, 2, 3, 4};
+        String key = RecognitionCache.key(pcm, 0, 4, "offline", "h");
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4}, 1, 4);
+        assertEquals(key, RecognitionCache.key(buffer, "offline", "h"));
+        assertEquals(1, buffer.position());
+        assertNotEquals(key, RecognitionCache.key(pcm, 0, 4, "2pass", "h"));
+        assertNotEquals(key, RecognitionCache.key(pcm, 0, 4, "offline", ""));
+        assertNotEquals(key, RecognitionCache.key(pcm, 0, 3, "offline", "h"));
+        assertTrue(key.matches("[0-9a-f]{64}"));
+    }
+
+    @Test
+    void streamKeyMatchesBufferKey() throws IOException {
+        byte[] pcm = new byte[20000];
+        new Random(1).nextBytes(pcm);
+
+        assertEquals(RecognitionCache.key(pcm, 0, pcm.length, "offline", "h"),
+                RecognitionCache.key(new ByteArrayInputStream(pcm), "offline", "h"));
+    }
+
+    /**
+     * 以键作为识别结果
+     */
+    private CompletableFuture<String> load(String key) {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture(key);
+    }
+
+    private RecognitionCache newCache(int maxEntries, long ttlSeconds, boolean disk) {
+        RecognitionCache cache = new RecognitionCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(cache, "diskEnabled", disk);
+        ReflectionTestUtils.setField(cache, "fileUrl", tempDir.toString());
+        return cache;
+    }
+}
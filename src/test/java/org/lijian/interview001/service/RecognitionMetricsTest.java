@@ -0,0 +1,128 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 通过本地FunASRStubServer完成一次识别，检查各阶段指标
+ */
+class RecognitionMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> requestIds = new CopyOnWriteArrayList<>();
+
+    private FunASRStubServer server;
+    private FunASRConnectionPool pool;
+    private AudioSender audioSender;
+    private FunASRService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        // 记录识别span上的请求ID
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStart(Observation.Context context) {
+                if ("asr.recognition".equals(context.getName())) {
+                    requestIds.add(context.getHighCardinalityKeyValue("requestId").getValue());
+                }
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        RecognitionMetrics metrics = new RecognitionMetrics(meterRegistry, observationRegistry);
+
+        server = FunASRStubServer.start();
+        pool = new FunASRConnectionPool(new StandardWebSocketClient());
+        ReflectionTestUtils.setField(pool, "serverIpPorts", new String[]{server.getUri()});
+        ReflectionTestUtils.setField(pool, "maxSize", 4);
+        ReflectionTestUtils.setField(pool, "maxIdleMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMillis", 3000L);
+        ReflectionTestUtils.setField(pool, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(pool, "evictIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "sendTimeLimitMillis", 10000);
+        ReflectionTestUtils.setField(pool, "sendBufferSizeLimit", 1 << 20);
+        ReflectionTestUtils.setField(pool, "failureThreshold", 3);
+        ReflectionTestUtils.setField(pool, "healthCheckIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(pool, "maxAttempts", 1);
+        pool.start();
+
+        audioSender = new AudioSender(new MockEnvironment(), metrics);
+        ReflectionTestUtils.setField(audioSender, "offlineChunkSize", 65536);
+        ReflectionTestUtils.setField(audioSender, "threads", 1);
+        audioSender.start();
+
+        service = new FunASRService(pool, audioSender, new ObjectMapper(), metrics);
+        ReflectionTestUtils.setField(service, "model", "offline");
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        audioSender.shutdown();
+        pool.shutdown();
+        server.close();
+    }
+
+    @Test
+    void recordsStagesBytesAndRealTimeFactor() throws Exception {
+        // 2秒的静音PCM
+        byte[] pcm = new byte[AudioSender.PCM_BYTES_PER_SECOND * 2];
+        assertEquals("测试结果", service.recognizeAudio(pcm).get(10, TimeUnit.SECONDS));
+
+        for (String stage : new String[]{"session", "send", "processing"}) {
+            assertNotNull(meterRegistry.find("asr.stage").tag("stage", stage).tag("mode", "offline").timer(), stage);
+        }
+        assertEquals(1, meterRegistry.get("asr.recognition").tag("error", "none").timer().count());
+        assertEquals(pcm.length, meterRegistry.get("asr.audio.sent").counter().count());
+        assertEquals(2.0, meterRegistry.get("asr.audio.processed").counter().count());
+        assertEquals(1, meterRegistry.get("asr.realtime.factor").summary().count());
+        assertEquals(0.0, meterRegistry.get("asr.sessions.active").gauge().value());
+    }
+
+    @Test
+    void tagsSpanWithCallerRequestId() throws Exception {
+        assertEquals("测试结果", service.recognizeAudio("req-1", ByteBuffer.wrap(new byte[3200]), "offline", null, null)
+                .get(10, TimeUnit.SECONDS));
+        service.recognizeAudio(new byte[3200]).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, requestIds.size());
+        assertEquals("req-1", requestIds.get(0));
+        // 未指定时生成
+        assertNotNull(requestIds.get(1));
+    }
+
+    @Test
+    void countsFailuresByStageAndCause() throws Exception {
+        server.close();
+        try {
+            service.recognizeAudio(new byte[3200]).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException expected) {
+            // 服务已停止，借用连接失败
+        }
+        assertEquals(1, meterRegistry.get("asr.failures").tag("stage", "session").counter().count());
+    }
+}
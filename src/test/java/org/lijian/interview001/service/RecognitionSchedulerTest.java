@@ -0,0 +1,185 @@
+package org.lijian.interview001.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 识别任务调度的并发上限、交互优先、批量名额上限和完成回调中的重入调度
+ */
+class RecognitionSchedulerTest {
+
+    private final List<RecognitionScheduler> schedulers = new ArrayList<>();
+
+    private RecognitionScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = newScheduler(2, 1, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        schedulers.forEach(RecognitionScheduler::shutdown);
+    }
+
+    @Test
+    void startsQueuedInteractiveBeforeBatchWhenSlotFrees() throws Exception {
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> first = new CompletableFuture<>();
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> track(started, "i1", first));
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> track(started, "i2", new CompletableFuture<>()));
+        // 名额已满，先提交的批量任务也排在后提交的交互请求之后
+        scheduler.submit(RecognitionScheduler.Priority.BATCH, () -> track(started, "b1", new CompletableFuture<>()));
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> track(started, "i3", new CompletableFuture<>()));
+
+        await(() -> started.size() == 2);
+        assertEquals(List.of("i1", "i2"), started);
+        first.complete("");
+
+        await(() -> started.size() == 3);
+        assertEquals(List.of("i1", "i2", "i3"), started);
+        assertEquals(1, scheduler.stats().get("queuedBatch"));
+    }
+
+    @Test
+    void batchTasksLeaveRoomForInteractive() throws Exception {
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit(RecognitionScheduler.Priority.BATCH, () -> track(started, "b1", new CompletableFuture<>()));
+        scheduler.submit(RecognitionScheduler.Priority.BATCH, () -> track(started, "b2", new CompletableFuture<>()));
+
+        // 批量任务最多占用1个名额，剩余名额留给交互请求
+        await(() -> started.size() == 1);
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> track(started, "i1", new CompletableFuture<>()));
+        await(() -> started.size() == 2);
+        assertEquals(List.of("b1", "i1"), started);
+        assertEquals(2, scheduler.stats().get("inFlight"));
+        assertEquals(1, scheduler.stats().get("batchInFlight"));
+    }
+
+    @Test
+    void skipsTasksCancelledWhileQueued() throws Exception {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        AtomicInteger starts = new AtomicInteger();
+        scheduler = newScheduler(1, 1, 100);
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> running);
+        CompletableFuture<String> queued = scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> {
+            starts.incrementAndGet();
+            return CompletableFuture.completedFuture("");
+        });
+
+        queued.cancel(false);
+        running.complete("");
+
+        RecognitionScheduler cancelled = scheduler;
+        await(() -> (Integer) cancelled.stats().get("inFlight") == 0);
+        assertEquals(0, starts.get());
+        assertEquals(1L, scheduler.stats().get("completedCount"));
+    }
+
+    @Test
+    void dispatchesSynchronouslyCompletingTasksWithoutRecursion() {
+        // 每个任务在开始时就已完成，完成回调中的调度不能递归，否则栈溢出
+        scheduler = newScheduler(1, 1, 100000);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> blocker);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            String value = String.valueOf(i);
+            results.add(scheduler.submit(RecognitionScheduler.Priority.BATCH,
+                    () -> CompletableFuture.completedFuture(value)));
+        }
+
+        blocker.complete("");
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(String.valueOf(i), results.get(i).join());
+        }
+        assertEquals(20001L, scheduler.stats().get("completedCount"));
+        assertEquals(0, scheduler.stats().get("inFlight"));
+    }
+
+    @Test
+    void propagatesFailuresAndRejectsBeyondMaxQueued() throws Exception {
+        scheduler = newScheduler(1, 1, 1);
+        CompletableFuture<String> failed = scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> {
+            throw new IllegalStateException("无法发起识别");
+        });
+        CompletionException error = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        RecognitionScheduler failing = scheduler;
+        await(() -> (Integer) failing.stats().get("inFlight") == 0);
+
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, CompletableFuture::new);
+        scheduler.submit(RecognitionScheduler.Priority.BATCH, CompletableFuture::new);
+        CompletableFuture<String> rejected = scheduler.submit(RecognitionScheduler.Priority.BATCH, CompletableFuture::new);
+
+        assertTrue(rejected.isCompletedExceptionally());
+        error = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertEquals(1L, scheduler.stats().get("rejectedCount"));
+        assertEquals(1, scheduler.stats().get("queuedBatch"));
+    }
+
+    @Test
+    void startsWorkOffCompletingThread() throws Exception {
+        scheduler = newScheduler(1, 1, 100);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> running);
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        CompletableFuture<String> queued = scheduler.submit(RecognitionScheduler.Priority.INTERACTIVE, () -> {
+            worker.set(Thread.currentThread());
+            return CompletableFuture.completedFuture("");
+        });
+
+        // 完成上一个任务的线程(实际是FunASR接收线程)只做计数，不执行下一个任务的开始工作
+        running.complete("");
+
+        queued.get(5, TimeUnit.SECONDS);
+        assertNotSame(Thread.currentThread(), worker.get());
+        assertTrue(worker.get().getName().startsWith("asr-dispatch-"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static CompletableFuture<String> track(List<String> started, String name, CompletableFuture<String> result) {
+        started.add(name);
+        return result;
+    }
+
+    private RecognitionScheduler newScheduler(int maxInFlight, int batchMaxInFlight, int maxQueued) {
+        RecognitionScheduler scheduler = new RecognitionScheduler(new MockEnvironment());
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(scheduler, "batchMaxInFlight", batchMaxInFlight);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", maxQueued);
+        // 单线程保证任务按调度顺序开始
+        ReflectionTestUtils.setField(scheduler, "threads", 1);
+        scheduler.start();
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+}
@@ -0,0 +1,71 @@
+package org.lijian.interview001.service;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * 进程内的连接池，每次借出一个StubWebSocketSession，收到结束标记后立即回复最终结果
+ * 最终结果可按本次识别收到的音频字节数生成，用于检查分段识别的拼接
+ */
+class StubConnectionPool extends FunASRConnectionPool {
+
+    static final String RESULT = "{\"mode\":\"offline\",\"text\":\"测试结果\",\"wav_name\":\"asr\",\"is_final\":true}";
+
+    private final AtomicLong ids = new AtomicLong();
+    private final LongFunction<String> result;
+
+    private volatile FunASRConnection lastBorrowed;
+
+    StubConnectionPool() {
+        this(audioBytes -> RESULT);
+    }
+
+    /**
+     * @param result 按本次识别收到的音频字节数生成最终结果消息
+     */
+    StubConnectionPool(LongFunction<String> result) {
+        super(null);
+        this.result = result;
+    }
+
+    /**
+     * 最近借出的连接，可直接向其Listener投递服务端消息
+     */
+    FunASRConnection getLastBorrowed() {
+        return lastBorrowed;
+    }
+
+    @Override
+    public CompletableFuture<FunASRConnection> borrow() {
+        FunASRConnection connection = new FunASRConnection("stub-" + ids.incrementAndGet(), null);
+        AtomicLong audioBytes = new AtomicLong();
+        connection.attach(new StubWebSocketSession(message -> reply(connection, audioBytes, message)));
+        lastBorrowed = connection;
+        return CompletableFuture.completedFuture(connection);
+    }
+
+    @Override
+    public void release(FunASRConnection connection) {
+    }
+
+    @Override
+    public void invalidate(FunASRConnection connection) {
+    }
+
+    private void reply(FunASRConnection connection, AtomicLong audioBytes, WebSocketMessage<?> message) {
+        if (message instanceof BinaryMessage) {
+            audioBytes.addAndGet(message.getPayloadLength());
+        } else if (message instanceof TextMessage text && text.getPayload().contains("\"end\"")) {
+            try {
+                connection.getListener().handleTextMessage(result.apply(audioBytes.getAndSet(0)));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.lijian.interview001.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的WebSocket会话，只统计写出的字节数，用于排除网络开销测量发送路径
+ */
+class StubWebSocketSession implements WebSocketSession {
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Consumer<WebSocketMessage<?>> onMessage;
+    private volatile boolean open = true;
+
+    StubWebSocketSession() {
+        this(message -> { });
+    }
+
+    /**
+     * @param onMessage 每条消息写出后的回调，可模拟服务端应答
+     */
+    StubWebSocketSession(Consumer<WebSocketMessage<?>> onMessage) {
+        this.onMessage = onMessage;
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        bytesSent.addAndGet(message.getPayloadLength());
+        onMessage.accept(message);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        open = false;
+    }
+
+    @Override
+    public String getId() {
+        return "stub";
+    }
+
+    @Override
+    public URI getUri() {
+        return URI.create("ws://127.0.0.1/");
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return List.of();
+    }
+}
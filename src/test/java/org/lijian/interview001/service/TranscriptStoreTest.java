@@ -0,0 +1,116 @@
+package org.lijian.interview001.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在H2(MySQL兼容模式)上检查批量写入、失败时逐条重写和按二元组检索
+ */
+class TranscriptStoreTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TranscriptStore store;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        store = new TranscriptStore(jdbcTemplate, new DataSourceTransactionManager(dataSource), new ObjectMapper());
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(store, "batchSize", 50);
+        ReflectionTestUtils.setField(store, "maxDelayMillis", 20L);
+        ReflectionTestUtils.setField(store, "maxSearchResults", 100);
+        store.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void writesQueuedTranscriptsInBatches() {
+        String audioHash = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        for (int i = 0; i < 120; i++) {
+            assertTrue(store.save(new TranscriptRecord("r" + i, "batch", i == 0 ? audioHash : null, 1000L,
+                    "第" + i + "条测试结果", null, 10)));
+        }
+        store.save(new TranscriptRecord("sse", "sse", null, null, "今天天气很好",
+                List.of(Map.of("text", "今天天气很好", "timestamp", "[[0,200]]")), 20));
+
+        // 关闭时写入队列中剩余的结果
+        store.shutdown();
+
+        assertEquals(121L, store.stats().get("written"));
+        assertEquals(121, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM asr_transcript", Integer.class));
+        Map<String, Object> first = store.find("r0");
+        assertEquals(audioHash, first.get("audioHash"));
+        assertEquals(1000L, first.get("durationMillis"));
+        assertNull(first.get("segments"));
+        assertEquals(List.of(Map.of("text", "今天天气很好", "timestamp", "[[0,200]]")), store.find("sse").get("segments"));
+    }
+
+    @Test
+    void dropsOnlyFailingRowsOfBatch() {
+        for (int i = 0; i < 10; i++) {
+            store.save(new TranscriptRecord("r" + i, "batch", null, null, "第" + i + "条测试结果", null, 10));
+        }
+        // 主键重复的一条导致整批回滚，逐条重写时只丢弃这一条
+        store.save(new TranscriptRecord("r3", "batch", null, null, "重复的结果", null, 10));
+        store.shutdown();
+
+        assertEquals(10L, store.stats().get("written"));
+        assertEquals(1L, store.stats().get("failed"));
+        assertEquals(10, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM asr_transcript", Integer.class));
+        assertEquals("第3条测试结果", store.find("r3").get("text"));
+    }
+
+    @Test
+    void searchesByAllCharacterBigrams() {
+        store.save(new TranscriptRecord("a", "recognize", null, null, "今天天气很好，适合出门", null, 10));
+        store.save(new TranscriptRecord("b", "recognize", null, null, "明天天气不好", null, 10));
+        store.save(new TranscriptRecord("c", "recognize", null, null, "Hello FunASR", null, 10));
+        // 含有"天气很好"的全部二元组，但不连续
+        store.save(new TranscriptRecord("d", "recognize", null, null, "很好的天气，气很冷", null, 10));
+        store.save(new TranscriptRecord("e", "recognize", null, null, "哈哈哈，真好笑", null, 10));
+        store.shutdown();
+
+        assertEquals(Set.of("a", "b", "d"), requestIds(store.search("天气", 10)));
+        assertEquals(Set.of("a"), requestIds(store.search("天气很好", 10)));
+        // 重复的二元组按一个计
+        assertEquals(Set.of("e"), requestIds(store.search("哈哈哈", 10)));
+        assertEquals(Set.of(), requestIds(store.search("天气晴朗", 10)));
+        assertEquals(Set.of("c"), requestIds(store.search("funasr", 10)));
+        // 单字不在倒排表中，逐行匹配
+        assertEquals(Set.of("b"), requestIds(store.search("明", 10)));
+        assertEquals(Set.of("c"), requestIds(store.search("hello, funasr", 10)));
+        assertEquals(1, store.search("天气", 1).size());
+    }
+
+    @Test
+    void splitsTextIntoDistinctBigrams() {
+        assertEquals(Set.of("今天", "天天", "天气", "ab"), TranscriptStore.terms("今天天气，天气 AB c"));
+        assertEquals(List.of("今天天气", "ab", "c"), TranscriptStore.words("今天天气，今天天气 AB c"));
+    }
+
+    private static Set<Object> requestIds(List<Map<String, Object>> transcripts) {
+        return Set.copyOf(transcripts.stream().map(transcript -> transcript.get("requestId")).toList());
+    }
+}
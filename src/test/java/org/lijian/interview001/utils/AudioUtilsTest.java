@@ -0,0 +1,76 @@
+package org.lijian.interview001.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 内存映射读取与按流读取的结果应一致
+ */
+class AudioUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mapsTargetFormatWithoutConversion() throws IOException {
+        byte[] pcm = samples(AudioUtils.TARGET_FORMAT, 16000);
+        File wav = writeWav(AudioUtils.TARGET_FORMAT, pcm);
+
+        try (AudioProbe probe = AudioUtils.probeMapped(wav)) {
+            assertTrue(probe.hasPcmBuffer());
+            ByteBuffer buffer = probe.readPcmBuffer();
+            assertTrue(buffer.isReadOnly());
+            assertArrayEquals(pcm, toArray(buffer));
+        }
+    }
+
+    @Test
+    void convertsMappedFileLikeStream() throws IOException {
+        AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+        File wav = writeWav(format, samples(format, 44100));
+
+        byte[] expected = AudioUtils.convertFileToPCM(wav);
+        try (AudioProbe probe = AudioUtils.probeMapped(wav)) {
+            ByteBuffer buffer = probe.readPcmBuffer();
+            assertEquals(expected.length, buffer.remaining());
+            assertArrayEquals(expected, toArray(buffer));
+        }
+    }
+
+    private File writeWav(AudioFormat format, byte[] data) throws IOException {
+        File file = tempDir.resolve("audio.wav").toFile();
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format,
+                data.length / format.getFrameSize())) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        }
+        return file;
+    }
+
+    private static byte[] samples(AudioFormat format, int frames) {
+        byte[] data = new byte[frames * format.getFrameSize()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+}
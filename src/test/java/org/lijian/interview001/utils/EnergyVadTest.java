@@ -0,0 +1,145 @@
+package org.lijian.interview001.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 静音检测的噪声底、阈值、静音处切分和超长分段的强制切分
+ * 各段时长取30ms帧的整数倍，切分点可以精确到帧
+ */
+class EnergyVadTest {
+
+    private static final int BYTES_PER_MILLI = 32;
+
+    @Test
+    void measuresFrameEnergyAndNoiseFloor() {
+        ByteBuffer pcm = ByteBuffer.allocate(3 * 960).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 480; i++) {
+            pcm.putShort((short) 0);
+        }
+        for (int i = 0; i < 960; i++) {
+            // 半满幅方波，-6dBFS
+            pcm.putShort((short) (i % 2 == 0 ? 16384 : -16384));
+        }
+        double[] energy = EnergyVad.frameEnergy(pcm.flip(), 0, 1440, 3);
+
+        assertEquals(-120, energy[0]);
+        assertEquals(-6.02, energy[1], 0.01);
+        assertEquals(-6.02, energy[2], 0.01);
+        // 第10百分位
+        assertEquals(-90, EnergyVad.noiseFloor(new double[]{-10, -20, -30, -40, -50, -60, -70, -80, -90, -100, -5}), 1e-9);
+        assertEquals(-50, EnergyVad.noiseFloor(new double[]{-10, -50, -20}));
+    }
+
+    @Test
+    void cutsInTheMiddleOfLongSilence() {
+        // 语音1980ms、静音990ms、语音1980ms: 静音为第66到98帧，在第82帧(2460ms)切分
+        ByteBuffer pcm = pcm(0, 1980, 990, 1980);
+        List<EnergyVad.Segment> segments = new EnergyVad(1000, 10000, 400, 10).split(pcm, 0, pcm.remaining());
+
+        assertEquals(2, segments.size());
+        assertEquals(0, segments.get(0).getStartMillis());
+        assertEquals(2460, segments.get(0).getEndMillis());
+        assertEquals(2460, segments.get(1).getStartMillis());
+        assertEquals(4950, segments.get(1).getEndMillis());
+        assertContiguous(segments, 0, pcm.remaining());
+    }
+
+    @Test
+    void keepsShortPausesAndShortSegments() {
+        ByteBuffer pcm = pcm(0, 1980, 300, 1980);
+        // 停顿短于minSilenceMillis
+        assertEquals(1, new EnergyVad(1000, 10000, 400, 10).split(pcm, 0, pcm.remaining()).size());
+
+        ByteBuffer longPause = pcm(0, 1980, 990, 1980);
+        // 切分点之前不足minSegmentMillis
+        assertEquals(1, new EnergyVad(3000, 10000, 400, 10).split(longPause, 0, longPause.remaining()).size());
+    }
+
+    @Test
+    void adaptsThresholdToNoiseFloor() {
+        // 背景噪声约-35dBFS，高于固定的-55dBFS静音线；阈值跟随噪声底，噪声段仍可作为切分点
+        ByteBuffer pcm = pcm(1000, 1980, 990, 1980);
+        List<EnergyVad.Segment> segments = new EnergyVad(1000, 10000, 400, 10).split(pcm, 0, pcm.remaining());
+
+        assertEquals(2, segments.size());
+        assertEquals(2460, segments.get(0).getEndMillis());
+
+        // 噪声底之上的余量大于语音与噪声之差时全部判为静音，不切分
+        assertEquals(1, new EnergyVad(1000, 10000, 400, 40).split(pcm, 0, pcm.remaining()).size());
+    }
+
+    @Test
+    void forcesCutAtQuietestFrameOfLongSegment() {
+        // 连续语音5010ms，1200ms处有60ms音量较低(仍高于阈值)；分段最长1500ms，第一刀落在后半段能量最低的1200ms处
+        ByteBuffer pcm = ByteBuffer.allocate(5010 * BYTES_PER_MILLI).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 5010 * 16; i++) {
+            int amplitude = i >= 1200 * 16 && i < 1260 * 16 ? 2000 : 8000;
+            pcm.putShort((short) (amplitude * Math.sin(2 * Math.PI * 440 * i / 16000.0)));
+        }
+        pcm.flip();
+
+        List<EnergyVad.Segment> segments = new EnergyVad(500, 1500, 400, 10).split(pcm, 0, pcm.remaining());
+
+        assertEquals(1200, segments.get(0).getEndMillis());
+        for (EnergyVad.Segment segment : segments) {
+            assertTrue(segment.getEndMillis() - segment.getStartMillis() <= 1500, segment.toString());
+        }
+        assertContiguous(segments, 0, pcm.remaining());
+    }
+
+    @Test
+    void splitsRelativeToOffset() {
+        ByteBuffer audio = pcm(0, 1980, 990, 1980);
+        int length = audio.remaining();
+        ByteBuffer padded = ByteBuffer.allocate(length + 100);
+        padded.position(100);
+        padded.put(audio);
+
+        List<EnergyVad.Segment> segments = new EnergyVad(1000, 10000, 400, 10).split(padded, 100, length);
+
+        assertEquals(100, segments.get(0).getOffset());
+        assertEquals(2460, segments.get(1).getStartMillis());
+        assertContiguous(segments, 100, length);
+    }
+
+    /**
+     * 分段首尾相接覆盖全部数据
+     */
+    private static void assertContiguous(List<EnergyVad.Segment> segments, int offset, int length) {
+        int position = offset;
+        for (EnergyVad.Segment segment : segments) {
+            assertEquals(position, segment.getOffset());
+            position += segment.getLength();
+        }
+        assertEquals(offset + length, position);
+    }
+
+    /**
+     * 按毫秒数交替生成语音(440Hz正弦波)和静音，从语音开始；静音为给定幅度的随机噪声
+     */
+    private static ByteBuffer pcm(int noiseAmplitude, int... millis) {
+        int total = 0;
+        for (int value : millis) {
+            total += value;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total * BYTES_PER_MILLI).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(1);
+        int sample = 0;
+        for (int i = 0; i < millis.length; i++) {
+            for (int n = 0; n < millis[i] * 16; n++, sample++) {
+                double value = i % 2 == 0 ? 16000 * Math.sin(2 * Math.PI * 440 * sample / 16000.0)
+                        : noiseAmplitude * (random.nextDouble() * 2 - 1);
+                buffer.putShort((short) value);
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,139 @@
+package org.lijian.interview001.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 各种样本格式的解码、混音、限幅，以及任意分块下结果一致
+ * 源采样率取16kHz时重采样器直通，输出样本可以精确比较
+ */
+class PcmConverterTest {
+
+    @Test
+    void averagesChannels() {
+        AudioFormat stereo = new AudioFormat(16000, 16, 2, true, false);
+        assertArrayEquals(new short[]{2000, -1500}, convert(stereo, pcm16(1000, 3000, -1000, -2000)));
+
+        AudioFormat surround = new AudioFormat(16000, 16, 3, true, true);
+        ByteBuffer data = ByteBuffer.allocate(6).order(ByteOrder.BIG_ENDIAN);
+        data.putShort((short) 300).putShort((short) 600).putShort((short) 900);
+        assertArrayEquals(new short[]{600}, convert(surround, data.array()));
+    }
+
+    @Test
+    void decodesTwentyFourBitSamples() {
+        AudioFormat little = new AudioFormat(16000, 24, 1, true, false);
+        byte[] data = {0x56, 0x34, 0x12, (byte) 0xAA, (byte) 0xCB, (byte) 0xED, 0, 0, (byte) 0x80};
+        // 0x123456右移8位为0x1234，余数0x56不足一半，舍去
+        assertArrayEquals(new short[]{0x1234, -0x1234, -32768}, convert(little, data));
+
+        AudioFormat big = new AudioFormat(16000, 24, 1, true, true);
+        assertArrayEquals(new short[]{0x1234, 32767}, convert(big, new byte[]{0x12, 0x34, 0x56, 0x7F, (byte) 0xFF, (byte) 0xFF}));
+    }
+
+    @Test
+    void decodesThirtyTwoBitSamples() {
+        AudioFormat format = new AudioFormat(16000, 32, 1, true, false);
+        ByteBuffer data = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(Integer.MAX_VALUE).putInt(Integer.MIN_VALUE).putInt(0x40000000);
+        assertArrayEquals(new short[]{32767, -32768, 16384}, convert(format, data.array()));
+
+        AudioFormat unsigned = new AudioFormat(16000, 8, 1, false, false);
+        assertArrayEquals(new short[]{0, -32768, 32512}, convert(unsigned, new byte[]{(byte) 128, 0, (byte) 255}));
+    }
+
+    @Test
+    void decodesAndClipsFloatSamples() {
+        AudioFormat float32 = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 16000, 32, 1, 4, 16000, false);
+        ByteBuffer data = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        data.putFloat(0.5f).putFloat(-0.25f).putFloat(1.0f).putFloat(-1.0f).putFloat(1.5f).putFloat(-1.5f);
+        assertArrayEquals(new short[]{16384, -8192, 32767, -32768, 32767, -32768}, convert(float32, data.array()));
+
+        AudioFormat float64 = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 16000, 64, 1, 8, 16000, true);
+        ByteBuffer doubles = ByteBuffer.allocate(16).order(ByteOrder.BIG_ENDIAN);
+        doubles.putDouble(0.5).putDouble(2.0);
+        assertArrayEquals(new short[]{16384, 32767}, convert(float64, doubles.array()));
+    }
+
+    @Test
+    void rejectsUnsupportedFormats() {
+        assertFalse(PcmConverter.isSupported(new AudioFormat(16000, 12, 1, true, false)));
+        assertFalse(PcmConverter.isSupported(new AudioFormat(AudioFormat.Encoding.ULAW, 8000, 8, 1, 1, 8000, false)));
+        assertFalse(PcmConverter.isSupported(new AudioFormat(22050.5f, 16, 1, true, false)));
+    }
+
+    @Test
+    void streamAndBufferMatchAcrossChunkBoundaries() throws IOException {
+        // 44.1kHz立体声24位，帧长6字节，随机分块必然切开帧
+        AudioFormat format = new AudioFormat(44100, 24, 2, true, false);
+        byte[] data = new byte[44100 * format.getFrameSize()];
+        Random random = new Random(7);
+        random.nextBytes(data);
+
+        PcmConverter converter = new PcmConverter(format);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        write(whole, converter, converter.convert(data, 0, data.length));
+        write(whole, converter, converter.flush());
+        byte[] expected = whole.toByteArray();
+        assertEquals(16000 * 2, expected.length);
+
+        converter.reset();
+        ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+        for (int offset = 0; offset < data.length; ) {
+            int length = Math.min(1 + random.nextInt(1000), data.length - offset);
+            write(chunked, converter, converter.convert(data, offset, length));
+            offset += length;
+        }
+        write(chunked, converter, converter.flush());
+        assertArrayEquals(expected, chunked.toByteArray());
+
+        InputStream source = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                // 每次最多返回7字节
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        try (InputStream stream = new PcmConverterInputStream(source, new PcmConverter(format))) {
+            assertArrayEquals(expected, stream.readAllBytes());
+        }
+    }
+
+    private static short[] convert(AudioFormat format, byte[] data) {
+        PcmConverter converter = new PcmConverter(format);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, converter, converter.convert(data, 0, data.length));
+        write(out, converter, converter.flush());
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[buffer.remaining() / 2];
+        buffer.asShortBuffer().get(samples);
+        return samples;
+    }
+
+    /**
+     * convert/flush可能换新的输出缓冲，必须在调用之后再取getOutput()
+     */
+    private static void write(ByteArrayOutputStream out, PcmConverter converter, int length) {
+        out.write(converter.getOutput(), 0, length);
+    }
+
+    private static byte[] pcm16(int... samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int sample : samples) {
+            buffer.putShort((short) sample);
+        }
+        return buffer.array();
+    }
+}
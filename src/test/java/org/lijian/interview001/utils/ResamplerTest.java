@@ -0,0 +1,115 @@
+package org.lijian.interview001.utils;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重采样到16kHz的输出长度、通带增益、阻带衰减和分块一致性
+ */
+class ResamplerTest {
+
+    private static final int TARGET_RATE = 16000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {44100, 48000, 8000, 16000})
+    void producesCeilOfScaledLength(int rate) {
+        assertEquals(TARGET_RATE, resample(rate, new float[rate]).length);
+        // 不能整除时向上取整
+        int odd = rate + 1;
+        assertEquals((odd * (long) TARGET_RATE + rate - 1) / rate, resample(rate, new float[odd]).length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {44100, 48000, 8000})
+    void keepsDirectCurrentAndLowTone(int rate) {
+        float[] dc = new float[rate];
+        Arrays.fill(dc, 0.5f);
+        float[] output = resample(rate, dc);
+        // 跳过两端滤波器补零的部分
+        for (int i = 100; i < output.length - 100; i++) {
+            assertEquals(0.5f, output[i], 1e-3f);
+        }
+
+        double rms = rms(resample(rate, tone(rate, 1000, rate)));
+        assertEquals(0.5 / Math.sqrt(2), rms, 0.005);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {44100, 48000})
+    void attenuatesToneAboveTargetNyquist(int rate) {
+        double rms = rms(resample(rate, tone(rate, 10000, rate)));
+        // 输入RMS约0.35，至少衰减60dB
+        assertTrue(rms < 0.35e-3, "RMS " + rms);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {44100, 8000})
+    void chunkedInputMatchesSingleBlock(int rate) {
+        float[] input = new float[rate];
+        Random random = new Random(rate);
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextFloat() * 2 - 1;
+        }
+
+        Resampler resampler = new Resampler(rate, TARGET_RATE);
+        float[] output = new float[resampler.maxOutput(input.length) + resampler.maxOutput(0)];
+        int written = 0;
+        for (int offset = 0; offset < input.length; ) {
+            int length = Math.min(1 + random.nextInt(997), input.length - offset);
+            float[] chunk = new float[resampler.maxOutput(length)];
+            int count = resampler.process(input, offset, length, chunk);
+            System.arraycopy(chunk, 0, output, written, count);
+            written += count;
+            offset += length;
+        }
+        float[] tail = new float[resampler.maxOutput(0)];
+        int count = resampler.flush(tail);
+        System.arraycopy(tail, 0, output, written, count);
+        written += count;
+
+        assertArrayEquals(resample(rate, input), Arrays.copyOf(output, written));
+
+        // reset后可以处理下一段音频
+        resampler.reset();
+        assertArrayEquals(resample(rate, input), process(resampler, input));
+    }
+
+    private static float[] resample(int rate, float[] input) {
+        return process(new Resampler(rate, TARGET_RATE), input);
+    }
+
+    private static float[] process(Resampler resampler, float[] input) {
+        float[] output = new float[resampler.maxOutput(input.length) + resampler.maxOutput(0)];
+        int written = resampler.process(input, 0, input.length, output);
+        float[] tail = new float[resampler.maxOutput(0)];
+        int count = resampler.flush(tail);
+        System.arraycopy(tail, 0, output, written, count);
+        return Arrays.copyOf(output, written + count);
+    }
+
+    private static float[] tone(int rate, double frequency, int samples) {
+        float[] data = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            data[i] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * i / rate));
+        }
+        return data;
+    }
+
+    /**
+     * 去掉两端各100个样本的均方根
+     */
+    private static double rms(float[] data) {
+        double sum = 0;
+        for (int i = 100; i < data.length - 100; i++) {
+            sum += data[i] * data[i];
+        }
+        return Math.sqrt(sum / (data.length - 200));
+    }
+}
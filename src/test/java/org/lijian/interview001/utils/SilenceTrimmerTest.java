@@ -0,0 +1,63 @@
+package org.lijian.interview001.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 静音压缩及压缩后时间到原音频时间的换算
+ */
+class SilenceTrimmerTest {
+
+    private static final int BYTES_PER_MILLI = 32;
+
+    @Test
+    void trimsEdgesAndCollapsesLongSilence() {
+        // 静音990ms、语音990ms、静音3000ms、语音990ms、静音1980ms，均为30ms帧的整数倍
+        ByteBuffer pcm = pcm(new int[]{990, 990, 3000, 990, 1980});
+
+        SilenceTrimmer.Result result = new SilenceTrimmer(1000, 300, 10).trim(pcm);
+
+        assertTrue(result.isTrimmed());
+        // 两段语音各保留前后静音共150ms+300ms
+        assertEquals(2 * 1440 * BYTES_PER_MILLI, result.getPcm().remaining());
+        assertEquals(pcm.remaining() - result.getPcm().remaining(), result.getRemovedBytes());
+        // 开头保留300ms静音
+        assertEquals(690, result.toOriginalMillis(0));
+        // 第二段语音在压缩后的1590ms处，对应原音频的4980ms
+        assertEquals(4980, result.toOriginalMillis(1590));
+        assertEquals(5980, result.toOriginalMillis(2590));
+    }
+
+    @Test
+    void keepsShortPausesAndAllSilence() {
+        SilenceTrimmer trimmer = new SilenceTrimmer(1000, 300, 10);
+
+        assertFalse(trimmer.trim(pcm(new int[]{0, 990, 600, 990})).isTrimmed());
+        assertFalse(trimmer.trim(ByteBuffer.allocate(32000)).isTrimmed());
+    }
+
+    /**
+     * 按毫秒数交替生成静音和440Hz正弦波，从静音开始
+     */
+    private static ByteBuffer pcm(int[] millis) {
+        int total = 0;
+        for (int value : millis) {
+            total += value;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total * BYTES_PER_MILLI).order(ByteOrder.LITTLE_ENDIAN);
+        int sample = 0;
+        for (int i = 0; i < millis.length; i++) {
+            for (int n = 0; n < millis[i] * 16; n++, sample++) {
+                short value = i % 2 == 0 ? 0 : (short) (8000 * Math.sin(2 * Math.PI * 440 * sample / 16000.0));
+                buffer.putShort(value);
+            }
+        }
+        return buffer.flip();
+    }
+}